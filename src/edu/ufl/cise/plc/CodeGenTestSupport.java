@@ -0,0 +1,104 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.runtime.ImageOps;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicClassLoader;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicCompiler;
+
+//Compiles and runs programs with code generator options, for the tests of those options. A test
+//class passes the option sets checkSameResult compares to the code generated with no options.
+abstract class CodeGenTestSupport {
+
+	static final boolean VERBOSE = true;
+
+	final List<Set<Option>> checked;
+	//The code generator of the last call to code
+	CodeGenVisitor generator;
+
+	@SafeVarargs
+	CodeGenTestSupport(Set<Option>... checked) {
+		this.checked = List.of(checked);
+	}
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Program typeChecked(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		return program;
+	}
+
+	String code(String input, Set<Option> options) throws Exception {
+		generator = (CodeGenVisitor) CompilerComponentFactory.getCodeGenerator("", options);
+		String javaCode = (String) typeChecked(input).visit(generator, null);
+		show(javaCode);
+		return javaCode;
+	}
+
+	//The value the program returns, with the exception the generated code throws rather than the
+	//one reflection wraps it in
+	Object exec(String input, Set<Option> options, Object[] params) throws Exception {
+		String name = ((Program) CompilerComponentFactory.getParser(input).parse()).getName();
+		byte[] byteCode = DynamicCompiler.compile(name, code(input, options));
+		try {
+			return DynamicClassLoader.loadClassAndRunMethod(byteCode, name, "apply", params);
+		} catch (Exception e) {
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			throw cause instanceof Exception c ? c : e;
+		}
+	}
+
+	//The pixels of the image the program returns
+	int[] pixels(String input, Set<Option> options, Object[] params) throws Exception {
+		return ImageOps.getRGBPixels((BufferedImage) exec(input, options, params));
+	}
+
+	void checkSameResult(String input, Object[] params) throws Exception {
+		checkSameResult(input, params, checked);
+	}
+
+	//Checks that the program returns the same value, or an image with the same pixels, with each of
+	//the option sets as with no options
+	void checkSameResult(String input, Object[] params, List<Set<Option>> optionSets) throws Exception {
+		Object expected = exec(input, EnumSet.noneOf(Option.class), params);
+		for (Set<Option> options : optionSets) {
+			Object result = exec(input, options, params);
+			if (expected instanceof BufferedImage image) {
+				assertArrayEquals(ImageOps.getRGBPixels(image), ImageOps.getRGBPixels((BufferedImage) result));
+			} else {
+				assertEquals(expected, result);
+			}
+		}
+	}
+
+	//An image whose pixels cover the range of each color component
+	BufferedImage image(int w, int h, int seed) {
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < w; x++) {
+			for (int y = 0; y < h; y++) {
+				image.setRGB(x, y, (x * 37 + seed) % 256 << 16 | (y * 53 + seed) % 256 << 8 | (x * y + seed) % 256);
+			}
+		}
+		return image;
+	}
+
+	int count(String s, String part) {
+		return s.split(part, -1).length - 1;
+	}
+}
@@ -7,9 +7,84 @@ import edu.ufl.cise.plc.runtime.ColorTuple;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class CodeGenVisitor implements ASTVisitor {
+    // Optimizations of the generated code, which do not change what it computes
+    public enum Option {
+        // Compute expressions that occur more than once in a declaration or statement once, into a
+        // final var _cseN temporary
+        CSE,
+        // Compute the parts of a pixel assignment that are the same for every pixel, and the bounds of
+        // the loops over the pixels, once before the loops, into final var _licmN temporaries
+        LICM,
+        // Compute the colors of a pixel assignment as separate int components, packing them only to set
+        // the pixel, so that the loops over the pixels do not allocate ColorTuples. The pixels read are
+        // kept packed, in final int _pixN temporaries.
+        INT_COLORS,
+        // Compute an image expression with more than one image operation in one loop over the pixels, in
+        // a generated _fusedN method, instead of computing an intermediate image per operation
+        FUSE_IMAGES,
+        // Hold image variables declared with image operations, or resized, as a LazyImage, which
+        // computes only the pixels that are read, when they are read, if nothing changes the images
+        // they are computed from
+        LAZY_IMAGES,
+        // Compute an operation on two images known to have the same size, from ImageShapes, without
+        // checking their sizes, into a result allocated with the known size
+        KNOWN_SHAPES,
+        // Leave out the truncation of a color component to [0, 256) in the code INT_COLORS and
+        // FUSE_IMAGES generate where ValueRanges shows the component is already in range
+        ELIDE_CLAMPS,
+        // Compute an image declared with a size and no initializer, or as an operation on two images
+        // of the same size, into the buffer of a dead image variable of the same size from
+        // ImageBuffers instead of a new image. Generates the operations KNOWN_SHAPES does.
+        REUSE_IMAGES,
+        // Loop over the pixels of a pixel assignment a row at a time, the order BufferedImage stores
+        // them in, instead of a column at a time, if PixelAliases shows the assignment is pointwise
+        ROW_ORDER
+    }
+
+    private static final String[] COMPONENTS = {"red", "green", "blue"};
+
     private String packageName;
+    // Where the type checker recorded types, coercions and declarations
+    private final TypeInfo types;
+    private final Set<Option> options;
+    // Common subexpressions of the declaration or statement being generated, if CSE is on
+    private CommonSubexpressions cse;
+    // The shared expression whose temporary is being generated
+    private Expr cseValue;
+    // Temporaries computed before the loops of the pixel assignment being generated, if LICM is on
+    private final Map<Expr, String> hoisted = new IdentityHashMap<>();
+    // Whether COLOR expressions are being generated as int components, in the body of pixel loops
+    private boolean intColors;
+    // The pixel reads the body of the pixel loops always evaluates, and the temporaries holding them
+    private final Set<Expr> alwaysRead = Collections.newSetFromMap(new IdentityHashMap<>());
+    private ExprHashCons pixelReads;
+    private final Map<Integer, String> pixels = new HashMap<>();
+    // Declarations of the temporaries not yet added to the generated code, in the order they are needed
+    private final List<String> pendingTemps = new ArrayList<>();
+    // The image variables held as a LazyImage, if LAZY_IMAGES is on
+    private LazyImages lazyImages;
+    // The sizes of images known before the program runs, if KNOWN_SHAPES or REUSE_IMAGES is on
+    private ImageShapes shapes;
+    // The buffers of dead image variables, if REUSE_IMAGES is on, and the declaration whose image may
+    // be computed into one
+    private ImageBuffers buffers;
+    private VarDeclaration reuseFor;
+    // The image variables that may refer to the same image, if LICM or ROW_ORDER is on
+    private PixelAliases pixelAliases;
+    // Methods added to the generated class after apply, if FUSE_IMAGES is on
+    private final List<String> methods = new ArrayList<>();
+    private int tempCount;
+    // The truncations of color components left out, if ELIDE_CLAMPS is on
+    private int elidedClamps;
 
     public static String toStringType(Type t) {
         return switch(t) {
@@ -62,13 +137,43 @@ public class CodeGenVisitor implements ASTVisitor {
     }
 
     public CodeGenVisitor(String packageName) {
+        this(packageName, InPlaceTypeInfo.INSTANCE);
+    }
+
+    // A code generator for a Program type checked into the given TypeInfo
+    public CodeGenVisitor(String packageName, TypeInfo types) {
+        this(packageName, types, EnumSet.noneOf(Option.class));
+    }
+
+    public CodeGenVisitor(String packageName, TypeInfo types, Set<Option> options) {
         this.packageName = packageName;
+        this.types = types;
+        this.options = options;
+    }
+
+    // The truncations of color components to [0, 256) left out of the last program generated
+    public int getElidedClamps() {
+        return elidedClamps;
+    }
+
+    // The images of the last program generated computed into the buffer of a dead image variable
+    public int getReusedImages() {
+        return buffers == null ? 0 : buffers.getReused();
     }
 
 
     @Override
     public Object visitProgram(Program program, Object arg) throws Exception {
         CodeGenStringBuilder sb = new CodeGenStringBuilder();
+        programStart(program, sb);
+        for (ASTNode ds : program.getDecsAndStatements()) {
+            decOrStatement(ds, sb);
+        }
+        return programEnd(sb);
+    }
+
+    // The class declaration and apply method header, up to the first declaration or statement
+    void programStart(Program program, CodeGenStringBuilder sb) throws Exception {
         if (packageName.length() > 0) {
             sb.append("package " + packageName + ";\n");
         }
@@ -76,6 +181,19 @@ public class CodeGenVisitor implements ASTVisitor {
         sb.append("import java.awt.Color;\n");
         sb.append("import edu.ufl.cise.plc.runtime.*;\n");
         sb.append("public class " + program.getName() + " {\n");
+        elidedClamps = 0;
+        if (options.contains(Option.LAZY_IMAGES)) {
+            lazyImages = new LazyImages(program);
+        }
+        if (options.contains(Option.KNOWN_SHAPES) || options.contains(Option.REUSE_IMAGES)) {
+            shapes = new ImageShapes(program, types);
+        }
+        if (options.contains(Option.REUSE_IMAGES)) {
+            buffers = new ImageBuffers(program, types, shapes);
+        }
+        if (options.contains(Option.LICM) || options.contains(Option.ROW_ORDER)) {
+            pixelAliases = new PixelAliases(program, types);
+        }
         sb.append("\tpublic static " + toStringType(program.getReturnType()) + " apply( ");
 
         int c = 0;
@@ -87,15 +205,241 @@ public class CodeGenVisitor implements ASTVisitor {
         }
 
         sb.rparen().append("{").newline();
-        for (ASTNode ds : program.getDecsAndStatements()) {
-            sb.append("\t");
+    }
+
+    void decOrStatement(ASTNode ds, CodeGenStringBuilder sb) throws Exception {
+        sb.append("\t");
+        if (!options.contains(Option.CSE)) {
             ds.visit(this, sb);
+            return;
+        }
+        cse = new CommonSubexpressions(ds, types);
+        CodeGenStringBuilder statement = new CodeGenStringBuilder();
+        ds.visit(this, statement);
+        sb.append(takeTemps()).append(statement.getString());
+        cse = null;
+    }
+
+    // If the value of expr is computed before the pixel loops or is a common subexpression, appends
+    // the temporary holding it, declaring a common subexpression's temporary the first time. Returns
+    // whether it did.
+    private boolean appendTemp(Expr expr, CodeGenStringBuilder sb) throws Exception {
+        String invariant = hoisted.get(expr);
+        if (invariant != null) {
+            sb.append(invariant);
+            return true;
+        }
+        if (cse == null || expr == cseValue || !cse.isShared(expr)) {
+            return false;
+        }
+        String temp = cse.getTemp(expr);
+        if (temp == null) {
+            Expr outer = cseValue;
+            cseValue = expr;
+            CodeGenStringBuilder value = new CodeGenStringBuilder();
+            expr.visit(this, value);
+            cseValue = outer;
+            temp = "_cse" + tempCount++;
+            cse.addTemp(expr, temp);
+            pendingTemps.add("final var " + temp + " = " + value.getString() + ";");
+        }
+        sb.append(temp);
+        return true;
+    }
+
+    // Declares a temporary before the pixel loops holding the value of the given Java expression, and
+    // returns its name
+    private String hoist(String value, CodeGenStringBuilder sb) {
+        String temp = "_licm" + tempCount++;
+        sb.append(takeTemps());
+        sb.append("final var " + temp + " = " + value).semi().newline().tab();
+        return temp;
+    }
+
+    // The body of a loop over the pixels, preceded by the temporaries it uses, which depend on the pixel
+    private String loopBody(CodeGenStringBuilder body) {
+        String temps = takeTemps();
+        return temps.isEmpty() ? body.getString() : "{" + temps + body.getString() + "}";
+    }
+
+    // Returns the declarations of the temporaries added since the last call, one per line
+    private String takeTemps() {
+        StringBuilder sb = new StringBuilder();
+        for (String declaration : pendingTemps) {
+            sb.append(declaration).append("\n\t");
+        }
+        pendingTemps.clear();
+        return sb.toString();
+    }
+
+    // The body of the loops of a pixel assignment with INT_COLORS, which sets the pixel to the packed
+    // components of the right hand side
+    private void intColorsBody(AssignmentStatement assignmentStatement, CodeGenStringBuilder body) throws Exception {
+        Expr expr = assignmentStatement.getExpr();
+        PixelSelector selector = assignmentStatement.getSelector();
+        intColors = true;
+        pixelReads = new ExprHashCons(types);
+        findAlwaysRead(expr);
+        body.append("ImageOps.setColor(" + assignmentStatement.getName() + "," + selector.getX().getText() + ","
+                + selector.getY().getText() + ", ");
+        boolean intRhs = types.getType(expr) == Type.INT && !(expr instanceof UnaryExprPostfix);
+        ValueRanges ranges = new ValueRanges(types, Set.of(selector.getX().getText(), selector.getY().getText()));
+        boolean[] inRange = new boolean[3];
+        for (int c = 0; c < 3; c++) {
+            inRange[c] = options.contains(Option.ELIDE_CLAMPS) && ranges.range(expr, c).isComponent();
+        }
+        if (intRhs) {
+            body.append("ColorTuple." + (inRange[0] ? "packInRange(" : "makePackedColor(") + intValue(expr)).rparen();
+            elidedClamps += inRange[0] ? 3 : 0;
+        } else if (inRange[0] || inRange[1] || inRange[2]) {
+            // Pack the components, truncating only the ones that may be out of range
+            body.append("ColorTuple.packInRange(");
+            for (int c = 0; c < 3; c++) {
+                String component = component(expr, c);
+                body.append(c > 0 ? ", " : "").append(inRange[c] ? component : "ColorTuple.truncate(" + component + ")");
+                elidedClamps += inRange[c] ? 1 : 0;
+            }
+            body.rparen();
+        } else {
+            body.append(component(expr, 0)).comma().space().append(component(expr, 1)).comma().space().append(component(expr, 2));
+        }
+        body.rparen().semi();
+        intColors = false;
+        alwaysRead.clear();
+        pixels.clear();
+    }
+
+    // Whether expr, the right hand side of a pixel assignment, can be generated with int components
+    // for its colors. Float colors, and floats used as colors, are left to the ColorTuple code.
+    private boolean hasIntColors(Expr expr) {
+        Type type = types.getType(expr);
+        Type coerce = types.getCoerceTo(expr);
+        if (type == Type.COLORFLOAT || coerce == Type.COLORFLOAT
+                || (coerce == Type.COLOR && type != Type.COLOR && type != Type.INT)) {
+            return false;
+        }
+        if (type == Type.COLOR && !(expr instanceof IdentExpr || expr instanceof ColorConstExpr || expr instanceof ColorExpr
+                || expr instanceof UnaryExprPostfix || expr instanceof BinaryExpr || expr instanceof ConditionalExpr)) {
+            return false;
+        }
+        return ExprHashCons.children(expr).stream().allMatch(this::hasIntColors);
+    }
+
+    // Whether the value of expr is used as a COLOR. A pixel read has type INT, coerced to COLOR.
+    private boolean isColor(Expr expr) {
+        return (types.getCoerceTo(expr) == null ? types.getType(expr) : types.getCoerceTo(expr)) == Type.COLOR;
+    }
+
+    // Adds the pixel reads of expr that are evaluated whenever it is to alwaysRead. The cases of a
+    // conditional and the right operand of & or |, generated as && and ||, may not be evaluated.
+    private void findAlwaysRead(Expr expr) {
+        if (expr instanceof UnaryExprPostfix) {
+            alwaysRead.add(expr);
+        }
+        if (expr instanceof ConditionalExpr e) {
+            findAlwaysRead(e.getCondition());
+        } else if (expr instanceof BinaryExpr e
+                && (e.getOp().getKind() == IToken.Kind.AND || e.getOp().getKind() == IToken.Kind.OR)) {
+            findAlwaysRead(e.getLeft());
+        } else {
+            for (Expr child : ExprHashCons.children(expr)) {
+                findAlwaysRead(child);
+            }
+        }
+    }
+
+    // Java int expression for component c (0 red, 1 green, 2 blue) of expr, a COLOR or an int used as
+    // a color, with the same value as the component of the ColorTuple the other code computes
+    private String component(Expr expr, int c) throws Exception {
+        if (expr instanceof UnaryExprPostfix && hoisted.containsKey(expr)) {
+            return hoisted.get(expr) + "." + COMPONENTS[c];
+        } else if (expr instanceof UnaryExprPostfix e) {
+            String getter = c == 0 ? "getRed" : c == 1 ? "getGreen" : "getBlue";
+            return "ColorTuple." + getter + "(" + pixel(e) + ")";
+        } else if (types.getType(expr) != Type.COLOR) {
+            return intValue(expr);
+        }
+        String invariant = hoisted.get(expr);
+        if (invariant != null) {
+            return invariant + "." + COMPONENTS[c];
+        }
+        if (expr instanceof IdentExpr) {
+            return expr.getText() + "." + COMPONENTS[c];
+        } else if (expr instanceof ColorConstExpr) {
+            int rgb = ((Color) Color.class.getField(expr.getText()).get(null)).getRGB();
+            return Integer.toString(c == 0 ? ColorTuple.getRed(rgb) : c == 1 ? ColorTuple.getGreen(rgb) : ColorTuple.getBlue(rgb));
+        } else if (expr instanceof ColorExpr e) {
+            return intValue(c == 0 ? e.getRed() : c == 1 ? e.getGreen() : e.getBlue());
+        } else if (expr instanceof BinaryExpr e) {
+            return "(" + component(e.getLeft(), c) + e.getOp().getText() + component(e.getRight(), c) + ")";
+        }
+        ConditionalExpr e = (ConditionalExpr) expr;
+        return "((" + intValue(e.getCondition()) + ")?(" + component(e.getTrueCase(), c) + "):("
+                + component(e.getFalseCase(), c) + "))";
+    }
+
+    // Java expression for the value of expr, ignoring a coercion of an int to a color
+    private String intValue(Expr expr) throws Exception {
+        if (expr instanceof IntLitExpr || expr instanceof IdentExpr) {
+            return expr.getText();
         }
+        CodeGenStringBuilder value = new CodeGenStringBuilder();
+        expr.visit(this, value);
+        return value.getString();
+    }
+
+    // Java int expression for the packed pixel read by expr. A pixel that is always read is read once,
+    // into a temporary.
+    private String pixel(UnaryExprPostfix expr) throws Exception {
+        String temp = alwaysRead.contains(expr) ? pixels.get(pixelReads.number(expr)) : null;
+        if (temp != null) {
+            return temp;
+        }
+        CodeGenStringBuilder rgb = new CodeGenStringBuilder();
+        rgb.append(expr.getText() + ".getRGB(");
+        expr.getSelector().visit(this, rgb);
+        rgb.rparen();
+        if (!alwaysRead.contains(expr)) {
+            return rgb.getString();
+        }
+        temp = "_pix" + tempCount++;
+        pixels.put(pixelReads.number(expr), temp);
+        pendingTemps.add("final int " + temp + " = " + rgb.getString() + ";");
+        return temp;
+    }
 
-        sb.append("}}");
+    String programEnd(CodeGenStringBuilder sb) {
+        sb.append("}");
+        for (String method : methods) {
+            sb.newline().append(method);
+        }
+        methods.clear();
+        sb.append("}");
         return sb.getString();
     }
 
+    // If FUSE_IMAGES is on and expr is an image expression that can be computed in one loop, appends a
+    // call to a method that does. Returns whether it did.
+    private boolean appendFused(Expr expr, CodeGenStringBuilder sb) throws Exception {
+        if (!options.contains(Option.FUSE_IMAGES) || !ImageFusion.isFusible(expr, types)) {
+            return false;
+        }
+        ImageFusion fusion = ImageFusion.of(expr, types, options.contains(Option.ELIDE_CLAMPS));
+        elidedClamps += fusion.getElidedClamps();
+        String name = "_fused" + methods.size();
+        methods.add(fusion.method(name));
+        sb.append(name).lparen();
+        List<Expr> operands = fusion.getOperands();
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) {
+                sb.comma().space();
+            }
+            operands.get(i).visit(this, sb);
+        }
+        sb.rparen();
+        return true;
+    }
+
 
     @Override
     public Object visitBooleanLitExpr(BooleanLitExpr booleanLitExpr, Object arg) throws Exception {
@@ -122,8 +466,11 @@ public class CodeGenVisitor implements ASTVisitor {
 //        If coerceTo != null and coerceTo != INT, add cast to coerced type.
 
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
+        if (appendTemp(intLitExpr, sb)) {
+            return sb;
+        }
 
-        Type coerce = intLitExpr.getCoerceTo();
+        Type coerce = types.getCoerceTo(intLitExpr);
 
         if (coerce == Type.COLOR) {
             return sb.append("new ColorTuple(" + intLitExpr.getText()).rparen();
@@ -144,7 +491,7 @@ public class CodeGenVisitor implements ASTVisitor {
 //        (12.3 in Java is a double–if you do this your program will probably run, but fail test cases that check for equality)
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
 
-        Type coerce = floatLitExpr.getCoerceTo();
+        Type coerce = types.getCoerceTo(floatLitExpr);
         if (coerce != null && coerce != Type.FLOAT) {
             String type = toStringType(coerce);
             sb.type(type);
@@ -156,6 +503,9 @@ public class CodeGenVisitor implements ASTVisitor {
     @Override
     public Object visitColorConstExpr(ColorConstExpr colorConstExpr, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
+        if (appendTemp(colorConstExpr, sb)) {
+            return sb;
+        }
         String langColor =  colorConstExpr.getText();
 
         return sb.lparen().append("ColorTuple.unpack(" + "Color." + langColor + ".getRGB()").rparen().rparen();
@@ -176,11 +526,11 @@ public class CodeGenVisitor implements ASTVisitor {
 //
 // Note that the “j = “ part would be generated by the parent AssignmentStatement.  See the provided ConsoleIO class.
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
-        sb.type(toBoxedType(consoleExpr.getCoerceTo())).space(); // (Integer)
+        sb.type(toBoxedType(types.getCoerceTo(consoleExpr))).space(); // (Integer)
         sb.append("ConsoleIO.readValueFromConsole"); // ConsoleIO.readValueFromConsole
-        String type = (consoleExpr.getCoerceTo() == Type.COLOR)? "COLOR" : toStringType(consoleExpr.getCoerceTo());
+        String type = (types.getCoerceTo(consoleExpr) == Type.COLOR)? "COLOR" : toStringType(types.getCoerceTo(consoleExpr));
         sb.lparen().quote().append(type.toUpperCase()).quote().comma().space(); // (“INT”,
-        sb.quote().append("Enter ").append(toBoxedType(consoleExpr.getCoerceTo()).toLowerCase()); // integer:
+        sb.quote().append("Enter ").append(toBoxedType(types.getCoerceTo(consoleExpr)).toLowerCase()); // integer:
         sb.colon().quote().rparen(); // ”);
 
         return sb;
@@ -189,6 +539,9 @@ public class CodeGenVisitor implements ASTVisitor {
     @Override
     public Object visitColorExpr(ColorExpr colorExpr, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
+        if (appendTemp(colorExpr, sb)) {
+            return sb;
+        }
         sb.append("new ColorTuple(");
         Expr red = colorExpr.getRed();
         red.visit(this, arg);
@@ -205,16 +558,21 @@ public class CodeGenVisitor implements ASTVisitor {
     @Override
     public Object visitUnaryExpr(UnaryExpr unaryExpression, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
+        if (appendTemp(unaryExpression, sb) || appendFused(unaryExpression, sb)) {
+            return sb;
+        }
         String op = unaryExpression.getOp().getText();
 
         if (unaryExpression.getOp().getKind() == IToken.Kind.IMAGE_OP) {
             sb.append(unaryExpression.getExpr().getText() + "." + op + "()");
         } else if (unaryExpression.getOp().getKind() == IToken.Kind.COLOR_OP) {
-            if (unaryExpression.getExpr().getType() == Type.IMAGE) {
+            if (types.getType(unaryExpression.getExpr()) == Type.IMAGE) {
                 sb.append("ImageOps." + opToImageOp(op) + "(");
                 Expr expr = unaryExpression.getExpr();
                 expr.visit(this, sb);
                 sb.rparen();
+            } else if (intColors && isColor(unaryExpression.getExpr())) {
+                sb.append(component(unaryExpression.getExpr(), op.equals("getRed") ? 0 : op.equals("getGreen") ? 1 : 2));
             } else {
                 sb.append("ColorTuple." + op + "(");
                 Expr expr = unaryExpression.getExpr();
@@ -236,12 +594,15 @@ public class CodeGenVisitor implements ASTVisitor {
     @Override
     public Object visitBinaryExpr(BinaryExpr binaryExpr, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
+        if (appendTemp(binaryExpr, sb) || appendFused(binaryExpr, sb)) {
+            return sb;
+        }
         Expr leftExpr = binaryExpr.getLeft();
         Expr rightExpr = binaryExpr.getRight();
 
-        Type type = binaryExpr.getType();
-        Type leftType = leftExpr.getCoerceTo() == null ? leftExpr.getType() : leftExpr.getCoerceTo();
-        Type rightType = rightExpr.getCoerceTo() == null ? rightExpr.getType() : rightExpr.getCoerceTo();
+        Type type = types.getType(binaryExpr);
+        Type leftType = types.getCoerceTo(leftExpr) == null ? types.getType(leftExpr) : types.getCoerceTo(leftExpr);
+        Type rightType = types.getCoerceTo(rightExpr) == null ? types.getType(rightExpr) : types.getCoerceTo(rightExpr);
 
         IToken op = binaryExpr.getOp();
 
@@ -259,7 +620,15 @@ public class CodeGenVisitor implements ASTVisitor {
 //        (if image and int)
     //        (ImageOps.binaryImageScalarOp(ImageOps.OP.<opText>, <left>, <right>));
 
-        if (leftType == Type.COLOR && rightType == Type.COLOR) {
+        if (leftType == Type.COLOR && rightType == Type.COLOR && intColors) {
+            // only == and != have COLOR operands and a type other than COLOR
+            sb.append(op.getText().equals("==") ? "(" : "!(");
+            for (int c = 0; c < 3; c++) {
+                sb.append((c > 0 ? "&" : "") + "(" + component(leftExpr, c) + "==" + component(rightExpr, c) + ")");
+            }
+            sb.rparen();
+        }
+        else if (leftType == Type.COLOR && rightType == Type.COLOR) {
             sb.lparen();
 
             if (op.getText().equals("==") || op.getText().equals("!=")) {
@@ -274,6 +643,20 @@ public class CodeGenVisitor implements ASTVisitor {
             sb.rparen();
             sb.rparen();
         }
+        else if (leftType == Type.IMAGE && rightType == Type.IMAGE && shapes != null
+                && ImageShapes.same(shapes.shape(leftExpr), shapes.shape(rightExpr))) {
+            ImageShapes.Shape shape = shapes.shape(leftExpr);
+            String buffer = reuseFor != null && reuseFor.getExpr() == binaryExpr ? buffers.take(reuseFor, true) : null;
+            sb.lparen();
+            sb.append("ImageOps.binaryImageImageOpUnchecked(ImageOps.OP." + opToOpText(op.getText()) + ", ");
+            leftExpr.visit(this, sb);
+            sb.comma().space();
+            rightExpr.visit(this, sb);
+            sb.comma().space();
+            sb.append(buffer != null ? buffer : "new BufferedImage(" + shape.width() + ", " + shape.height() + ", BufferedImage.TYPE_INT_RGB)");
+            sb.rparen();
+            sb.rparen();
+        }
         else if (leftType == Type.IMAGE && rightType == Type.IMAGE) {
             sb.lparen();
             sb.append("ImageOps.binaryImageImageOp(ImageOps.OP." + opToOpText(op.getText()) + ", ");
@@ -326,18 +709,55 @@ public class CodeGenVisitor implements ASTVisitor {
 
 //      <identExpr.getText>
 //      If coerceTo != null and coerceTo != identExpr.type, add cast to coerced type.
-        Type coerce = identExpr.getCoerceTo();
-        if (coerce != null && coerce != identExpr.getType()) {
+        Type coerce = types.getCoerceTo(identExpr);
+        if (coerce != null && coerce != types.getType(identExpr)) {
             String type = toStringType(coerce);
             sb.type(type);
         }
-        return sb.append(identExpr.getText());
+        return sb.append(imageText(identExpr));
+    }
+
+    // The name of a variable, computing its image if it is a LazyImage
+    private String imageText(Expr expr) {
+        if (lazyImages != null && expr instanceof IdentExpr && lazyImages.isLazy(expr.getText())) {
+            return expr.getText() + ".get()";
+        }
+        return expr.getText();
+    }
+
+    // Appends the LazyImage for an image variable or image operation in the declaration of a lazy
+    // variable
+    private void appendLazy(Expr expr, CodeGenStringBuilder sb) throws Exception {
+        if (expr instanceof IdentExpr) {
+            sb.append(lazyImages.isLazy(expr.getText()) ? expr.getText() : "LazyImage.of(" + expr.getText() + ")");
+        } else if (expr instanceof UnaryExpr e) {
+            sb.append("LazyImage." + opToImageOp(e.getOp().getText()) + "(");
+            appendLazy(e.getExpr(), sb);
+            sb.rparen();
+        } else {
+            BinaryExpr e = (BinaryExpr) expr;
+            boolean scalar = types.getType(e.getRight()) == Type.INT;
+            sb.append("LazyImage." + (scalar ? "binaryImageScalarOp" : "binaryImageImageOp") + "(ImageOps.OP."
+                    + opToOpText(e.getOp().getText()) + ", ");
+            appendLazy(e.getLeft(), sb);
+            sb.comma().space();
+            if (scalar) {
+                e.getRight().visit(this, sb);
+            } else {
+                appendLazy(e.getRight(), sb);
+            }
+            sb.rparen();
+        }
     }
 
     @Override
     public Object visitConditionalExpr(ConditionalExpr conditionalExpr, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
-        sb.lparen();
+        if (appendTemp(conditionalExpr, sb)) {
+            return sb;
+        }
+        // parenthesized as a whole, as it can be the operand of an operator that binds tighter than ?:
+        sb.lparen().lparen();
         conditionalExpr.getCondition().visit(this, arg);
         sb.rparen().question();
         Expr lExpr = conditionalExpr.getTrueCase();
@@ -347,7 +767,9 @@ public class CodeGenVisitor implements ASTVisitor {
         sb.colon();
 
         Expr rExpr = conditionalExpr.getFalseCase();
+        sb.lparen();
         rExpr.visit(this, sb);
+        sb.rparen().rparen();
         return sb;
     }
 
@@ -374,14 +796,14 @@ public class CodeGenVisitor implements ASTVisitor {
     public Object visitAssignmentStatement(AssignmentStatement assignmentStatement, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
 
-        if (assignmentStatement.getExpr().getType() == Type.IMAGE && assignmentStatement.getTargetDec().getType() == Type.IMAGE) {
-            Dimension dim = assignmentStatement.getTargetDec().getDim();
+        if (types.getType(assignmentStatement.getExpr()) == Type.IMAGE && types.getDec(assignmentStatement).getType() == Type.IMAGE) {
+            Dimension dim = types.getDec(assignmentStatement).getDim();
             if (dim != null) {
-                sb.append(assignmentStatement.getName() + " = ImageOps.resize(" + assignmentStatement.getExpr().getText());
+                sb.append(assignmentStatement.getName() + " = ImageOps.resize(" + imageText(assignmentStatement.getExpr()));
                 sb.comma().space();
-                assignmentStatement.getTargetDec().getDim().getWidth().visit(this, arg);
+                types.getDec(assignmentStatement).getDim().getWidth().visit(this, arg);
                 sb.comma().space();
-                assignmentStatement.getTargetDec().getDim().getHeight().visit(this, arg);
+                types.getDec(assignmentStatement).getDim().getHeight().visit(this, arg);
                 sb.rparen().semi().newline();
 
                 return sb;
@@ -390,26 +812,53 @@ public class CodeGenVisitor implements ASTVisitor {
             }
         }
 
-        if (assignmentStatement.getTargetDec().getType() == Type.IMAGE &&
-                assignmentStatement.getTargetDec().getDim() != null) {
+        if (types.getDec(assignmentStatement).getType() == Type.IMAGE &&
+                types.getDec(assignmentStatement).getDim() != null) {
             PixelSelector selector = assignmentStatement.getSelector();
 
             if (selector != null) {
                 String name = assignmentStatement.getName();
                 String x = selector.getX().getText();
                 String y = selector.getY().getText();
-                sb.append("for(int " + x + "= 0;" + x + " < " + name + ".getWidth();" + x + "++)").newline().tab().tab().append(
-                        "for(int " + y + "= 0;" + y + " < " + name + ".getHeight();" + y + "++)").newline().tab().tab().tab();
+                String width = name + ".getWidth()";
+                String height = name + ".getHeight()";
+                boolean lowerColors = options.contains(Option.INT_COLORS) && hasIntColors(assignmentStatement.getExpr());
+                if (options.contains(Option.LICM)) {
+                    width = hoist(width, sb);
+                    height = hoist(height, sb);
+                    for (Expr invariant : LoopInvariants.find(assignmentStatement.getExpr(), Set.of(x, y),
+                            image -> !pixelAliases.mayAlias(image, name), types)) {
+                        if (lowerColors && invariant instanceof IntLitExpr) {
+                            // an int used as a color does not allocate with int components
+                            continue;
+                        }
+                        CodeGenStringBuilder value = new CodeGenStringBuilder();
+                        invariant.visit(this, value);
+                        hoisted.put(invariant, hoist(value.getString(), sb));
+                    }
+                }
+                if (options.contains(Option.ROW_ORDER) && pixelAliases.isPointwise(assignmentStatement)) {
+                    sb.append("for(int " + y + "= 0;" + y + " < " + height + ";" + y + "++)").newline().tab().tab().append(
+                            "for(int " + x + "= 0;" + x + " < " + width + ";" + x + "++)").newline().tab().tab().tab();
+                } else {
+                    sb.append("for(int " + x + "= 0;" + x + " < " + width + ";" + x + "++)").newline().tab().tab().append(
+                            "for(int " + y + "= 0;" + y + " < " + height + ";" + y + "++)").newline().tab().tab().tab();
+                }
 
-                if (assignmentStatement.getExpr().getType() == Type.COLOR) {
-                    sb.append("ImageOps.setColor(" + name + "," + x + "," + y + ", ");
-                    assignmentStatement.getExpr().visit(this, arg);
-                    sb.rparen().semi();
-                } else if (assignmentStatement.getExpr().getType() == Type.INT) {
-                    sb.append("ImageOps.setColor(" + name + "," + x + "," + y + ", new ColorTuple(");
-                    assignmentStatement.getExpr().visit(this, arg);
-                    sb.rparen().rparen().semi().newline();
+                CodeGenStringBuilder body = new CodeGenStringBuilder();
+                if (lowerColors) {
+                    intColorsBody(assignmentStatement, body);
+                } else if (types.getType(assignmentStatement.getExpr()) == Type.COLOR) {
+                    body.append("ImageOps.setColor(" + name + "," + x + "," + y + ", ");
+                    assignmentStatement.getExpr().visit(this, body);
+                    body.rparen().semi();
+                } else if (types.getType(assignmentStatement.getExpr()) == Type.INT) {
+                    body.append("ImageOps.setColor(" + name + "," + x + "," + y + ", new ColorTuple(");
+                    assignmentStatement.getExpr().visit(this, body);
+                    body.rparen().rparen().semi().newline();
                 }
+                sb.append(loopBody(body));
+                hoisted.clear();
             } else {
                 String name = assignmentStatement.getName();
                 String x = "x";
@@ -419,7 +868,7 @@ public class CodeGenVisitor implements ASTVisitor {
                 sb.append("for(int " + x + "= 0;" + x + " < " + name + ".getWidth();" + x + "++)").newline().tab().tab().append(
                         "for(int " + y + "= 0;" + y + " < " + name + ".getHeight();" + y + "++)").newline().tab().tab().tab();
 
-                if (assignmentStatement.getExpr().getType() == Type.COLOR) {
+                if (types.getType(assignmentStatement.getExpr()) == Type.COLOR) {
                     sb.append("ImageOps.setColor(" + name + "," + x + "," + y + ", Color." + val + ".getRGB()");
                     sb.rparen();
                 } else {
@@ -429,8 +878,8 @@ public class CodeGenVisitor implements ASTVisitor {
 
                 sb.semi().newline();
             }
-        } else if (assignmentStatement.getTargetDec().getType() == Type.IMAGE &&
-                assignmentStatement.getTargetDec().getDim() == null) {
+        } else if (types.getDec(assignmentStatement).getType() == Type.IMAGE &&
+                types.getDec(assignmentStatement).getDim() == null) {
             PixelSelector selector = assignmentStatement.getSelector();
 
             if (selector != null) {
@@ -441,10 +890,10 @@ public class CodeGenVisitor implements ASTVisitor {
                         "for(int " + y + "= 0;" + y + " < " + name + ".getHeight();" + y + "++)");
             }
         } else {
-            if (assignmentStatement.getExpr().getType() == Type.COLOR && assignmentStatement.getTargetDec().getType() == Type.INT) {
+            if (types.getType(assignmentStatement.getExpr()) == Type.COLOR && types.getDec(assignmentStatement).getType() == Type.INT) {
                 sb.append(assignmentStatement.getExpr().getText() + ".pack()").semi().newline();
-            } else if (assignmentStatement.getExpr().getType() == Type.INT && assignmentStatement.getTargetDec().getType() == Type.COLOR) {
-                sb.append(toStringType(assignmentStatement.getTargetDec().getType()) + " " + assignmentStatement.getName() + " = new ColorTuple(" + assignmentStatement.getExpr().getText()).rparen().semi().newline();
+            } else if (types.getType(assignmentStatement.getExpr()) == Type.INT && types.getDec(assignmentStatement).getType() == Type.COLOR) {
+                sb.append(toStringType(types.getDec(assignmentStatement).getType()) + " " + assignmentStatement.getName() + " = new ColorTuple(" + assignmentStatement.getExpr().getText()).rparen().semi().newline();
             } else {
                 sb.append(assignmentStatement.getName()).eq();
 
@@ -463,17 +912,17 @@ public class CodeGenVisitor implements ASTVisitor {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
         Expr source = writeStatement.getSource();
         Expr target = writeStatement.getDest();
-        Type sourceType = source.getType();
-        Type targetType = target.getType();
+        Type sourceType = types.getType(source);
+        Type targetType = types.getType(target);
 
         if (sourceType == Type.IMAGE && targetType == Type.CONSOLE) {
-            sb.append("ConsoleIO.displayImageOnScreen(" + source.getText()).rparen().semi().newline();
+            sb.append("ConsoleIO.displayImageOnScreen(" + imageText(source)).rparen().semi().newline();
         } else if (targetType == Type.CONSOLE) {
             sb.append("ConsoleIO.console.println(");
             source.visit(this, arg);
             sb.rparen().semi().newline();
         } else if (sourceType == Type.IMAGE && targetType == Type.STRING) {
-            sb.append("FileURLIO.writeImage(" + source.getText() + ", " + target.getText()).rparen().semi().newline();
+            sb.append("FileURLIO.writeImage(" + imageText(source) + ", " + target.getText()).rparen().semi().newline();
         }
         else if (targetType == Type.STRING) {
             sb.append("FileURLIO.writeValue(" + source.getText() + ", " + target.getText()).rparen().semi().newline();
@@ -485,7 +934,7 @@ public class CodeGenVisitor implements ASTVisitor {
     public Object visitReadStatement(ReadStatement readStatement, Object arg) throws Exception {
         CodeGenStringBuilder sb = (CodeGenStringBuilder) arg;
 
-        if (readStatement.getSource().getType() == Type.CONSOLE) {
+        if (types.getType(readStatement.getSource()) == Type.CONSOLE) {
             sb.append(readStatement.getName()).space().eq();
 
             Expr expr = readStatement.getSource();
@@ -493,18 +942,18 @@ public class CodeGenVisitor implements ASTVisitor {
 
             sb.semi();
         } else {
-            if (readStatement.getTargetDec().getType() == Type.IMAGE) {
-                if (readStatement.getTargetDec().getDim() != null) {
+            if (types.getDec(readStatement).getType() == Type.IMAGE) {
+                if (types.getDec(readStatement).getDim() != null) {
                     sb.append(readStatement.getName() + " = ImageOps.resize(FileURLIO.readImage(" + readStatement.getSource().getText()).rparen().comma().space();
-                    readStatement.getTargetDec().getDim().getWidth().visit(this ,arg);
+                    types.getDec(readStatement).getDim().getWidth().visit(this ,arg);
                     sb.comma().space();
-                    readStatement.getTargetDec().getDim().getHeight().visit(this ,arg);
+                    types.getDec(readStatement).getDim().getHeight().visit(this ,arg);
                     sb.rparen().semi();
                 } else {
-                    sb.append(readStatement.getName() +" = (" + toBoxedType(readStatement.getTargetDec().getType()) + ")FileURLIO.readImage(" + readStatement.getSource().getText()).rparen().semi();
+                    sb.append(readStatement.getName() +" = (" + toBoxedType(types.getDec(readStatement).getType()) + ")FileURLIO.readImage(" + readStatement.getSource().getText()).rparen().semi();
                 }
             } else {
-                sb.append(readStatement.getName() +" = (" + toBoxedType(readStatement.getTargetDec().getType()) + ")FileURLIO.readValueFromFile(" + readStatement.getSource().getText()).rparen().semi();
+                sb.append(readStatement.getName() +" = (" + toBoxedType(types.getDec(readStatement).getType()) + ")FileURLIO.readValueFromFile(" + readStatement.getSource().getText()).rparen().semi();
             }
         }
 
@@ -543,17 +992,37 @@ public class CodeGenVisitor implements ASTVisitor {
     public Object visitVarDeclaration(VarDeclaration declaration, Object arg) throws Exception {
         CodeGenStringBuilder sb= (CodeGenStringBuilder) arg;
 
+        if (lazyImages != null && types.isInitialized(declaration) && lazyImages.makeLazy(declaration, types)) {
+            if (buffers != null) {
+                buffers.escape(declaration.getExpr());
+            }
+            sb.append("LazyImage " + declaration.getName() + " = ");
+            if (declaration.getDim() != null) {
+                sb.append("LazyImage.resize(");
+                appendLazy(declaration.getExpr(), sb);
+                sb.comma().space();
+                declaration.getDim().visit(this, sb);
+                sb.rparen();
+            } else {
+                appendLazy(declaration.getExpr(), sb);
+            }
+            return sb.semi().newline();
+        }
         if (declaration.getType() == Type.IMAGE) {
-            if (!declaration.isInitialized()) {
+            if (!types.isInitialized(declaration)) {
                 Dimension dim = declaration.getDim();
-                if (dim != null) {
+                String buffer = buffers != null && dim != null ? buffers.take(declaration, false) : null;
+                if (buffer != null) {
+                    // a new image is black
+                    sb.append("BufferedImage " + declaration.getName() + " = ImageOps.clear(" + buffer).rparen().semi().newline();
+                } else if (dim != null) {
                     sb.append("BufferedImage " + declaration.getName() + "= new  BufferedImage(");
                     declaration.getDim().visit(this ,arg);
                     sb.append(", BufferedImage.TYPE_INT_RGB)").semi().newline();
                 }
             } else {
                 Dimension dim = declaration.getDim();
-                Type exprType = declaration.getExpr().getType();
+                Type exprType = types.getType(declaration.getExpr());
                 if (exprType == Type.STRING) {
                     if (dim != null) {
                         sb.append("BufferedImage " + declaration.getName() + " = ");
@@ -566,7 +1035,7 @@ public class CodeGenVisitor implements ASTVisitor {
                         sb.rparen().semi().newline();
                     }
                 } else if (exprType == Type.INT || exprType == Type.COLOR) {
-                    if (dim != null && declaration.getExpr().getType() == Type.COLOR || declaration.getExpr().getType() == Type.INT) {
+                    if (dim != null && types.getType(declaration.getExpr()) == Type.COLOR || types.getType(declaration.getExpr()) == Type.INT) {
                         sb.append("BufferedImage " + declaration.getName() + "= new  BufferedImage(" +
                                 dim.getWidth().getText() + "," + dim.getHeight().getText() + ", BufferedImage.TYPE_INT_RGB)").semi().newline();
 
@@ -578,7 +1047,7 @@ public class CodeGenVisitor implements ASTVisitor {
                         sb.tab().append("for(int " + x + "= 0;" + x + " < " + name + ".getWidth();" + x + "++)").newline().tab().tab().append(
                                 "for(int " + y + "= 0;" + y + " < " + name + ".getWidth();" + y + "++)").newline().tab().tab().tab();
 
-                        if (declaration.getExpr().getType() == Type.COLOR) {
+                        if (types.getType(declaration.getExpr()) == Type.COLOR) {
                             sb.append("ImageOps.setColor(" + name + "," + x + "," + y + ", Color." + val + ".getRGB()");
                             sb.rparen();
                         } else {
@@ -592,7 +1061,7 @@ public class CodeGenVisitor implements ASTVisitor {
                     String name = declaration.getName();
 
                     if (declaration.getDim() != null) {
-                        sb.append("BufferedImage " + name + " = ImageOps.resize(" + declaration.getExpr().getText());
+                        sb.append("BufferedImage " + name + " = ImageOps.resize(" + imageText(declaration.getExpr()));
                         sb.comma().space();
                         declaration.getDim().getWidth().visit(this, arg);
                         sb.comma().space();
@@ -600,7 +1069,9 @@ public class CodeGenVisitor implements ASTVisitor {
                         sb.rparen().semi().newline();
                     } else {
                         sb.append("BufferedImage " + name + " = ");
+                        reuseFor = buffers != null ? declaration : null;
                         declaration.getExpr().visit(this, arg);
+                        reuseFor = null;
                         sb.semi().newline();
                     }
 
@@ -610,7 +1081,7 @@ public class CodeGenVisitor implements ASTVisitor {
                 }
             }
         } else {
-            if (!declaration.isInitialized()) {
+            if (!types.isInitialized(declaration)) {
                 sb.append(toStringType(declaration.getType())).space().append(declaration.getName()).semi();
             } else {
                 if (declaration.getOp().getKind() == IToken.Kind.LARROW) {
@@ -625,7 +1096,7 @@ public class CodeGenVisitor implements ASTVisitor {
                     if (declaration.getType() == Type.IMAGE) {
                         sb.append("FileURLIO.readImage(" + path);
                     } else {
-                        if (declaration.getExpr().getType() == Type.CONSOLE) {
+                        if (types.getType(declaration.getExpr()) == Type.CONSOLE) {
                             declaration.getExpr().visit(this, arg);
                             sb.removeLast();
                         } else {
@@ -634,15 +1105,15 @@ public class CodeGenVisitor implements ASTVisitor {
                     }
                     sb.rparen().semi().newline();
                 } else {
-                    if (declaration.getExpr().getType() == Type.COLOR && declaration.getType() == Type.INT) {
+                    if (types.getType(declaration.getExpr()) == Type.COLOR && declaration.getType() == Type.INT) {
                         sb.append(toStringType(declaration.getType()) + " " + declaration.getName() + " = " + declaration.getExpr().getText() + ".pack()").semi().newline();
-                    }  else if (declaration.getExpr().getType() == Type.INT && declaration.getType() == Type.COLOR) {
+                    }  else if (types.getType(declaration.getExpr()) == Type.INT && declaration.getType() == Type.COLOR) {
                         sb.append(toStringType(declaration.getType()) + " " + declaration.getName() + " = new ColorTuple(" + declaration.getExpr().getText()).rparen().semi().newline();
                     } else {
                         sb.append(toStringType(declaration.getType()) + " ");
                         sb.append(declaration.getName()).eq();
                         Expr expr = declaration.getExpr();
-                        Type coerce = expr.getCoerceTo();
+                        Type coerce = types.getCoerceTo(expr);
 
                         if (coerce != null) {
                             sb.type(toStringType(coerce)).space();
@@ -654,6 +1125,9 @@ public class CodeGenVisitor implements ASTVisitor {
                 }
             }
         }
+        if (buffers != null && declaration.getType() == Type.IMAGE) {
+            buffers.declare(declaration, types);
+        }
 
         return sb;
     }
@@ -661,6 +1135,9 @@ public class CodeGenVisitor implements ASTVisitor {
     @Override
     public Object visitUnaryExprPostfix(UnaryExprPostfix unaryExprPostfix, Object arg) throws Exception {
         CodeGenStringBuilder sb=  (CodeGenStringBuilder) arg;
+        if (appendTemp(unaryExprPostfix, sb)) {
+            return sb;
+        }
         String name = unaryExprPostfix.getText();
         sb.append("ColorTuple.unpack(" + name + ".getRGB(");
 
@@ -0,0 +1,91 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.ast.AssignmentStatement;
+import edu.ufl.cise.plc.ast.ColorExpr;
+import edu.ufl.cise.plc.ast.InPlaceTypeInfo;
+import edu.ufl.cise.plc.ast.Program;
+
+class CommonSubexpressionTests extends CodeGenTestSupport {
+
+	CommonSubexpressionTests() {
+		super(EnumSet.of(Option.CSE));
+	}
+
+	@Test
+	void structurallyEqualExpressionsNumberedAlike() throws Exception {
+		Program program = typeChecked("""
+				image f(int size)
+				image[size, size] a;
+				a[x, y] = <<getRed(a[x, y]), getRed(a[x, y]), getBlue(a[x, y])>>;
+				^ a;
+				""");
+		ColorExpr color = (ColorExpr) ((AssignmentStatement) program.getDecsAndStatements().get(1)).getExpr();
+		ExprHashCons hashCons = new ExprHashCons(InPlaceTypeInfo.INSTANCE);
+		assertEquals(hashCons.number(color.getRed()), hashCons.number(color.getGreen()));
+		assertNotEquals(hashCons.number(color.getRed()), hashCons.number(color.getBlue()));
+	}
+
+	@Test
+	void pixelsReadOnce() throws Exception {
+		String input = """
+				image f(int size)
+				image[size, size] a;
+				a[x, y] = <<x, y, x + y>>;
+				image[size, size] b;
+				b[x, y] = <<getRed(a[x, y]) * 2, getRed(a[x, y]) * 2, getBlue(a[x, y])>>;
+				^ b;
+				""";
+		String code = code(input, EnumSet.of(Option.CSE));
+		assertEquals(1, count(code, "a.getRGB"));
+		assertEquals(1, count(code, "ColorTuple.getRed"));
+		checkSameResult(input, new Object[] { 50 });
+	}
+
+	@Test
+	void statementsShareTemporaries() throws Exception {
+		String input = """
+				int f(int a, int b)
+				int c = (a * b + 1) * (a * b + 1);
+				int d = (a * b + 1) - c;
+				^ d + (a * b + 1) * (a * b + 1);
+				""";
+		String code = code(input, EnumSet.of(Option.CSE));
+		//Temporaries only live for one statement
+		assertEquals(2, count(code, "final var"));
+		checkSameResult(input, new Object[] { 3, 4 });
+	}
+
+	@Test
+	void conditionalCasesNotComputedEarly() throws Exception {
+		String input = """
+				int f(int a, int b)
+				int d = if (b != 0) a / b + a / b else 0 fi;
+				^ if (a / 2 > 1) a / 2 else d fi;
+				""";
+		String code = code(input, EnumSet.of(Option.CSE));
+		assertEquals(0, count(code, "final var"));
+		assertEquals(0, exec(input, EnumSet.of(Option.CSE), new Object[] { 3, 0 }));
+		assertEquals(6, exec(input, EnumSet.of(Option.CSE), new Object[] { 12, 0 }));
+	}
+
+	@Test
+	void rightOperandsOfAndNotComputedEarly() throws Exception {
+		String input = """
+				int f(int n)
+				boolean ok = n != 0 & 10 / n + 10 / n > 1;
+				^ if (ok) 1 else 2 fi;
+				""";
+		String code = code(input, EnumSet.of(Option.CSE));
+		assertEquals(0, count(code, "final var"));
+		assertEquals(2, exec(input, EnumSet.of(Option.CSE), new Object[] { 0 }));
+		assertEquals(1, exec(input, EnumSet.of(Option.CSE), new Object[] { 4 }));
+	}
+}
@@ -0,0 +1,99 @@
+package edu.ufl.cise.plc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+
+// The common subexpressions of one declaration or statement: expressions that are evaluated more
+// than once with the same structure, so that the generated code can compute them once into a
+// temporary and use the temporary everywhere else.
+//
+// Only occurrences that are always evaluated count. The cases of a conditional expression may not be
+// evaluated, and neither may the right operand of & or |, which are generated as && and ||, so
+// computing their subexpressions before the statement could do work, or throw an exception, that the
+// program would not. Expressions that read the console are never shared, and
+// neither are identifiers and literals, which are as cheap as a temporary.
+class CommonSubexpressions {
+    private final ExprHashCons hashCons;
+    private final Map<Integer, Integer> occurrences = new HashMap<>();
+    private final Set<Integer> shared = new HashSet<>();
+    private final Map<Integer, String> temps = new HashMap<>();
+
+    CommonSubexpressions(ASTNode decOrStatement, TypeInfo types) {
+        hashCons = new ExprHashCons(types);
+        List<Expr> roots = roots(decOrStatement);
+        if (roots.stream().anyMatch(CommonSubexpressions::readsConsole)) {
+            return;
+        }
+        for (Expr root : roots) {
+            count(root);
+        }
+        occurrences.forEach((n, count) -> {
+            if (count > 1) {
+                shared.add(n);
+            }
+        });
+    }
+
+    private static List<Expr> roots(ASTNode node) {
+        List<Expr> roots = new ArrayList<>();
+        if (node instanceof VarDeclaration d) {
+            roots.add(d.getExpr());
+        } else if (node instanceof AssignmentStatement s) {
+            roots.add(s.getExpr());
+        } else if (node instanceof ReadStatement s) {
+            roots.add(s.getSource());
+        } else if (node instanceof WriteStatement s) {
+            roots.add(s.getSource());
+            roots.add(s.getDest());
+        } else if (node instanceof ReturnStatement s) {
+            roots.add(s.getExpr());
+        }
+        roots.removeIf(root -> root == null);
+        return roots;
+    }
+
+    private static boolean readsConsole(Expr expr) {
+        return expr instanceof ConsoleExpr || ExprHashCons.children(expr).stream().anyMatch(CommonSubexpressions::readsConsole);
+    }
+
+    // Counts the occurrences of expr and of the subexpressions that are evaluated whenever it is.
+    // A repeated occurrence is not looked into, as its subexpressions are computed with the first.
+    private void count(Expr expr) {
+        if (expr instanceof IdentExpr || expr instanceof IntLitExpr || expr instanceof FloatLitExpr
+                || expr instanceof BooleanLitExpr || expr instanceof StringLitExpr) {
+            return;
+        }
+        if (occurrences.merge(hashCons.number(expr), 1, Integer::sum) > 1) {
+            return;
+        }
+        if (expr instanceof ConditionalExpr e) {
+            count(e.getCondition());
+        } else if (expr instanceof BinaryExpr e && (e.getOp().getKind() == Kind.AND || e.getOp().getKind() == Kind.OR)) {
+            count(e.getLeft());
+        } else {
+            for (Expr child : ExprHashCons.children(expr)) {
+                count(child);
+            }
+        }
+    }
+
+    boolean isShared(Expr expr) {
+        return !shared.isEmpty() && shared.contains(hashCons.number(expr));
+    }
+
+    // Name of the temporary holding the value of expr, or null if it has not been declared yet
+    String getTemp(Expr expr) {
+        return temps.get(hashCons.number(expr));
+    }
+
+    void addTemp(Expr expr, String name) {
+        temps.put(hashCons.number(expr), name);
+    }
+}
@@ -5,6 +5,14 @@ package edu.ufl.cise.plc;
 
 
 import edu.ufl.cise.plc.ast.ASTVisitor;
+import edu.ufl.cise.plc.ast.InPlaceTypeInfo;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.ast.SideTableTypeInfo;
+import edu.ufl.cise.plc.ast.TypeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 public class CompilerComponentFactory {
 	
@@ -18,13 +26,86 @@ public class CompilerComponentFactory {
 		return new Parser(input);
 	}
 
+	// Like getParser, but the whole input is lexed into a TokenBuffer before parsing starts
+	public static IParser getBufferedParser(String input) {
+		return new Parser(new TokenBuffer(input));
+	}
+
+	// One lexer and one parser per thread, reset for each input instead of being reallocated
+	private static final ThreadLocal<Lexer> reusableLexer = ThreadLocal.withInitial(() -> new Lexer(""));
+	private static final ThreadLocal<Parser> reusableParser = ThreadLocal.withInitial(() -> new Parser(""));
+
+	// Like getLexer, but returns this thread's pooled lexer reset to the given input.
+	// The returned lexer is only valid until the next call to this method on the same thread.
+	public static ILexer getReusableLexer(String input) {
+		Lexer lexer = reusableLexer.get();
+		lexer.reset(input);
+		return lexer;
+	}
+
+	// Like getParser, but returns this thread's pooled parser reset to the given input.
+	// The returned parser is only valid until the next call to this method on the same thread.
+	public static IParser getReusableParser(String input) {
+		Parser parser = reusableParser.get();
+		parser.reset(input);
+		return parser;
+	}
+
+	// Returns a parser that adds lexical and syntax errors to the given list instead of throwing,
+	// resuming after the next ';'. parse() returns the AST of the parts that could be parsed.
+	public static Parser getValidatingParser(String input, List<Diagnostic> diagnostics) {
+		return new Parser(input, diagnostics);
+	}
+
+	// Checks the syntax of a program without building its AST and returns every error found.
+	public static List<Diagnostic> validate(String input) throws PLCException {
+		return new Parser(input, new ArrayList<>()).validate();
+	}
+
 	// This method will be invoked to get an instance of your TypeChecker.
     public static ASTVisitor getTypeChecker() {
 		return new TypeCheckVisitor();
     }
 
+	// Type checks program without modifying it, and returns the result as a frozen side table.
+	// Several threads can check and generate code for one parsed Program this way.
+	public static TypeInfo typeCheckWithSideTable(Program program) throws Exception {
+		SideTableTypeInfo types = new SideTableTypeInfo(program);
+		program.visit(new TypeCheckVisitor(types), null);
+		types.freeze();
+		return types;
+	}
+
+	// Returns the constant folding pass. Visiting a type checked Program with it returns the optimized
+	// Program to generate code from.
+	public static ASTVisitor getConstantFolder() {
+		return new ConstantFolder();
+	}
+
+	// Returns the dead code elimination pass. Visiting a type checked Program with it returns the
+	// Program without the declarations and statements listed by getRemoved().
+	public static DeadCodeEliminator getDeadCodeEliminator() {
+		return new DeadCodeEliminator();
+	}
+
 	// This method will be invoked to get an instance of your CodeGenerator.
 	public static ASTVisitor getCodeGenerator(String packageName) {
 		return new CodeGenVisitor(packageName);
 	}
+
+	// A code generator for a Program checked by typeCheckWithSideTable
+	public static ASTVisitor getCodeGenerator(String packageName, TypeInfo types) {
+		return new CodeGenVisitor(packageName, types);
+	}
+
+	// A code generator that applies the given optimizations to the code it generates
+	public static ASTVisitor getCodeGenerator(String packageName, Set<CodeGenVisitor.Option> options) {
+		return new CodeGenVisitor(packageName, InPlaceTypeInfo.INSTANCE, options);
+	}
+
+	// Returns a compiler that type checks and generates code in one pass. Compiling a Program with it
+	// returns the same Java source as visiting it with getTypeChecker() and then getCodeGenerator().
+	public static FusedCompiler getFusedCompiler(String packageName) {
+		return new FusedCompiler(packageName);
+	}
 }
@@ -0,0 +1,486 @@
+package edu.ufl.cise.plc;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+import edu.ufl.cise.plc.runtime.ColorTuple;
+import edu.ufl.cise.plc.runtime.ImageOps;
+
+//Optimization pass that runs on a type checked Program, before code generation. visitProgram returns
+//an equivalent Program in which expressions whose operands are constants are replaced by literals,
+//so they are computed once here instead of every time the generated code runs.
+//
+//Values are computed with the semantics of the generated code: int and float arithmetic as in Java,
+//the coercions the type checker recorded, and ColorTuple and ImageOps for colors, so that color
+//components are only truncated to [0, 256) when a color is packed into an int. Operations whose result
+//is not known here (division by zero, COLORFLOAT, images, strings) are left alone.
+//The value of a variable declared with = and never assigned or read into afterwards is used to fold
+//the expressions it appears in, and int and boolean values replace the variable itself.
+//
+//A value replaces an expression only when it can be written as a single literal: a non-negative int
+//or float, a boolean, or a color with non-negative int components. Other values are still used to fold
+//the expressions containing them.
+//
+//Nodes that do not change are shared between the given Program and the returned one, and some of them
+//are updated, so the given Program should not be used afterwards. The types must have been recorded
+//in the nodes, which is what CompilerComponentFactory.getTypeChecker() does.
+public class ConstantFolder implements ASTVisitor {
+
+	//Values of the expressions of the new Program that are known, before their coerceTo is applied
+	final Map<Expr, Object> values = new IdentityHashMap<>();
+	//Values of the variables that are constant
+	final Map<String, Object> constants = new HashMap<>();
+	//Names that are the target of an assignment or read statement, so are not constant
+	final Set<String> assignedNames = new HashSet<>();
+	//Declarations that have been rebuilt, so references to them can be updated
+	final Map<Declaration, Declaration> newDecs = new IdentityHashMap<>();
+
+	int folded;
+
+	//Number of expressions replaced by a literal
+	public int getFoldedCount() {
+		return folded;
+	}
+
+	@Override
+	public Object visitProgram(Program program, Object arg) throws Exception {
+		for (ASTNode node : program.getDecsAndStatements()) {
+			if (node instanceof AssignmentStatement s) {
+				assignedNames.add(s.getName());
+			} else if (node instanceof ReadStatement s) {
+				assignedNames.add(s.getName());
+			}
+		}
+		List<ASTNode> decsAndStatements = new ArrayList<>();
+		for (ASTNode node : program.getDecsAndStatements()) {
+			decsAndStatements.add((ASTNode) node.visit(this, arg));
+		}
+		return new Program(program.getFirstToken(), program.getReturnType(), program.getName(), program.getParams(), decsAndStatements);
+	}
+
+	//Value of expr, or null if it is not known
+	Object valueOf(Expr expr) {
+		if (expr instanceof IntLitExpr e) {
+			return e.getValue();
+		} else if (expr instanceof FloatLitExpr e) {
+			return e.getValue();
+		} else if (expr instanceof BooleanLitExpr e) {
+			return e.getValue();
+		}
+		return values.get(expr);
+	}
+
+	//Value of expr after its coerceTo has been applied, or null if it is not known
+	Object coercedValue(Expr expr) {
+		return coerce(valueOf(expr), expr.getType(), expr.getCoerceTo());
+	}
+
+	static Object coerce(Object value, Type from, Type to) {
+		if (value == null || to == null || to == from) {
+			return value;
+		}
+		if (from == Type.INT && to == Type.FLOAT) {
+			return (float) (Integer) value;
+		} else if (from == Type.FLOAT && to == Type.INT) {
+			return (int) (float) (Float) value;
+		} else if (from == Type.INT && to == Type.COLOR) {
+			return new ColorTuple((Integer) value);
+		} else if (from == Type.COLOR && to == Type.INT) {
+			return ((ColorTuple) value).pack();
+		}
+		return null;
+	}
+
+	//Returns the expression to use in place of original, given its rebuilt version and its value.
+	//The replacement keeps the type and coerceTo of original.
+	Expr fold(Expr original, Expr rebuilt, Object value) {
+		if (value == null) {
+			return rebuilt;
+		}
+		values.put(rebuilt, value);
+		if (rebuilt instanceof IntLitExpr || rebuilt instanceof FloatLitExpr || rebuilt instanceof BooleanLitExpr
+				|| !replaceable(original.getType(), original.getCoerceTo())) {
+			return rebuilt;
+		}
+		Expr literal = literal(value, original.getType(), original.getFirstToken());
+		if (literal == null) {
+			return rebuilt;
+		}
+		folded++;
+		values.put(literal, value);
+		return typed(literal, original);
+	}
+
+	//Literals and identifiers generate their coerceTo themselves, while the code generated for other
+	//expressions relies on the parent node for it. Both give the same code only for no coercion or a
+	//cast between int and float.
+	static boolean replaceable(Type type, Type coerceTo) {
+		return coerceTo == null || coerceTo == type
+				|| type == Type.INT && coerceTo == Type.FLOAT || type == Type.FLOAT && coerceTo == Type.INT;
+	}
+
+	//A literal for value, or null if it cannot be written as one
+	static Expr literal(Object value, Type type, IToken at) {
+		if (type == Type.INT && value instanceof Integer i && i >= 0) {
+			return new IntLitExpr(token(at, Kind.INT_LIT, Integer.toString(i), i));
+		} else if (type == Type.FLOAT && value instanceof Float f && Float.isFinite(f) && Float.floatToIntBits(f) >= 0) {
+			return new FloatLitExpr(token(at, Kind.FLOAT_LIT, Float.toString(f), f));
+		} else if (type == Type.BOOLEAN && value instanceof Boolean b) {
+			return new BooleanLitExpr(token(at, Kind.BOOLEAN_LIT, b.toString(), b));
+		} else if (type == Type.COLOR && value instanceof ColorTuple c && c.red >= 0 && c.green >= 0 && c.blue >= 0) {
+			Expr red = literal(c.red, Type.INT, at);
+			Expr green = literal(c.green, Type.INT, at);
+			Expr blue = literal(c.blue, Type.INT, at);
+			red.setType(Type.INT);
+			green.setType(Type.INT);
+			blue.setType(Type.INT);
+			return new ColorExpr(token(at, Kind.LANGLE, "<<", null), red, green, blue);
+		}
+		return null;
+	}
+
+	//A token at the location of at
+	static IToken token(IToken at, Kind kind, String text, Object value) {
+		Token t = (Token) at;
+		if (value instanceof Integer i) {
+			return new Token(kind, text, t.getOffset(), t.getLineMap(), i);
+		} else if (value instanceof Float f) {
+			return new Token(kind, text, t.getOffset(), t.getLineMap(), f);
+		} else if (value instanceof Boolean b) {
+			return new Token(kind, text, t.getOffset(), t.getLineMap(), b);
+		}
+		return new Token(kind, text, t.getOffset(), t.getLineMap());
+	}
+
+	static <T extends Expr> T typed(T node, Expr like) {
+		node.setType(like.getType());
+		node.setCoerceTo(like.getCoerceTo());
+		return node;
+	}
+
+	@Override
+	public Object visitBooleanLitExpr(BooleanLitExpr booleanLitExpr, Object arg) throws Exception {
+		return booleanLitExpr;
+	}
+
+	@Override
+	public Object visitStringLitExpr(StringLitExpr stringLitExpr, Object arg) throws Exception {
+		return stringLitExpr;
+	}
+
+	@Override
+	public Object visitIntLitExpr(IntLitExpr intLitExpr, Object arg) throws Exception {
+		return intLitExpr;
+	}
+
+	@Override
+	public Object visitFloatLitExpr(FloatLitExpr floatLitExpr, Object arg) throws Exception {
+		return floatLitExpr;
+	}
+
+	//Color constants are the constants of java.awt.Color with the same name
+	@Override
+	public Object visitColorConstExpr(ColorConstExpr colorConstExpr, Object arg) throws Exception {
+		Color color = (Color) Color.class.getField(colorConstExpr.getText()).get(null);
+		values.put(colorConstExpr, ColorTuple.unpack(color.getRGB()));
+		return colorConstExpr;
+	}
+
+	@Override
+	public Object visitConsoleExpr(ConsoleExpr consoleExpr, Object arg) throws Exception {
+		return consoleExpr;
+	}
+
+	@Override
+	public Object visitColorExpr(ColorExpr colorExpr, Object arg) throws Exception {
+		Expr red = (Expr) colorExpr.getRed().visit(this, arg);
+		Expr green = (Expr) colorExpr.getGreen().visit(this, arg);
+		Expr blue = (Expr) colorExpr.getBlue().visit(this, arg);
+		ColorExpr rebuilt = colorExpr;
+		if (red != colorExpr.getRed() || green != colorExpr.getGreen() || blue != colorExpr.getBlue()) {
+			rebuilt = typed(new ColorExpr(colorExpr.getFirstToken(), red, green, blue), colorExpr);
+		}
+		Object value = null;
+		if (colorExpr.getType() == Type.COLOR && coercedValue(red) instanceof Integer r
+				&& coercedValue(green) instanceof Integer g && coercedValue(blue) instanceof Integer b) {
+			value = new ColorTuple(r, g, b);
+		}
+		//A color whose components are literals is already as folded as it can be
+		if (value != null && rebuilt == colorExpr) {
+			values.put(colorExpr, value);
+			return colorExpr;
+		}
+		return fold(colorExpr, rebuilt, value);
+	}
+
+	@Override
+	public Object visitUnaryExpr(UnaryExpr unaryExpr, Object arg) throws Exception {
+		Expr e = (Expr) unaryExpr.getExpr().visit(this, arg);
+		UnaryExpr rebuilt = unaryExpr;
+		if (e != unaryExpr.getExpr()) {
+			rebuilt = typed(new UnaryExpr(unaryExpr.getFirstToken(), unaryExpr.getOp(), e), unaryExpr);
+		}
+		return fold(unaryExpr, rebuilt, unary(unaryExpr.getOp(), coercedValue(e)));
+	}
+
+	static Object unary(IToken op, Object value) {
+		switch (op.getKind()) {
+			case BANG:
+				return value instanceof Boolean b ? !b : null;
+			case MINUS:
+				if (value instanceof Integer i) {
+					return -i;
+				}
+				return value instanceof Float f ? -f : null;
+			case COLOR_OP:
+				if (value instanceof ColorTuple c) {
+					return switch (op.getText()) {
+						case "getRed" -> ColorTuple.getRed(c);
+						case "getGreen" -> ColorTuple.getGreen(c);
+						default -> ColorTuple.getBlue(c);
+					};
+				} else if (value instanceof Integer packed) {
+					return switch (op.getText()) {
+						case "getRed" -> ColorTuple.getRed(packed);
+						case "getGreen" -> ColorTuple.getGreen(packed);
+						default -> ColorTuple.getBlue(packed);
+					};
+				}
+				return null;
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	public Object visitBinaryExpr(BinaryExpr binaryExpr, Object arg) throws Exception {
+		Expr left = (Expr) binaryExpr.getLeft().visit(this, arg);
+		Expr right = (Expr) binaryExpr.getRight().visit(this, arg);
+		BinaryExpr rebuilt = binaryExpr;
+		if (left != binaryExpr.getLeft() || right != binaryExpr.getRight()) {
+			rebuilt = typed(new BinaryExpr(binaryExpr.getFirstToken(), left, binaryExpr.getOp(), right), binaryExpr);
+		}
+		Kind op = binaryExpr.getOp().getKind();
+		Object l = coercedValue(left);
+		Object r = coercedValue(right);
+		//&& and || do not evaluate the right operand when the left one decides the result
+		if (op == Kind.AND && Boolean.FALSE.equals(l) || op == Kind.OR && Boolean.TRUE.equals(l)) {
+			return fold(binaryExpr, rebuilt, l);
+		}
+		return fold(binaryExpr, rebuilt, l == null || r == null ? null : binary(op, l, r));
+	}
+
+	static Object binary(Kind op, Object l, Object r) {
+		if (l instanceof Integer a && r instanceof Integer b) {
+			return switch (op) {
+				case PLUS -> a + b;
+				case MINUS -> a - b;
+				case TIMES -> a * b;
+				case DIV -> b == 0 ? null : a / b;
+				case MOD -> b == 0 ? null : a % b;
+				case LT -> a < b;
+				case LE -> a <= b;
+				case GT -> a > b;
+				case GE -> a >= b;
+				case EQUALS -> a.intValue() == b.intValue();
+				case NOT_EQUALS -> a.intValue() != b.intValue();
+				default -> null;
+			};
+		} else if (l instanceof Float a && r instanceof Float b) {
+			return switch (op) {
+				case PLUS -> a + b;
+				case MINUS -> a - b;
+				case TIMES -> a * b;
+				case DIV -> a / b;
+				case MOD -> a % b;
+				case LT -> a < b;
+				case LE -> a <= b;
+				case GT -> a > b;
+				case GE -> a >= b;
+				case EQUALS -> a.floatValue() == b.floatValue();
+				case NOT_EQUALS -> a.floatValue() != b.floatValue();
+				default -> null;
+			};
+		} else if (l instanceof Boolean a && r instanceof Boolean b) {
+			return switch (op) {
+				case AND -> a && b;
+				case OR -> a || b;
+				case EQUALS -> a.booleanValue() == b.booleanValue();
+				case NOT_EQUALS -> a.booleanValue() != b.booleanValue();
+				default -> null;
+			};
+		} else if (l instanceof ColorTuple a && r instanceof ColorTuple b) {
+			try {
+				return switch (op) {
+					case PLUS, MINUS, TIMES, DIV, MOD -> ImageOps.binaryTupleOp(ImageOps.OP.valueOf(op.name()), a, b);
+					case EQUALS, NOT_EQUALS -> ImageOps.binaryTupleOp(ImageOps.BoolOP.valueOf(op.name()), a, b);
+					default -> null;
+				};
+			} catch (ArithmeticException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Object visitIdentExpr(IdentExpr identExpr, Object arg) throws Exception {
+		Declaration dec = newDecs.get(identExpr.getDec());
+		if (dec != null) {
+			identExpr.setDec(dec);
+		}
+		Object value = constants.get(identExpr.getText());
+		//The code generator copies the text of some identifiers as is, which only gives the same value
+		//for an int or boolean literal
+		if (value instanceof Integer || value instanceof Boolean) {
+			return fold(identExpr, identExpr, value);
+		}
+		if (value != null) {
+			values.put(identExpr, value);
+		}
+		return identExpr;
+	}
+
+	@Override
+	public Object visitConditionalExpr(ConditionalExpr conditionalExpr, Object arg) throws Exception {
+		Expr condition = (Expr) conditionalExpr.getCondition().visit(this, arg);
+		Expr trueCase = (Expr) conditionalExpr.getTrueCase().visit(this, arg);
+		Expr falseCase = (Expr) conditionalExpr.getFalseCase().visit(this, arg);
+		ConditionalExpr rebuilt = conditionalExpr;
+		if (condition != conditionalExpr.getCondition() || trueCase != conditionalExpr.getTrueCase()
+				|| falseCase != conditionalExpr.getFalseCase()) {
+			rebuilt = typed(new ConditionalExpr(conditionalExpr.getFirstToken(), condition, trueCase, falseCase), conditionalExpr);
+		}
+		//Only the case that is chosen is evaluated, so it can replace the whole expression
+		if (coercedValue(condition) instanceof Boolean c
+				&& replaceable(conditionalExpr.getType(), conditionalExpr.getCoerceTo())) {
+			Expr chosen = c ? trueCase : falseCase;
+			chosen.setCoerceTo(conditionalExpr.getCoerceTo());
+			folded++;
+			return fold(conditionalExpr, chosen, valueOf(chosen));
+		}
+		return rebuilt;
+	}
+
+	@Override
+	public Object visitDimension(Dimension dimension, Object arg) throws Exception {
+		Expr width = (Expr) dimension.getWidth().visit(this, arg);
+		Expr height = (Expr) dimension.getHeight().visit(this, arg);
+		if (width == dimension.getWidth() && height == dimension.getHeight()) {
+			return dimension;
+		}
+		return new Dimension(dimension.getFirstToken(), width, height);
+	}
+
+	@Override
+	public Object visitPixelSelector(PixelSelector pixelSelector, Object arg) throws Exception {
+		Expr x = (Expr) pixelSelector.getX().visit(this, arg);
+		Expr y = (Expr) pixelSelector.getY().visit(this, arg);
+		if (x == pixelSelector.getX() && y == pixelSelector.getY()) {
+			return pixelSelector;
+		}
+		return new PixelSelector(pixelSelector.getFirstToken(), x, y);
+	}
+
+	@Override
+	public Object visitAssignmentStatement(AssignmentStatement assignmentStatement, Object arg) throws Exception {
+		PixelSelector selector = assignmentStatement.getSelector() == null ? null
+				: (PixelSelector) assignmentStatement.getSelector().visit(this, arg);
+		Expr expr = (Expr) assignmentStatement.getExpr().visit(this, arg);
+		Declaration targetDec = newDecs.getOrDefault(assignmentStatement.getTargetDec(), assignmentStatement.getTargetDec());
+		if (selector == assignmentStatement.getSelector() && expr == assignmentStatement.getExpr()) {
+			assignmentStatement.setTargetDec(targetDec);
+			return assignmentStatement;
+		}
+		AssignmentStatement rebuilt = new AssignmentStatement(assignmentStatement.getFirstToken(), assignmentStatement.getName(), selector, expr);
+		rebuilt.setTargetDec(targetDec);
+		return rebuilt;
+	}
+
+	@Override
+	public Object visitWriteStatement(WriteStatement writeStatement, Object arg) throws Exception {
+		Expr source = (Expr) writeStatement.getSource().visit(this, arg);
+		Expr dest = (Expr) writeStatement.getDest().visit(this, arg);
+		if (source == writeStatement.getSource() && dest == writeStatement.getDest()) {
+			return writeStatement;
+		}
+		return new WriteStatement(writeStatement.getFirstToken(), source, dest);
+	}
+
+	//The source of a read is a string or console, which are never folded
+	@Override
+	public Object visitReadStatement(ReadStatement readStatement, Object arg) throws Exception {
+		Declaration targetDec = newDecs.get(readStatement.getTargetDec());
+		if (targetDec != null) {
+			readStatement.setTargetDec(targetDec);
+		}
+		return readStatement;
+	}
+
+	@Override
+	public Object visitNameDef(NameDef nameDef, Object arg) throws Exception {
+		return nameDef;
+	}
+
+	@Override
+	public Object visitNameDefWithDim(NameDefWithDim nameDefWithDim, Object arg) throws Exception {
+		Dimension dim = (Dimension) nameDefWithDim.getDim().visit(this, arg);
+		if (dim == nameDefWithDim.getDim()) {
+			return nameDefWithDim;
+		}
+		NameDefWithDim rebuilt = new NameDefWithDim(nameDefWithDim.getFirstToken(),
+				nameDefWithDim.getType().name().toLowerCase(), nameDefWithDim.getName(), dim);
+		rebuilt.setInitialized(nameDefWithDim.isInitialized());
+		rebuilt.setSlot(nameDefWithDim.getSlot());
+		newDecs.put(nameDefWithDim, rebuilt);
+		return rebuilt;
+	}
+
+	@Override
+	public Object visitReturnStatement(ReturnStatement returnStatement, Object arg) throws Exception {
+		Expr expr = (Expr) returnStatement.getExpr().visit(this, arg);
+		if (expr == returnStatement.getExpr()) {
+			return returnStatement;
+		}
+		return new ReturnStatement(returnStatement.getFirstToken(), expr);
+	}
+
+	@Override
+	public Object visitVarDeclaration(VarDeclaration declaration, Object arg) throws Exception {
+		NameDef nameDef = (NameDef) declaration.getNameDef().visit(this, arg);
+		Expr expr = declaration.getExpr() == null ? null : (Expr) declaration.getExpr().visit(this, arg);
+		if (expr != null && declaration.getOp().getKind() == Kind.ASSIGN && !assignedNames.contains(declaration.getName())) {
+			Object value = coercedValue(expr);
+			Type type = declaration.getType();
+			if (value != null && (type == Type.INT || type == Type.FLOAT || type == Type.BOOLEAN || type == Type.COLOR)) {
+				constants.put(declaration.getName(), value);
+			}
+		}
+		if (nameDef == declaration.getNameDef() && expr == declaration.getExpr()) {
+			return declaration;
+		}
+		VarDeclaration rebuilt = new VarDeclaration(declaration.getFirstToken(), nameDef, declaration.getOp(), expr);
+		rebuilt.setInitialized(declaration.isInitialized());
+		rebuilt.setSlot(declaration.getSlot());
+		return rebuilt;
+	}
+
+	@Override
+	public Object visitUnaryExprPostfix(UnaryExprPostfix unaryExprPostfix, Object arg) throws Exception {
+		Expr e = (Expr) unaryExprPostfix.getExpr().visit(this, arg);
+		PixelSelector selector = (PixelSelector) unaryExprPostfix.getSelector().visit(this, arg);
+		if (e == unaryExprPostfix.getExpr() && selector == unaryExprPostfix.getSelector()) {
+			return unaryExprPostfix;
+		}
+		return typed(new UnaryExprPostfix(unaryExprPostfix.getFirstToken(), e, selector), unaryExprPostfix);
+	}
+}
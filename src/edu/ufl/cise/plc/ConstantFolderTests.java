@@ -0,0 +1,131 @@
+package edu.ufl.cise.plc;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.BinaryExpr;
+import edu.ufl.cise.plc.ast.ColorExpr;
+import edu.ufl.cise.plc.ast.Expr;
+import edu.ufl.cise.plc.ast.FloatLitExpr;
+import edu.ufl.cise.plc.ast.IntLitExpr;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.ast.VarDeclaration;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicClassLoader;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicCompiler;
+
+class ConstantFolderTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Program typeChecked(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		return program;
+	}
+
+	Program folded(String input) throws Exception {
+		return (Program) typeChecked(input).visit(CompilerComponentFactory.getConstantFolder(), null);
+	}
+
+	Object exec(Program program, Object[] params) throws Exception {
+		String javaCode = (String) program.visit(CompilerComponentFactory.getCodeGenerator(""), null);
+		show(javaCode);
+		byte[] byteCode = DynamicCompiler.compile(program.getName(), javaCode);
+		return DynamicClassLoader.loadClassAndRunMethod(byteCode, program.getName(), "apply", params);
+	}
+
+	//Checks that the program gives the same result with and without folding, and returns the folded Program
+	Program checkSameResult(String input, Object[] params, Object expected) throws Exception {
+		Program program = folded(input);
+		show(program);
+		assertEquals(expected, exec(program, params));
+		assertEquals(exec(typeChecked(input), params), exec(folded(input), params));
+		return program;
+	}
+
+	Expr initializer(Program program, int index) {
+		return ((VarDeclaration) program.getDecsAndStatements().get(index)).getExpr();
+	}
+
+	@Test
+	void foldsArithmeticAndCoercions() throws Exception {
+		String input = """
+				float f()
+				int a = 7 / 2 + 3 * 4;
+				float b = a / 2.0 + 1;
+				^ b;
+				""";
+		Program program = checkSameResult(input, null, 8.5f);
+		assertThat(initializer(program, 0), instanceOf(IntLitExpr.class));
+		assertEquals(15, ((IntLitExpr) initializer(program, 0)).getValue());
+		assertThat(initializer(program, 1), instanceOf(FloatLitExpr.class));
+		assertEquals(8.5f, ((FloatLitExpr) initializer(program, 1)).getValue());
+	}
+
+	@Test
+	void colorsTruncatedWhenPacked() throws Exception {
+		String input = """
+				int f()
+				color c = <<255/2, 0, 128+1>> * <<3, 1, 2>>;
+				int p = c;
+				int r = getRed c;
+				^ p + r;
+				""";
+		Program program = checkSameResult(input, null, exec(typeChecked(input), null));
+		assertThat(initializer(program, 0), instanceOf(ColorExpr.class));
+		assertThat(initializer(program, 2), instanceOf(IntLitExpr.class));
+		//getRed is applied to the color before it is packed
+		assertEquals(381, ((IntLitExpr) initializer(program, 2)).getValue());
+	}
+
+	@Test
+	void conditionalWithConstantCondition() throws Exception {
+		String input = """
+				int a()
+				int k = 3;
+				int c = (if (5<6) k else 4 fi)*6;
+				int d = if (k > 4) c else c + 1 fi;
+				^ d;
+				""";
+		Program program = checkSameResult(input, null, 19);
+		assertEquals(18, ((IntLitExpr) initializer(program, 1)).getValue());
+		assertEquals(19, ((IntLitExpr) initializer(program, 2)).getValue());
+	}
+
+	@Test
+	void assignedVariablesNotPropagated() throws Exception {
+		String input = """
+				int f(int n)
+				int a = 2;
+				int b = a * 3;
+				a = n;
+				int k = 4;
+				int m = k * k + 1;
+				^ b + a * m;
+				""";
+		Program program = checkSameResult(input, new Object[] { 5 }, 91);
+		assertThat(initializer(program, 1), instanceOf(BinaryExpr.class));
+		assertEquals(17, ((IntLitExpr) initializer(program, 4)).getValue());
+	}
+
+	@Test
+	void conditionalOperands() throws Exception {
+		String input = """
+				float f(int n)
+				int k = 4;
+				float a = (if (k > 3) 2 else 5 fi) * 1.5;
+				^ a + (if (n > 3) 2 else 5 fi) * 1.5;
+				""";
+		checkSameResult(input, new Object[] { 1 }, 10.5f);
+		checkSameResult(input, new Object[] { 4 }, 6.0f);
+	}
+}
@@ -0,0 +1,274 @@
+package edu.ufl.cise.plc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+//Optimization pass that runs on a type checked Program, before code generation. visitProgram returns
+//the Program without the declarations, assignments and reads whose values are never used, so that the
+//generated code does not read files or allocate images for nothing.
+//
+//The declarations and statements are visited from last to first, keeping the names whose current
+//value may still be used (the live names). An assignment or read is removed if its target is not live,
+//and a declaration is removed if its name is not live and no statement that is kept refers to it.
+//Write and return statements are always kept, as are reads from the console, which consume input.
+//An assignment to a single pixel only changes part of the image, so it does not end the live range of
+//the image, and neither do statements on images with a size, which use the size of their target.
+//An image variable declared as another image shares that image, so a pixel assignment is kept while
+//any variable that may refer to the same image, as found by PixelAliases, is live.
+//
+//A declaration or assignment whose expression can throw is kept, so the program fails where it did
+//before: an int or color division or remainder by anything other than a nonzero int literal, a pixel
+//read, which can be outside the image, and an operation on two images, which can differ in size.
+//Reads of images and values from files are removed even though the file may not exist, as not
+//reading them is the point of the pass.
+//
+//Expressions have no side effects other than reading the console, so the visit methods for
+//expressions add the names they use to the Set<String> arg.
+public class DeadCodeEliminator implements ASTVisitor {
+
+	final TypeInfo types;
+	//Names whose current value may be used by the statements visited so far
+	final Set<String> live = new HashSet<>();
+	//Names used or assigned by the statements that are kept
+	final Set<String> referenced = new HashSet<>();
+	final List<ASTNode> removed = new ArrayList<>();
+	//The image variables that may refer to the same image
+	PixelAliases aliases;
+
+	public DeadCodeEliminator() {
+		this(InPlaceTypeInfo.INSTANCE);
+	}
+
+	public DeadCodeEliminator(TypeInfo types) {
+		this.types = types;
+	}
+
+	//Declarations and statements removed by visitProgram, in program order
+	public List<ASTNode> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	@Override
+	public Object visitProgram(Program program, Object arg) throws Exception {
+		aliases = new PixelAliases(program, types);
+		List<ASTNode> decsAndStatements = program.getDecsAndStatements();
+		boolean[] keep = new boolean[decsAndStatements.size()];
+		for (int i = decsAndStatements.size() - 1; i >= 0; i--) {
+			keep[i] = (Boolean) decsAndStatements.get(i).visit(this, arg);
+		}
+		List<ASTNode> kept = new ArrayList<>();
+		for (int i = 0; i < keep.length; i++) {
+			(keep[i] ? kept : removed).add(decsAndStatements.get(i));
+		}
+		if (removed.isEmpty()) {
+			return program;
+		}
+		return new Program(program.getFirstToken(), program.getReturnType(), program.getName(), program.getParams(), kept);
+	}
+
+	//Adds the names used by node to live and referenced
+	void use(ASTNode node) throws Exception {
+		if (node != null) {
+			Set<String> names = new HashSet<>();
+			node.visit(this, names);
+			live.addAll(names);
+			referenced.addAll(names);
+		}
+	}
+
+	//Whether the current value of name, or of an image it may refer to, may be used
+	boolean isLive(String name) {
+		for (String other : live) {
+			if (other.equals(name) || aliases.mayAlias(name, other)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//Whether evaluating expr can throw
+	boolean canFail(Expr expr) {
+		if (expr == null) {
+			return false;
+		}
+		if (expr instanceof UnaryExprPostfix) {
+			return true;
+		}
+		if (expr instanceof BinaryExpr e) {
+			Kind op = e.getOp().getKind();
+			if ((op == Kind.DIV || op == Kind.MOD) && types.getType(e) != Type.FLOAT
+					&& !(e.getRight() instanceof IntLitExpr i && i.getValue() != 0)) {
+				return true;
+			}
+			if (types.getType(e.getLeft()) == Type.IMAGE && types.getType(e.getRight()) == Type.IMAGE) {
+				return true;
+			}
+		}
+		for (Expr child : ExprHashCons.children(expr)) {
+			if (canFail(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//Whether a statement with the given target ends the live range of the target's previous value
+	boolean killsTarget(Declaration target, PixelSelector selector) {
+		return selector == null && !(target.getType() == Type.IMAGE && target.getDim() != null);
+	}
+
+	@Override
+	public Object visitAssignmentStatement(AssignmentStatement assignmentStatement, Object arg) throws Exception {
+		String name = assignmentStatement.getName();
+		if (!isLive(name) && !canFail(assignmentStatement.getExpr())) {
+			return false;
+		}
+		Declaration target = types.getDec(assignmentStatement);
+		if (killsTarget(target, assignmentStatement.getSelector())) {
+			live.remove(name);
+		}
+		referenced.add(name);
+		use(assignmentStatement.getExpr());
+		use(target.getDim());
+		return true;
+	}
+
+	@Override
+	public Object visitReadStatement(ReadStatement readStatement, Object arg) throws Exception {
+		String name = readStatement.getName();
+		if (!live.contains(name) && !(readStatement.getSource() instanceof ConsoleExpr)) {
+			return false;
+		}
+		Declaration target = types.getDec(readStatement);
+		if (killsTarget(target, readStatement.getSelector())) {
+			live.remove(name);
+		}
+		referenced.add(name);
+		use(readStatement.getSource());
+		use(target.getDim());
+		return true;
+	}
+
+	@Override
+	public Object visitVarDeclaration(VarDeclaration declaration, Object arg) throws Exception {
+		String name = declaration.getName();
+		if (!live.contains(name) && !referenced.contains(name) && !(declaration.getExpr() instanceof ConsoleExpr)
+				&& !canFail(declaration.getExpr())) {
+			return false;
+		}
+		live.remove(name);
+		use(declaration.getExpr());
+		use(declaration.getDim());
+		return true;
+	}
+
+	@Override
+	public Object visitWriteStatement(WriteStatement writeStatement, Object arg) throws Exception {
+		use(writeStatement.getSource());
+		use(writeStatement.getDest());
+		return true;
+	}
+
+	@Override
+	public Object visitReturnStatement(ReturnStatement returnStatement, Object arg) throws Exception {
+		use(returnStatement.getExpr());
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Object visitIdentExpr(IdentExpr identExpr, Object arg) throws Exception {
+		((Set<String>) arg).add(identExpr.getText());
+		return arg;
+	}
+
+	@Override
+	public Object visitBooleanLitExpr(BooleanLitExpr booleanLitExpr, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitStringLitExpr(StringLitExpr stringLitExpr, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitIntLitExpr(IntLitExpr intLitExpr, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitFloatLitExpr(FloatLitExpr floatLitExpr, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitColorConstExpr(ColorConstExpr colorConstExpr, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitConsoleExpr(ConsoleExpr consoleExpr, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitColorExpr(ColorExpr colorExpr, Object arg) throws Exception {
+		colorExpr.getRed().visit(this, arg);
+		colorExpr.getGreen().visit(this, arg);
+		return colorExpr.getBlue().visit(this, arg);
+	}
+
+	@Override
+	public Object visitUnaryExpr(UnaryExpr unaryExpression, Object arg) throws Exception {
+		return unaryExpression.getExpr().visit(this, arg);
+	}
+
+	@Override
+	public Object visitBinaryExpr(BinaryExpr binaryExpr, Object arg) throws Exception {
+		binaryExpr.getLeft().visit(this, arg);
+		return binaryExpr.getRight().visit(this, arg);
+	}
+
+	@Override
+	public Object visitConditionalExpr(ConditionalExpr conditionalExpr, Object arg) throws Exception {
+		conditionalExpr.getCondition().visit(this, arg);
+		conditionalExpr.getTrueCase().visit(this, arg);
+		return conditionalExpr.getFalseCase().visit(this, arg);
+	}
+
+	@Override
+	public Object visitDimension(Dimension dimension, Object arg) throws Exception {
+		dimension.getWidth().visit(this, arg);
+		return dimension.getHeight().visit(this, arg);
+	}
+
+	@Override
+	public Object visitPixelSelector(PixelSelector pixelSelector, Object arg) throws Exception {
+		pixelSelector.getX().visit(this, arg);
+		return pixelSelector.getY().visit(this, arg);
+	}
+
+	@Override
+	public Object visitUnaryExprPostfix(UnaryExprPostfix unaryExprPostfix, Object arg) throws Exception {
+		unaryExprPostfix.getExpr().visit(this, arg);
+		return unaryExprPostfix.getSelector().visit(this, arg);
+	}
+
+	@Override
+	public Object visitNameDef(NameDef nameDef, Object arg) throws Exception {
+		return arg;
+	}
+
+	@Override
+	public Object visitNameDefWithDim(NameDefWithDim nameDefWithDim, Object arg) throws Exception {
+		return nameDefWithDim.getDim().visit(this, arg);
+	}
+}
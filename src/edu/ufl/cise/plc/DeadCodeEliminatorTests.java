@@ -0,0 +1,184 @@
+package edu.ufl.cise.plc;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.ASTNode;
+import edu.ufl.cise.plc.ast.AssignmentStatement;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.ast.ReadStatement;
+import edu.ufl.cise.plc.ast.VarDeclaration;
+import edu.ufl.cise.plc.ast.WriteStatement;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicClassLoader;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicCompiler;
+
+class DeadCodeEliminatorTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Program typeChecked(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		return program;
+	}
+
+	String code(Program program) throws Exception {
+		String javaCode = (String) program.visit(CompilerComponentFactory.getCodeGenerator(""), null);
+		show(javaCode);
+		return javaCode;
+	}
+
+	Object exec(Program program, Object[] params) throws Exception {
+		byte[] byteCode = DynamicCompiler.compile(program.getName(), code(program));
+		return DynamicClassLoader.loadClassAndRunMethod(byteCode, program.getName(), "apply", params);
+	}
+
+	String names(List<ASTNode> nodes) {
+		StringBuilder sb = new StringBuilder();
+		for (ASTNode node : nodes) {
+			if (node instanceof VarDeclaration d) {
+				sb.append(d.getName());
+			} else if (node instanceof AssignmentStatement s) {
+				sb.append(s.getName()).append('=');
+			} else if (node instanceof ReadStatement s) {
+				sb.append(s.getName()).append("<-");
+			}
+			sb.append(' ');
+		}
+		return sb.toString().trim();
+	}
+
+	@Test
+	void unusedImagesNotReadOrAllocated() throws Exception {
+		String input = """
+				image f(string url, int size)
+				image[size, size] a;
+				a[x, y] = <<x, 0, y>>;
+				image b <- url;
+				image c <- url;
+				image[size, size] d;
+				d[x, y] = <<x, y, 0>>;
+				int w = getWidth c;
+				c <- url;
+				write "done" -> console;
+				^ a;
+				""";
+		DeadCodeEliminator eliminator = CompilerComponentFactory.getDeadCodeEliminator();
+		Program program = (Program) typeChecked(input).visit(eliminator, null);
+		show(program);
+		assertEquals("b c d d= w c<-", names(eliminator.getRemoved()));
+		assertEquals(4, program.getDecsAndStatements().size());
+		assertFalse(code(program).contains("readImage"));
+		//The url is never read, so it does not have to exist
+		BufferedImage image = (BufferedImage) exec(program, new Object[] { "no such file", 10 });
+		assertEquals(10, image.getWidth());
+	}
+
+	@Test
+	void sideEffectsKept() throws Exception {
+		String input = """
+				int f(string file)
+				int a = 3;
+				int b <- console;
+				write a -> file;
+				int c = a * 2;
+				c = 7;
+				c <- file;
+				^ 0;
+				""";
+		DeadCodeEliminator eliminator = CompilerComponentFactory.getDeadCodeEliminator();
+		Program program = (Program) typeChecked(input).visit(eliminator, null);
+		show(program);
+		assertEquals("c c= c<-", names(eliminator.getRemoved()));
+		List<ASTNode> kept = program.getDecsAndStatements();
+		assertEquals("a", ((VarDeclaration) kept.get(0)).getName());
+		assertEquals("b", ((VarDeclaration) kept.get(1)).getName());
+		assertThat(kept.get(2), instanceOf(WriteStatement.class));
+		assertTrue(code(program).contains("ConsoleIO.readValueFromConsole"));
+	}
+
+	@Test
+	void overwrittenValuesRemoved() throws Exception {
+		String input = """
+				int f(int n)
+				int a = n * 2;
+				a = 100;
+				a = n + 1;
+				a = a * 3;
+				int b = 5;
+				b = a;
+				^ a;
+				""";
+		DeadCodeEliminator eliminator = CompilerComponentFactory.getDeadCodeEliminator();
+		Program program = (Program) typeChecked(input).visit(eliminator, null);
+		//The declaration of a is still needed by the assignments to a
+		assertEquals("a= b b=", names(eliminator.getRemoved()));
+		assertEquals(9, exec(program, new Object[] { 2 }));
+	}
+
+	@Test
+	void variablesFoldedAwayRemoved() throws Exception {
+		String input = """
+				int f(int n)
+				int k = 4;
+				int m = k * k + 1;
+				^ n * m;
+				""";
+		Program program = (Program) typeChecked(input).visit(CompilerComponentFactory.getConstantFolder(), null);
+		DeadCodeEliminator eliminator = CompilerComponentFactory.getDeadCodeEliminator();
+		program = (Program) program.visit(eliminator, null);
+		assertEquals("k m", names(eliminator.getRemoved()));
+		assertEquals(34, exec(program, new Object[] { 2 }));
+	}
+
+	@Test
+	void pixelsOfSharedImagesKept() throws Exception {
+		String input = """
+				image f(int n)
+				image[n, n] a;
+				a[x, y] = BLUE;
+				image b = a;
+				a[x, y] = RED;
+				^ b;
+				""";
+		DeadCodeEliminator eliminator = CompilerComponentFactory.getDeadCodeEliminator();
+		Program program = (Program) typeChecked(input).visit(eliminator, null);
+		//b is the image of a, so setting the pixels of a changes b
+		assertEquals("", names(eliminator.getRemoved()));
+		BufferedImage image = (BufferedImage) exec(program, new Object[] { 4 });
+		assertEquals(0xffff0000, image.getRGB(0, 0));
+	}
+
+	@Test
+	void failingExpressionsKept() throws Exception {
+		String input = """
+				int f(int n)
+				int z = 5 / n;
+				int m = n % 3;
+				m = n / 2;
+				int k = 7 / 0;
+				^ n;
+				""";
+		DeadCodeEliminator eliminator = CompilerComponentFactory.getDeadCodeEliminator();
+		Program program = (Program) typeChecked(input).visit(eliminator, null);
+		assertEquals("m m=", names(eliminator.getRemoved()));
+		Exception e = assertThrows(InvocationTargetException.class, () -> exec(program, new Object[] { 0 }));
+		assertThat(e.getCause(), instanceOf(ArithmeticException.class));
+	}
+}
@@ -0,0 +1,18 @@
+package edu.ufl.cise.plc;
+
+import edu.ufl.cise.plc.IToken.SourceLocation;
+
+// An error found while validating a program. Used instead of exceptions when the lexer and
+// parser are asked to collect every error rather than stopping at the first one.
+public record Diagnostic(Phase phase, String message, SourceLocation location) {
+
+    public enum Phase {
+        LEXICAL,
+        SYNTAX
+    }
+
+    @Override
+    public String toString() {
+        return location.line() + ":" + location.column() + " " + phase + " " + message;
+    }
+}
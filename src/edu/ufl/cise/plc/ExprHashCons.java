@@ -0,0 +1,66 @@
+package edu.ufl.cise.plc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// Numbers typed expressions so that two expressions get the same number exactly when they have the
+// same structure: the same node classes, token texts, operators, types and coercions, all the way
+// down. Expressions with the same number generate the same code and, within one statement, have the
+// same value.
+//
+// Each distinct structure is stored once, as a Shape whose children are the numbers of its
+// subexpressions, so numbering an expression only looks at its own node once its children are numbered.
+class ExprHashCons {
+    record Shape(Class<?> nodeClass, String text, String op, Type type, Type coerceTo, List<Integer> children) {
+    }
+
+    private final TypeInfo types;
+    private final Map<Shape, Integer> numbers = new HashMap<>();
+    private final Map<Expr, Integer> numbered = new IdentityHashMap<>();
+
+    ExprHashCons(TypeInfo types) {
+        this.types = types;
+    }
+
+    int number(Expr expr) {
+        Integer n = numbered.get(expr);
+        if (n == null) {
+            List<Integer> children = new ArrayList<>();
+            for (Expr child : children(expr)) {
+                children.add(number(child));
+            }
+            String op = null;
+            if (expr instanceof BinaryExpr e) {
+                op = e.getOp().getText();
+            } else if (expr instanceof UnaryExpr e) {
+                op = e.getOp().getText();
+            }
+            Shape shape = new Shape(expr.getClass(), expr.getText(), op, types.getType(expr), types.getCoerceTo(expr), children);
+            n = numbers.computeIfAbsent(shape, s -> numbers.size());
+            numbered.put(expr, n);
+        }
+        return n;
+    }
+
+    // The subexpressions of expr, including the coordinates of a pixel selector
+    static List<Expr> children(Expr expr) {
+        if (expr instanceof BinaryExpr e) {
+            return List.of(e.getLeft(), e.getRight());
+        } else if (expr instanceof UnaryExpr e) {
+            return List.of(e.getExpr());
+        } else if (expr instanceof UnaryExprPostfix e) {
+            return List.of(e.getExpr(), e.getSelector().getX(), e.getSelector().getY());
+        } else if (expr instanceof ConditionalExpr e) {
+            return List.of(e.getCondition(), e.getTrueCase(), e.getFalseCase());
+        } else if (expr instanceof ColorExpr e) {
+            return List.of(e.getRed(), e.getGreen(), e.getBlue());
+        }
+        return List.of();
+    }
+}
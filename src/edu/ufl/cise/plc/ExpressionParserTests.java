@@ -0,0 +1,69 @@
+package edu.ufl.cise.plc;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.BinaryExpr;
+import edu.ufl.cise.plc.ast.Expr;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.ast.ReturnStatement;
+import edu.ufl.cise.plc.ast.UnaryExpr;
+
+class ExpressionParserTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Expr returnedExpr(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		return ((ReturnStatement) program.getDecsAndStatements().get(0)).getExpr();
+	}
+
+	@Test
+	void deeplyNestedParentheses() throws Exception {
+		int depth = 100000;
+		String input = "int f()\n^ " + "(".repeat(depth) + "1 + 2" + ")".repeat(depth) + ";";
+		Expr e = returnedExpr(input);
+		show(e);
+		assertThat("", e, instanceOf(BinaryExpr.class));
+		BinaryExpr sum = (BinaryExpr) e;
+		assertEquals(IToken.Kind.PLUS, sum.getOp().getKind());
+		assertEquals(new IToken.SourceLocation(1, 2 + depth), sum.getSourceLoc());
+	}
+
+	@Test
+	void deeplyNestedUnaryAndConditionals() throws Exception {
+		int depth = 50000;
+		String input = "int f()\n^ " + "-".repeat(depth) + "x;";
+		Expr e = returnedExpr(input);
+		for (int i = 0; i < depth; i++) {
+			assertThat("", e, instanceOf(UnaryExpr.class));
+			e = ((UnaryExpr) e).getExpr();
+		}
+		assertEquals("x", e.getText());
+
+		input = "int f()\n^ " + "if (a) ".repeat(depth) + "0" + " fi".repeat(depth) + ";";
+		e = returnedExpr(input);
+		assertEquals(IToken.Kind.KW_IF, e.getFirstToken().getKind());
+	}
+
+	@Test
+	void lexicalErrorInFirstToken() throws Exception {
+		CompilerComponentFactory.getReusableParser("int f() ^ 1;").parse();
+		//The pooled parser must not keep the last token of the previous input
+		Exception e = assertThrows(LexicalException.class,
+				() -> CompilerComponentFactory.getReusableParser("\"abc").parse());
+		show(e);
+		assertThrows(LexicalException.class, () -> CompilerComponentFactory.getParser("\"abc").parse());
+		assertThrows(LexicalException.class, () -> CompilerComponentFactory.getBufferedParser("\"abc").parse());
+	}
+}
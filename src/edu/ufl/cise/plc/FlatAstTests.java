@@ -0,0 +1,103 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.AstSerializer;
+import edu.ufl.cise.plc.ast.FlatAst;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.ast.Types.Type;
+import edu.ufl.cise.plc.bench.BenchmarkPrograms;
+
+class FlatAstTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Program typeChecked(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		return program;
+	}
+
+	String generate(Program program) throws Exception {
+		return (String) program.visit(CompilerComponentFactory.getCodeGenerator("cop4020sp22Package"), null);
+	}
+
+	@Test
+	void roundTripGeneratesSameCode() throws Exception {
+		String input = """
+				image f(int size)
+				image[size, size] a;
+				a[x, y] = <<x - y, 0, y>>;
+				image b = a;
+				b[x, y] = a[y, x] + RED;
+				write "done" -> console;
+				^ b;
+				""";
+		Program program = typeChecked(input);
+		FlatAst flat = FlatAst.flatten(program, input);
+		Program copy = flat.toProgram();
+		show(copy);
+		assertEquals(program.toString(), copy.toString());
+		assertEquals(generate(program), generate(copy));
+	}
+
+	@Test
+	void attributesAndLinks() throws Exception {
+		String input = BenchmarkPrograms.generate(40);
+		FlatAst flat = FlatAst.flatten(typeChecked(input), input);
+		assertEquals(FlatAst.NodeKind.PROGRAM, flat.getKind(0));
+		assertEquals(1, flat.getParamCount());
+		int param = flat.getChild(0, 0);
+		assertEquals("n", flat.getName(param));
+		assertEquals(Type.INT, flat.getType(param));
+
+		// int v0 = n + 1;
+		int declaration = flat.getChild(0, 1);
+		int sum = flat.getChild(declaration, 1);
+		assertEquals(FlatAst.NodeKind.BINARY_EXPR, flat.getKind(sum));
+		assertEquals(Type.INT, flat.getType(sum));
+		assertEquals(param, flat.getDec(flat.getChild(sum, 0)));
+		assertEquals(1, flat.getIntValue(flat.getChild(sum, 1)));
+		assertEquals("+", flat.getTokenText(flat.getOp(sum)));
+
+		Program copy = flat.toProgram();
+		assertSame(copy.getParams().get(0), ((edu.ufl.cise.plc.ast.IdentExpr)
+				((edu.ufl.cise.plc.ast.BinaryExpr) ((edu.ufl.cise.plc.ast.VarDeclaration)
+						copy.getDecsAndStatements().get(0)).getExpr()).getLeft()).getDec());
+		assertEquals(generate(typeChecked(input)), generate(copy));
+	}
+
+	@Test
+	void serializedProgramGeneratesSameCode() throws Exception {
+		String input = BenchmarkPrograms.generate(60);
+		Program program = typeChecked(input);
+		byte[] bytes = AstSerializer.serialize(program, input);
+		show(bytes.length + " bytes for " + input.length() + " characters");
+		Program copy = AstSerializer.deserialize(bytes);
+		assertEquals(generate(program), generate(copy));
+	}
+
+	@Test
+	void otherVersionsRejected() throws Exception {
+		String input = BenchmarkPrograms.generate(5);
+		byte[] bytes = AstSerializer.serialize(typeChecked(input), input);
+		bytes[7]++;
+		Exception e = assertThrows(IOException.class, () -> AstSerializer.deserialize(bytes));
+		show(e.getMessage());
+		byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length / 2);
+		truncated[7]--;
+		assertThrows(IOException.class, () -> AstSerializer.deserialize(truncated));
+	}
+}
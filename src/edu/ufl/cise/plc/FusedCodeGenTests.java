@@ -0,0 +1,73 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.bench.BenchmarkPrograms;
+
+class FusedCodeGenTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Program parse(String input) throws Exception {
+		return (Program) CompilerComponentFactory.getParser(input).parse();
+	}
+
+	String twoPasses(String input) throws Exception {
+		Program program = parse(input);
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		return (String) program.visit(CompilerComponentFactory.getCodeGenerator("cop4020sp22Package"), null);
+	}
+
+	String fused(String input) throws Exception {
+		return CompilerComponentFactory.getFusedCompiler("cop4020sp22Package").compile(parse(input));
+	}
+
+	@Test
+	void sameCodeAsTwoPasses() throws Exception {
+		String input = """
+				image f(int size, string url)
+				image[size, size] a;
+				a[x, y] = <<x - y, 0, y>>;
+				image b <- url;
+				image c = a + b;
+				c[x, y] = a[y, x] * 2;
+				int red = getWidth c;
+				float scale = red / 3.0;
+				color pixel = <<red, 2, 3>> * 4;
+				write "scale " -> console;
+				write scale -> console;
+				^ c;
+				""";
+		String code = fused(input);
+		show(code);
+		assertEquals(twoPasses(input), code);
+
+		input = BenchmarkPrograms.generate(300);
+		assertEquals(twoPasses(input), fused(input));
+	}
+
+	@Test
+	void typeErrorAfterGeneratedCode() throws Exception {
+		String input = """
+				int f()
+				int a = 3;
+				write a -> console;
+				string b = a;
+				^ a;
+				""";
+		Exception e = assertThrows(TypeCheckException.class, () -> fused(input));
+		show(e);
+		Exception expected = assertThrows(TypeCheckException.class, () -> twoPasses(input));
+		assertEquals(expected.getMessage(), e.getMessage());
+	}
+}
@@ -0,0 +1,46 @@
+package edu.ufl.cise.plc;
+
+import edu.ufl.cise.plc.ast.*;
+
+// Type checks and generates code in a single walk over the program. Each declaration or statement is
+// type checked and then immediately generated, while its subtree is still in cache, instead of
+// type checking the whole program before generating any of it. compile returns the same Java
+// source as running a TypeCheckVisitor and then a CodeGenVisitor over the program.
+//
+// Generating a declaration or statement only depends on its own subtree and on the declarations
+// before it, which are all type checked by then. Type errors are still reported in preference to
+// code generation errors: if generating a node fails, generation stops but the rest of the program
+// is type checked before the failure is rethrown, as the two passes would.
+public class FusedCompiler {
+    private final TypeCheckVisitor typeChecker = new TypeCheckVisitor();
+    private final CodeGenVisitor codeGenerator;
+
+    public FusedCompiler(String packageName) {
+        codeGenerator = new CodeGenVisitor(packageName);
+    }
+
+    public String compile(Program program) throws Exception {
+        typeChecker.programStart(program, null);
+        CodeGenStringBuilder sb = new CodeGenStringBuilder();
+        Exception codeGenError = null;
+        try {
+            codeGenerator.programStart(program, sb);
+        } catch (Exception e) {
+            codeGenError = e;
+        }
+        for (ASTNode ds : program.getDecsAndStatements()) {
+            ds.visit(typeChecker, null);
+            if (codeGenError == null) {
+                try {
+                    codeGenerator.decOrStatement(ds, sb);
+                } catch (Exception e) {
+                    codeGenError = e;
+                }
+            }
+        }
+        if (codeGenError != null) {
+            throw codeGenError;
+        }
+        return codeGenerator.programEnd(sb);
+    }
+}
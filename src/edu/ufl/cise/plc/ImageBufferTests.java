@@ -0,0 +1,96 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+
+class ImageBufferTests extends CodeGenTestSupport {
+
+	ImageBufferTests() {
+		super(EnumSet.of(Option.REUSE_IMAGES), EnumSet.allOf(Option.class));
+	}
+
+	@Test
+	void deadBuffersReused() throws Exception {
+		String input = """
+				image f(int w, int h)
+				image[w, h] a;
+				a[x, y] = <<x, y, 0>>;
+				image[w, h] b;
+				b[x, y] = <<y, x, 9>>;
+				image c = a + b;
+				image d = c * 2;
+				image e = d - c;
+				image[w, h] g;
+				g[x, y] = e[x, y] + <<1, 1, 1>>;
+				^ g + g;
+				""";
+		String code = code(input, EnumSet.of(Option.REUSE_IMAGES));
+		//c into a, e into b, g into c; the result is returned, so it is a new image
+		assertEquals(3, generator.getReusedImages());
+		assertTrue(code.contains("BufferedImage c = (ImageOps.binaryImageImageOpUnchecked(ImageOps.OP.PLUS, a, b, a))"));
+		assertTrue(code.contains("BufferedImage g = ImageOps.clear(c)"));
+		checkSameResult(input, new Object[] { 30, 20 });
+	}
+
+	@Test
+	void liveBuffersNotReused() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image[w, w] b;
+				b[x, y] = <<y, x, 9>>;
+				image c = a + b;
+				image d = c - a;
+				^ d + b;
+				""";
+		code(input, EnumSet.of(Option.REUSE_IMAGES));
+		//a is read by the declaration of d, which computes into it, and b by the return
+		assertEquals(1, generator.getReusedImages());
+		checkSameResult(input, new Object[] { 25 });
+	}
+
+	@Test
+	void sharedImagesNotReused() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image s = a;
+				image[w, w] b;
+				b[x, y] = <<y, x, 9>>;
+				image[w, 10] c;
+				c[x, y] = RED;
+				image d = b + b;
+				^ d + s - b;
+				""";
+		code(input, EnumSet.of(Option.REUSE_IMAGES));
+		//a is also s, c has a different size, and b is read after d is declared
+		assertEquals(0, generator.getReusedImages());
+		checkSameResult(input, new Object[] { 25 });
+	}
+
+	@Test
+	void lazySourcesNotReused() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image[w, w] b;
+				b[x, y] = <<y, x, 9>>;
+				image c = a * 2;
+				image d = b + b;
+				^ c;
+				""";
+		code(input, EnumSet.of(Option.REUSE_IMAGES, Option.LAZY_IMAGES));
+		//c reads a when its pixels are read
+		assertEquals(0, generator.getReusedImages());
+		checkSameResult(input, new Object[] { 25 });
+	}
+}
@@ -0,0 +1,134 @@
+package edu.ufl.cise.plc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// The image variables whose buffer the generated code can reuse for a later image of the same size once
+// the variable is dead, the way registers are reused. A program is straight line code, so a variable is
+// dead after the last declaration or statement that names it.
+//
+// A variable owns its buffer if nothing else refers to it: the variable is declared with a size and no
+// initializer, or as an image operation, which computes a new image, and its value is only ever an
+// operand of an operation, the image of a pixel read or the source of a write. Its size must be known
+// from ImageShapes. A variable held as a LazyImage has no buffer, and reads the images it is computed
+// from when its pixels are read, so those images are never reused.
+class ImageBuffers {
+    private final ImageShapes shapes;
+    private final Map<ASTNode, Integer> indexes = new IdentityHashMap<>();
+    // The index of the last declaration or statement that names each variable
+    private final Map<String, Integer> lastUse = new HashMap<>();
+    // Image variables whose value may be referred to by something else
+    private final Set<String> escaping = new HashSet<>();
+    // Declarations of variables that own their buffer, in program order, until the buffer is reused
+    private final List<VarDeclaration> owners = new ArrayList<>();
+    private int reused;
+
+    ImageBuffers(Program program, TypeInfo types, ImageShapes shapes) {
+        this.shapes = shapes;
+        List<ASTNode> decsAndStatements = program.getDecsAndStatements();
+        for (int i = 0; i < decsAndStatements.size(); i++) {
+            ASTNode node = decsAndStatements.get(i);
+            indexes.put(node, i);
+            List<Expr> values = new ArrayList<>();
+            List<Expr> operands = new ArrayList<>();
+            if (node instanceof VarDeclaration d) {
+                lastUse.put(d.getName(), i);
+                if (d.getDim() != null) {
+                    operands.add(d.getDim().getWidth());
+                    operands.add(d.getDim().getHeight());
+                }
+                values.add(d.getExpr());
+            } else if (node instanceof AssignmentStatement s) {
+                lastUse.put(s.getName(), i);
+                if (s.getSelector() != null) {
+                    operands.add(s.getSelector().getX());
+                    operands.add(s.getSelector().getY());
+                }
+                values.add(s.getExpr());
+            } else if (node instanceof ReadStatement s) {
+                lastUse.put(s.getName(), i);
+                operands.add(s.getSource());
+            } else if (node instanceof WriteStatement s) {
+                operands.add(s.getSource());
+                operands.add(s.getDest());
+            } else if (node instanceof ReturnStatement s) {
+                values.add(s.getExpr());
+            }
+            for (Expr expr : values) {
+                use(expr, false, i, types);
+            }
+            for (Expr expr : operands) {
+                use(expr, true, i, types);
+            }
+        }
+    }
+
+    // Records the variables expr names, where operand is whether its value is only read
+    private void use(Expr expr, boolean operand, int index, TypeInfo types) {
+        if (expr == null) {
+            return;
+        }
+        if (expr instanceof IdentExpr) {
+            lastUse.put(expr.getText(), index);
+            if (!operand && types.getType(expr) == Type.IMAGE) {
+                escaping.add(expr.getText());
+            }
+        }
+        for (Expr child : ExprHashCons.children(expr)) {
+            use(child, operand || !(expr instanceof ConditionalExpr c) || child == c.getCondition(), index, types);
+        }
+    }
+
+    // Records that the images expr reads are read by a LazyImage, so their buffers are never reused
+    void escape(Expr expr) {
+        if (expr instanceof IdentExpr) {
+            escaping.add(expr.getText());
+        }
+        for (Expr child : ExprHashCons.children(expr)) {
+            escape(child);
+        }
+    }
+
+    // Records that the variable dec declares holds a new image, computed by the declaration, if it is one
+    // whose buffer can be reused
+    void declare(VarDeclaration dec, TypeInfo types) {
+        boolean fresh = dec.getDim() != null ? dec.getExpr() == null
+                : dec.getOp() != null && dec.getOp().getKind() == Kind.ASSIGN && ImageFusion.isImageOp(dec.getExpr(), types);
+        if (dec.getType() == Type.IMAGE && fresh && ImageShapes.isKnown(shapes.shape(dec.getName()))) {
+            owners.add(dec);
+        }
+    }
+
+    // The variable whose buffer the image declared by dec can be computed into, or null if there is
+    // none. If reads, the declaration computes its image a pixel at a time from images it reads, so a
+    // variable whose last use is the declaration can be reused.
+    String take(VarDeclaration dec, boolean reads) {
+        int index = indexes.get(dec);
+        ImageShapes.Shape shape = shapes.shape(dec.getName());
+        for (VarDeclaration owner : owners) {
+            String name = owner.getName();
+            int last = lastUse.get(name);
+            if (!escaping.contains(name) && (last < index || reads && last == index)
+                    && ImageShapes.same(shapes.shape(name), shape)) {
+                owners.remove(owner);
+                reused++;
+                return name;
+            }
+        }
+        return null;
+    }
+
+    // The number of images computed into the buffer of a dead variable
+    int getReused() {
+        return reused;
+    }
+}
@@ -0,0 +1,192 @@
+package edu.ufl.cise.plc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+import edu.ufl.cise.plc.ValueRanges.Range;
+
+// An image expression built from more than one image operation, computed by a generated method with
+// one loop over the pixels instead of a loop and an intermediate image per operation.
+//
+// The image operations are the ones ImageOps implements: an operator applied to two images or to an
+// image and an int, and getRed, getGreen or getBlue applied to an image. Every other image valued
+// subexpression, and the int operands, are arguments of the method, evaluated by the caller in the
+// order the unfused code evaluates them. The unfused code packs the result of each operation into an
+// image, so the method truncates every intermediate component to [0, 256) the same way, and checks
+// the sizes of the operands of each operator on two images before computing any pixel. If elideClamps,
+// a component ValueRanges shows is already in [0, 256) is not truncated.
+class ImageFusion {
+    private static final String[] PREFIXES = {"_r", "_g", "_b"};
+
+    private final TypeInfo types;
+    private final boolean elideClamps;
+    private int elidedClamps;
+    // The arguments of the method: the images it does not compute, one per image variable, and the ints
+    private final List<Expr> operands = new ArrayList<>();
+    private final List<String> parameters = new ArrayList<>();
+    private final Map<String, String> variables = new HashMap<>();
+    private final StringBuilder checks = new StringBuilder();
+    private final StringBuilder body = new StringBuilder();
+    private final StringBuilder reads = new StringBuilder();
+    private int locals;
+    // The parameter whose size the result has
+    private String size;
+
+    private ImageFusion(TypeInfo types, boolean elideClamps) {
+        this.types = types;
+        this.elideClamps = elideClamps;
+    }
+
+    // Whether expr is an image operation with another image operation as an operand
+    static boolean isFusible(Expr expr, TypeInfo types) {
+        if (!isImageOp(expr, types)) {
+            return false;
+        }
+        for (Expr child : ExprHashCons.children(expr)) {
+            if (isImageOp(child, types)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether expr is an operation ImageOps computes a new image for
+    static boolean isImageOp(Expr expr, TypeInfo types) {
+        if (types.getType(expr) != Type.IMAGE) {
+            return false;
+        }
+        if (expr instanceof BinaryExpr e) {
+            Type rightType = types.getType(e.getRight());
+            return types.getType(e.getLeft()) == Type.IMAGE && (rightType == Type.IMAGE || rightType == Type.INT)
+                    && types.getCoerceTo(e.getRight()) == null;
+        }
+        return expr instanceof UnaryExpr e && e.getOp().getKind() == Kind.COLOR_OP && types.getType(e.getExpr()) == Type.IMAGE;
+    }
+
+    // The fusion of expr, which must be fusible
+    static ImageFusion of(Expr expr, TypeInfo types, boolean elideClamps) throws Exception {
+        ImageFusion fusion = new ImageFusion(types, elideClamps);
+        Node root = fusion.node(expr);
+        // Every component of an image operation is truncated or read from a pixel
+        fusion.body.append("\t\t\t\tresult.setRGB(x, y, ColorTuple." + (elideClamps ? "packInRange(" : "makePackedColor(")
+                + String.join(", ", root.components) + "));\n");
+        if (elideClamps) {
+            fusion.elidedClamps += 3;
+        }
+        fusion.size = root.size;
+        return fusion;
+    }
+
+    // The components of the pixel computed by an image subexpression, their ranges, and the parameter
+    // whose size it has
+    private record Node(String[] components, Range[] ranges, String size) {
+    }
+
+    private Node node(Expr expr) throws Exception {
+        if (!isImageOp(expr, types)) {
+            String image = variable(expr);
+            String pixel = image.replace("_i", "_p");
+            return new Node(new String[] {"ColorTuple.getRed(" + pixel + ")", "ColorTuple.getGreen(" + pixel + ")",
+                    "ColorTuple.getBlue(" + pixel + ")"}, new Range[] {Range.COMPONENT, Range.COMPONENT, Range.COMPONENT}, image);
+        }
+        if (expr instanceof UnaryExpr e) {
+            Node operand = node(e.getExpr());
+            int c = switch (e.getOp().getText()) {
+                case "getRed" -> 0;
+                case "getGreen" -> 1;
+                default -> 2;
+            };
+            String[] components = {"0", "0", "0"};
+            Range[] ranges = {new Range(0, 0), new Range(0, 0), new Range(0, 0)};
+            components[c] = operand.components[c];
+            ranges[c] = operand.ranges[c];
+            return new Node(components, ranges, operand.size);
+        }
+        BinaryExpr e = (BinaryExpr) expr;
+        String op = e.getOp().getText();
+        Node left = node(e.getLeft());
+        Node right;
+        if (types.getType(e.getRight()) == Type.IMAGE) {
+            right = node(e.getRight());
+            if (!left.size.equals(right.size)) {
+                checks.append("\t\tif (" + left.size + ".getWidth() != " + right.size + ".getWidth() || " + left.size
+                        + ".getHeight() != " + right.size + ".getHeight()) {\n");
+                checks.append("\t\t\tthrow new PLCRuntimeException(\"Attempting binary operation on images with unequal sizes\");\n");
+                checks.append("\t\t}\n");
+            }
+        } else {
+            Range range = new ValueRanges(types, Set.of()).range(e.getRight(), 0);
+            String scalar = parameter("int", e.getRight());
+            right = new Node(new String[] {scalar, scalar, scalar}, new Range[] {range, range, range}, left.size);
+        }
+        int n = locals++;
+        String[] components = new String[3];
+        Range[] ranges = new Range[3];
+        for (int c = 0; c < 3; c++) {
+            components[c] = PREFIXES[c] + n;
+            String value = left.components[c] + op + right.components[c];
+            Range range = Range.apply(op, left.ranges[c], right.ranges[c]);
+            if (elideClamps && range.isComponent()) {
+                body.append("\t\t\t\tint " + components[c] + " = " + value + ";\n");
+                elidedClamps++;
+                ranges[c] = range;
+            } else {
+                body.append("\t\t\t\tint " + components[c] + " = ColorTuple.truncate(" + value + ");\n");
+                ranges[c] = Range.COMPONENT;
+            }
+        }
+        return new Node(components, ranges, left.size);
+    }
+
+    // The parameter for an image that is not computed by the method, whose pixel is read once
+    private String variable(Expr expr) {
+        String image = expr instanceof IdentExpr ? variables.get(expr.getText()) : null;
+        if (image == null) {
+            image = parameter("BufferedImage", expr);
+            reads.append("\t\t\t\tint " + image.replace("_i", "_p") + " = " + image + ".getRGB(x, y);\n");
+            if (expr instanceof IdentExpr) {
+                variables.put(expr.getText(), image);
+            }
+        }
+        return image;
+    }
+
+    private String parameter(String type, Expr expr) {
+        String name = "_" + (type.equals("int") ? "k" : "i") + operands.size();
+        operands.add(expr);
+        parameters.add(type + " " + name);
+        return name;
+    }
+
+    // The truncations of components to [0, 256) left out because of elideClamps
+    int getElidedClamps() {
+        return elidedClamps;
+    }
+
+    // The arguments of the method, in the order of its parameters
+    List<Expr> getOperands() {
+        return operands;
+    }
+
+    // The declaration of the method, with the given name
+    String method(String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\tprivate static BufferedImage " + name + "(" + String.join(", ", parameters) + ") {\n");
+        sb.append(checks);
+        sb.append("\t\tBufferedImage result = new BufferedImage(" + size + ".getWidth(), " + size
+                + ".getHeight(), BufferedImage.TYPE_INT_RGB);\n");
+        sb.append("\t\tfor (int x = 0; x < result.getWidth(); x++)\n");
+        sb.append("\t\t\tfor (int y = 0; y < result.getHeight(); y++) {\n");
+        sb.append(reads).append(body);
+        sb.append("\t\t\t}\n");
+        sb.append("\t\treturn result;\n");
+        sb.append("\t}\n");
+        return sb.toString();
+    }
+}
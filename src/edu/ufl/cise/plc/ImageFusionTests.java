@@ -0,0 +1,64 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.runtime.PLCRuntimeException;
+
+class ImageFusionTests extends CodeGenTestSupport {
+
+	ImageFusionTests() {
+		super(EnumSet.of(Option.FUSE_IMAGES), EnumSet.allOf(Option.class));
+	}
+
+	@Test
+	void noIntermediateImages() throws Exception {
+		String input = """
+				image f(image a, image b, image c, int k)
+				^ (a + b) * 2 - getRed(c) % k;
+				""";
+		String code = code(input, EnumSet.of(Option.FUSE_IMAGES));
+		assertEquals(0, count(code, "ImageOps.binaryImage"));
+		assertEquals(0, count(code, "ImageOps.extract"));
+		assertEquals(1, count(code, "new BufferedImage"));
+		checkSameResult(input, new Object[] { image(40, 30, 1), image(40, 30, 2), image(40, 30, 3), 7 });
+	}
+
+	@Test
+	void intermediatesTruncated() throws Exception {
+		String input = """
+				image f(image a, image b)
+				image c = (a * 3 - b * 2) / 2 + a % 5;
+				image d = getGreen(a - b * 4) + getBlue(b) * 2 - a;
+				^ c - d;
+				""";
+		checkSameResult(input, new Object[] { image(25, 25, 10), image(25, 25, 200) });
+	}
+
+	@Test
+	void imageReadOnce() throws Exception {
+		String input = """
+				image f(image a)
+				^ a * a - a / 2;
+				""";
+		String code = code(input, EnumSet.of(Option.FUSE_IMAGES));
+		assertEquals(1, count(code, ".getRGB"));
+		checkSameResult(input, new Object[] { image(30, 20, 0) });
+	}
+
+	@Test
+	void unequalSizes() throws Exception {
+		String input = """
+				image f(image a, image b)
+				^ a + b * 2;
+				""";
+		Object[] params = { image(30, 20, 0), image(20, 30, 0) };
+		assertThrows(PLCRuntimeException.class, () -> exec(input, EnumSet.noneOf(Option.class), params));
+		assertThrows(PLCRuntimeException.class, () -> exec(input, EnumSet.of(Option.FUSE_IMAGES), params));
+	}
+}
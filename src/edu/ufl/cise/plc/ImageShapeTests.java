@@ -0,0 +1,83 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+
+class ImageShapeTests extends CodeGenTestSupport {
+
+	ImageShapeTests() {
+		super(EnumSet.of(Option.KNOWN_SHAPES), EnumSet.allOf(Option.class));
+	}
+
+	@Test
+	void unequalSizesReported() throws Exception {
+		String input = """
+				image f()
+				int w = 30;
+				image[w, 20] a;
+				image[30, 25] b;
+				a[x, y] = RED;
+				b[x, y] = BLUE;
+				image c = a * 2;
+				^ c + b;
+				""";
+		Exception e = assertThrows(TypeCheckException.class, () -> typeChecked(input));
+		show(e);
+		assertTrue(e.getMessage().contains("images have different sizes"));
+	}
+
+	@Test
+	void sameSizesUnchecked() throws Exception {
+		String input = """
+				image f(int w, int h)
+				image[w, h] a;
+				image[w, h] b;
+				a[x, y] = <<x, y, x * y>>;
+				b[x, y] = <<y * 3, x, 100>>;
+				image c = a * 3 - b;
+				^ c / 2 + getRed(b) % 7;
+				""";
+		String code = code(input, EnumSet.of(Option.KNOWN_SHAPES));
+		assertFalse(code.contains("ImageOps.binaryImageImageOp("));
+		assertTrue(code.contains("new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB)"));
+		checkSameResult(input, new Object[] { 40, 30 });
+	}
+
+	@Test
+	void parameterSizes() throws Exception {
+		String input = """
+				image f(image a, image b)
+				image c = a * 2 + a;
+				^ c - b;
+				""";
+		String code = code(input, EnumSet.of(Option.KNOWN_SHAPES));
+		//a and b may have different sizes, so only c - b is checked
+		assertTrue(code.contains("ImageOps.binaryImageImageOpUnchecked(ImageOps.OP.PLUS"));
+		assertTrue(code.contains("ImageOps.binaryImageImageOp(ImageOps.OP.MINUS"));
+		checkSameResult(input, new Object[] { image(30, 20, 1), image(30, 20, 2) });
+	}
+
+	@Test
+	void unknownSizesChecked() throws Exception {
+		//a is assigned, and b is declared, as a resized p, so their sizes are known only when the program runs
+		String input = """
+				image f(int w, image p)
+				image[w, w] a;
+				a = p;
+				image[w, w] b = p;
+				image[w, w] c;
+				c[x, y] = <<x, y, 0>>;
+				^ a + b - c;
+				""";
+		String code = code(input, EnumSet.of(Option.KNOWN_SHAPES));
+		assertFalse(code.contains("Unchecked"));
+		checkSameResult(input, new Object[] { 25, image(50, 40, 3) });
+	}
+}
@@ -0,0 +1,128 @@
+package edu.ufl.cise.plc;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// The sizes of image expressions that are known before the program runs.
+//
+// A width or height is known as an int constant, or as Java code whose value does not change while the
+// program runs: an int variable that is never assigned or read into, or getWidth() or getHeight() of
+// an image parameter. An image declared with a size and no initializer has that size as long as it is
+// only changed a pixel at a time. Other ways of giving a variable with a size its image resize it, and
+// the size a resize gives can differ from the one asked for by rounding, so their sizes are not known.
+// An image declared without a size as an image expression has the size of the expression, if it is
+// never assigned or read into. An image operation has the size of its left operand.
+class ImageShapes {
+    // The width and height of an image: an Integer, Java code for an int, or null if not known
+    record Shape(Object width, Object height) {
+    }
+
+    private final TypeInfo types;
+    private final Map<String, VarDeclaration> declarations = new HashMap<>();
+    private final Map<String, Type> parameters = new HashMap<>();
+    // Variables whose value, or whole image, is replaced after their declaration
+    private final Set<String> replaced = new HashSet<>();
+
+    ImageShapes(Program program, TypeInfo types) {
+        this.types = types;
+        for (NameDef param : program.getParams()) {
+            parameters.put(param.getName(), param.getType());
+        }
+        for (ASTNode node : program.getDecsAndStatements()) {
+            if (node instanceof VarDeclaration d) {
+                declarations.put(d.getName(), d);
+            } else if (node instanceof AssignmentStatement s && (s.getSelector() == null || !isImage(s.getName()))) {
+                replaced.add(s.getName());
+            } else if (node instanceof ReadStatement s) {
+                replaced.add(s.getName());
+            }
+        }
+    }
+
+    private boolean isImage(String name) {
+        VarDeclaration dec = declarations.get(name);
+        return dec != null ? dec.getType() == Type.IMAGE : parameters.get(name) == Type.IMAGE;
+    }
+
+    // Whether two images are known to have different sizes
+    static boolean differ(Shape a, Shape b) {
+        return a != null && b != null && (differ(a.width, b.width) || differ(a.height, b.height));
+    }
+
+    private static boolean differ(Object a, Object b) {
+        return a instanceof Integer && b instanceof Integer && !a.equals(b);
+    }
+
+    // Whether both the width and the height of an image are known
+    static boolean isKnown(Shape shape) {
+        return shape != null && shape.width != null && shape.height != null;
+    }
+
+    // Whether two images are known to have the same size
+    static boolean same(Shape a, Shape b) {
+        return isKnown(a) && a.equals(b);
+    }
+
+    // The size of expr, an image, or null if nothing is known about it
+    Shape shape(Expr expr) {
+        if (types.getType(expr) != Type.IMAGE) {
+            return null;
+        }
+        if (expr instanceof IdentExpr) {
+            return shape(expr.getText());
+        } else if (expr instanceof BinaryExpr e) {
+            return shape(e.getLeft());
+        } else if (expr instanceof UnaryExpr e && e.getOp().getKind() == Kind.COLOR_OP) {
+            return shape(e.getExpr());
+        } else if (expr instanceof ConditionalExpr e) {
+            Shape trueCase = shape(e.getTrueCase());
+            Shape falseCase = shape(e.getFalseCase());
+            if (trueCase == null || falseCase == null) {
+                return null;
+            }
+            return new Shape(Objects.equals(trueCase.width, falseCase.width) ? trueCase.width : null,
+                    Objects.equals(trueCase.height, falseCase.height) ? trueCase.height : null);
+        }
+        return null;
+    }
+
+    // The size of the image variable name, or null if nothing is known about it
+    Shape shape(String name) {
+        if (replaced.contains(name)) {
+            return null;
+        }
+        if (parameters.containsKey(name)) {
+            return new Shape(name + ".getWidth()", name + ".getHeight()");
+        }
+        VarDeclaration dec = declarations.get(name);
+        if (dec == null || dec.getType() != Type.IMAGE) {
+            return null;
+        } else if (dec.getDim() != null) {
+            return dec.getExpr() == null ? new Shape(size(dec.getDim().getWidth()), size(dec.getDim().getHeight())) : null;
+        } else if (dec.getOp() != null && dec.getOp().getKind() == Kind.ASSIGN) {
+            return shape(dec.getExpr());
+        }
+        return null;
+    }
+
+    // The value of a width or height, if it is an int literal or an int variable that does not change
+    private Object size(Expr expr) {
+        if (expr instanceof IntLitExpr e) {
+            return e.getValue();
+        } else if (expr instanceof IdentExpr && !replaced.contains(expr.getText())) {
+            VarDeclaration dec = declarations.get(expr.getText());
+            if (dec != null && dec.getOp() != null && dec.getOp().getKind() == Kind.ASSIGN && dec.getExpr() instanceof IntLitExpr e) {
+                return e.getValue();
+            }
+            return dec != null || parameters.containsKey(expr.getText()) ? expr.getText() : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+
+class IntColorTests extends CodeGenTestSupport {
+
+	IntColorTests() {
+		super(EnumSet.of(Option.INT_COLORS), EnumSet.of(Option.INT_COLORS, Option.CSE, Option.LICM));
+	}
+
+	//The code of the last pixel loops that set the pixels of the given image
+	String loops(String code, String image) {
+		int start = code.lastIndexOf("for(int x");
+		return code.substring(start, code.indexOf("ImageOps.setColor(" + image + ",", start));
+	}
+
+	@Test
+	void loopsDoNotAllocateColors() throws Exception {
+		String input = """
+				image f(int w, int h)
+				image[w, h] a;
+				a[x, y] = <<x, y, x + y>>;
+				image[w, h] b;
+				b[x, y] = a[x, y] * <<2, 3, 4>> / (a[x, y] + <<1, 1, 1>>) + (if (getRed(a[x, y]) > 20) GREEN else <<x, 0, y>> fi);
+				^ b;
+				""";
+		String code = code(input, EnumSet.of(Option.INT_COLORS));
+		String loops = code.substring(code.lastIndexOf("for(int x"));
+		assertFalse(loops.contains("ColorTuple("));
+		assertFalse(loops.contains("unpack"));
+		//The pixel is read once, into a temporary
+		assertEquals(1, count(loops, "a.getRGB"));
+		checkSameResult(input, new Object[] { 40, 30 });
+	}
+
+	@Test
+	void componentsTruncatedOnlyWhenPacked() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = x * y - 100;
+				image[w, w] b;
+				b[x, y] = (a[x, y] * 5 - <<600, 300, 0>>) / 2 + a[y, x] % <<7, 8, 9>> - BLUE;
+				^ b;
+				""";
+		checkSameResult(input, new Object[] { 30 });
+	}
+
+	@Test
+	void conditionalPixelsReadOnlyWhenSelected() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x * 8, y * 8, 100>>;
+				image[w, w] b;
+				b[x, y] = if (x < w - 1 & a[x, y] != RED) a[x + 1, y] else a[x, y] fi;
+				^ b;
+				""";
+		String loops = loops(code(input, EnumSet.of(Option.INT_COLORS)), "b");
+		//a[x + 1, y] would be out of bounds in the last column
+		assertFalse(loops.contains("= a.getRGB((x+1)"));
+		checkSameResult(input, new Object[] { 20 });
+	}
+
+	@Test
+	void rightOperandPixelsReadOnlyWhenNeeded() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x * 8, y * 8, 100>>;
+				image[w, w] b;
+				b[x, y] = if (x > 0 & a[x - 1, y] == RED) GREEN else BLUE fi;
+				^ b;
+				""";
+		String loops = loops(code(input, EnumSet.of(Option.INT_COLORS)), "b");
+		//a[x - 1, y] would be out of bounds in the first column
+		assertFalse(loops.contains("= a.getRGB((x-1)"));
+		checkSameResult(input, new Object[] { 20 });
+	}
+
+	@Test
+	void colorVariablesAndConstants() throws Exception {
+		String input = """
+				image f(int w, int k)
+				color c = <<k, 2 * k, 3 * k>>;
+				image[w, w] a;
+				a[x, y] = if (<<x, x, x>> == c) ORANGE else c * <<k, k, k>> + <<getGreen(c), x, y>> fi;
+				^ a;
+				""";
+		checkSameResult(input, new Object[] { 10, 3 });
+	}
+}
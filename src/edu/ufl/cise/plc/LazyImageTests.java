@@ -0,0 +1,81 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.runtime.ImageOps;
+import edu.ufl.cise.plc.runtime.LazyImage;
+import edu.ufl.cise.plc.runtime.PLCRuntimeException;
+
+class LazyImageTests extends CodeGenTestSupport {
+
+	LazyImageTests() {
+		super(EnumSet.of(Option.LAZY_IMAGES), EnumSet.allOf(Option.class));
+	}
+
+	@Test
+	void onlyPixelsReadComputed() throws Exception {
+		String input = """
+				color f(image a, image b, int k)
+				image c = (a + b) * k - getRed(a);
+				image d = c / 3 + c;
+				^ d[3, 4] + c[getWidth d - 1, 0];
+				""";
+		String code = code(input, EnumSet.of(Option.LAZY_IMAGES));
+		assertTrue(code.contains("LazyImage c = "));
+		assertTrue(code.contains("LazyImage d = "));
+		assertFalse(code.contains(".get()"));
+		checkSameResult(input, new Object[] { image(50, 40, 1), image(50, 40, 2), 3 });
+	}
+
+	@Test
+	void computedWhenReturned() throws Exception {
+		String input = """
+				image f(image a, int w, int h)
+				image c = getGreen(a) * 2 + a % 7;
+				image[w, h] d = c;
+				^ d;
+				""";
+		String code = code(input, EnumSet.of(Option.LAZY_IMAGES));
+		assertTrue(code.contains("LazyImage d = LazyImage.resize(c, "));
+		checkSameResult(input, new Object[] { image(60, 30, 5), 20, 10 });
+	}
+
+	@Test
+	void changedSourcesNotLazy() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image c = a * 2;
+				image d = c + a;
+				a[x, y] = RED;
+				^ d;
+				""";
+		String code = code(input, EnumSet.of(Option.LAZY_IMAGES));
+		//c and d are computed from a, which is changed after they are declared
+		assertFalse(code.contains("LazyImage"));
+		checkSameResult(input, new Object[] { 20 });
+	}
+
+	@Test
+	void runtimeErrorsWhenRecorded() throws Exception {
+		LazyImage a = LazyImage.of(image(10, 10, 0));
+		LazyImage b = LazyImage.of(image(10, 12, 0));
+		assertThrows(PLCRuntimeException.class, () -> LazyImage.binaryImageImageOp(ImageOps.OP.PLUS, a, b));
+		assertThrows(ArithmeticException.class, () -> LazyImage.binaryImageScalarOp(ImageOps.OP.MOD, a, 0));
+		//The first pixel of a has components 0
+		assertThrows(ArithmeticException.class, () -> LazyImage.binaryImageImageOp(ImageOps.OP.DIV, a, a));
+		LazyImage c = LazyImage.binaryImageScalarOp(ImageOps.OP.TIMES, LazyImage.extractBlue(a), 5);
+		assertArrayEquals(ImageOps.getRGBPixels(ImageOps.binaryImageScalarOp(ImageOps.OP.TIMES, ImageOps.extractBlue(a.get()), 5)),
+				ImageOps.getRGBPixels(c.get()));
+	}
+}
@@ -0,0 +1,105 @@
+package edu.ufl.cise.plc;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// The image variables of a program that the generated code can hold as a LazyImage, computing their
+// pixels only when they are read.
+//
+// A variable can be lazy if it is declared with image operations on image variables and ints, or
+// declared with a size as another image variable, which resizes it. A LazyImage reads the images it
+// is computed from when its pixels are read, so neither the variable nor any image it is computed
+// from may be changed after the declaration, through any variable declared as the same image.
+// Whether a declaration is lazy is decided when it is generated, from its type checked initializer
+// and the statements that follow it, which need not have been type checked yet.
+class LazyImages {
+    private final List<ASTNode> decsAndStatements;
+    // Image variables declared without a size as another image variable, and that variable
+    private final Map<String, String> aliases = new HashMap<>();
+    // Lazy variables, and the image variables they are computed from
+    private final Map<String, Set<String>> sources = new HashMap<>();
+
+    LazyImages(Program program) {
+        decsAndStatements = program.getDecsAndStatements();
+        for (ASTNode node : decsAndStatements) {
+            if (node instanceof VarDeclaration d && d.getType() == Type.IMAGE && d.getDim() == null
+                    && d.getOp() != null && d.getOp().getKind() == Kind.ASSIGN && d.getExpr() instanceof IdentExpr e) {
+                aliases.put(d.getName(), e.getText());
+            }
+        }
+    }
+
+    boolean isLazy(String name) {
+        return sources.containsKey(name);
+    }
+
+    // Decides whether the variable declared by dec, whose initializer has been type checked, is lazy
+    boolean makeLazy(VarDeclaration dec, TypeInfo types) {
+        if (dec.getType() != Type.IMAGE || dec.getOp() == null || dec.getOp().getKind() != Kind.ASSIGN) {
+            return false;
+        }
+        Expr expr = dec.getExpr();
+        boolean lazy = dec.getDim() == null ? ImageFusion.isImageOp(expr, types) && hasLazyOperands(expr, types)
+                : expr instanceof IdentExpr && types.getType(expr) == Type.IMAGE;
+        if (!lazy) {
+            return false;
+        }
+        Set<String> images = new HashSet<>();
+        addSources(expr, types, images);
+        images.add(dec.getName());
+        boolean after = false;
+        for (ASTNode node : decsAndStatements) {
+            String target = node instanceof AssignmentStatement s ? s.getName() : node instanceof ReadStatement s ? s.getName() : null;
+            if (after && target != null && images.contains(root(target))) {
+                return false;
+            }
+            after |= node == dec;
+        }
+        images.remove(dec.getName());
+        sources.put(dec.getName(), images);
+        return true;
+    }
+
+    private boolean hasLazyOperands(Expr expr, TypeInfo types) {
+        if (expr instanceof IdentExpr) {
+            return true;
+        } else if (!ImageFusion.isImageOp(expr, types)) {
+            return false;
+        } else if (expr instanceof UnaryExpr e) {
+            return hasLazyOperands(e.getExpr(), types);
+        } else if (expr instanceof BinaryExpr e) {
+            return hasLazyOperands(e.getLeft(), types) && (types.getType(e.getRight()) == Type.INT || hasLazyOperands(e.getRight(), types));
+        }
+        return false;
+    }
+
+    // Adds the roots of the image variables read when the pixels of expr are read
+    private void addSources(Expr expr, TypeInfo types, Set<String> images) {
+        if (expr instanceof IdentExpr && types.getType(expr) == Type.IMAGE) {
+            Set<String> lazySources = sources.get(expr.getText());
+            if (lazySources != null) {
+                images.addAll(lazySources);
+            }
+            images.add(root(expr.getText()));
+        } else if (types.getType(expr) == Type.IMAGE) {
+            for (Expr child : ExprHashCons.children(expr)) {
+                addSources(child, types, images);
+            }
+        }
+    }
+
+    // The variable declared with the image that name is declared as
+    private String root(String name) {
+        while (aliases.containsKey(name)) {
+            name = aliases.get(name);
+        }
+        return name;
+    }
+}
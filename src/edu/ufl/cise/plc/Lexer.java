@@ -1,7 +1,7 @@
 package edu.ufl.cise.plc;
 
-import java.util.HashMap;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.Map;
 
 public class Lexer implements ILexer {
 
@@ -12,74 +12,86 @@ public class Lexer implements ILexer {
         INT_LIT,
         INT_ZERO_LIT,
         FLOAT_LIT,
-        STRING_LIT,
         MINUS,
         EXCLAMATION,
         R_ARROW,
         L_ARROW,
-        ASSIGNMENT,
-        COMMENT
+        ASSIGNMENT
     }
 
-    private final String rawInput;
-    private int posOverall, posInLine, line;
-    IToken.SourceLocation tokenStart;
+    private String rawInput;
+    private LineMap lines;
+    private int posOverall;
+    // Offset of the first character of the token being scanned
+    int tokenStart;
     private State currState;
+    // Characters of the token being scanned, reused for every token and every input
+    private final StringBuilder literal = new StringBuilder();
 
-    private HashMap<String, IToken.Kind> reserved;
+    // Reserved words are the same for every input, so one table is shared by all lexers
+    private static final Map<String, IToken.Kind> reserved = Map.ofEntries(
+            Map.entry("if", IToken.Kind.KW_IF),
+            Map.entry("fi", IToken.Kind.KW_FI),
+            Map.entry("else", IToken.Kind.KW_ELSE),
+            Map.entry("BLACK", IToken.Kind.COLOR_CONST),
+            Map.entry("BLUE", IToken.Kind.COLOR_CONST),
+            Map.entry("CYAN", IToken.Kind.COLOR_CONST),
+            Map.entry("DARK_GRAY", IToken.Kind.COLOR_CONST),
+            Map.entry("GRAY", IToken.Kind.COLOR_CONST),
+            Map.entry("GREEN", IToken.Kind.COLOR_CONST),
+            Map.entry("LIGHT_GRAY", IToken.Kind.COLOR_CONST),
+            Map.entry("MAGENTA", IToken.Kind.COLOR_CONST),
+            Map.entry("ORANGE", IToken.Kind.COLOR_CONST),
+            Map.entry("PINK", IToken.Kind.COLOR_CONST),
+            Map.entry("RED", IToken.Kind.COLOR_CONST),
+            Map.entry("WHITE", IToken.Kind.COLOR_CONST),
+            Map.entry("YELLOW", IToken.Kind.COLOR_CONST),
+            Map.entry("write", IToken.Kind.KW_WRITE),
+            Map.entry("console", IToken.Kind.KW_CONSOLE),
+            Map.entry("true", IToken.Kind.BOOLEAN_LIT),
+            Map.entry("false", IToken.Kind.BOOLEAN_LIT),
+            Map.entry("int", IToken.Kind.TYPE),
+            Map.entry("float", IToken.Kind.TYPE),
+            Map.entry("string", IToken.Kind.TYPE),
+            Map.entry("boolean", IToken.Kind.TYPE),
+            Map.entry("color", IToken.Kind.TYPE),
+            Map.entry("image", IToken.Kind.TYPE),
+            Map.entry("getRed", IToken.Kind.COLOR_OP),
+            Map.entry("getGreen", IToken.Kind.COLOR_OP),
+            Map.entry("getBlue", IToken.Kind.COLOR_OP),
+            Map.entry("getWidth", IToken.Kind.IMAGE_OP),
+            Map.entry("getHeight", IToken.Kind.IMAGE_OP),
+            Map.entry("void", IToken.Kind.KW_VOID)
+    );
+
+    // When not null, errors are added here and returned as ERROR tokens instead of being thrown
+    private final List<Diagnostic> diagnostics;
 
 
     public Lexer(String rawInput) {
-        this.rawInput = rawInput;
-        this.posOverall = this.posInLine = this.line = 0;
-        initMap();
+        this(rawInput, null);
+    }
+
+    public Lexer(String rawInput, List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+        reset(rawInput);
     }
 
-    private void initMap() {
-       reserved = new HashMap<String, IToken.Kind>() {{
-           put("if", IToken.Kind.KW_IF);
-           put("fi", IToken.Kind.KW_FI);
-           put("else", IToken.Kind.KW_ELSE);
-           put("BLACK", IToken.Kind.COLOR_CONST);
-           put("BLUE", IToken.Kind.COLOR_CONST);
-           put("CYAN", IToken.Kind.COLOR_CONST);
-           put("DARK_GRAY", IToken.Kind.COLOR_CONST);
-           put("GRAY", IToken.Kind.COLOR_CONST);
-           put("GREEN", IToken.Kind.COLOR_CONST);
-           put("LIGHT_GRAY", IToken.Kind.COLOR_CONST);
-           put("MAGENTA", IToken.Kind.COLOR_CONST);
-           put("ORANGE", IToken.Kind.COLOR_CONST);
-           put("PINK", IToken.Kind.COLOR_CONST);
-           put("RED", IToken.Kind.COLOR_CONST);
-           put("WHITE", IToken.Kind.COLOR_CONST);
-           put("YELLOW", IToken.Kind.COLOR_CONST);
-           put("write", IToken.Kind.KW_WRITE);
-           put("console", IToken.Kind.KW_CONSOLE);
-           put("true", IToken.Kind.BOOLEAN_LIT);
-           put("false", IToken.Kind.BOOLEAN_LIT);
-           put("int", IToken.Kind.TYPE);
-           put("float", IToken.Kind.TYPE);
-           put("string", IToken.Kind.TYPE);
-           put("boolean", IToken.Kind.TYPE);
-           put("color", IToken.Kind.TYPE);
-           put("image", IToken.Kind.TYPE);
-           put("getRed", IToken.Kind.COLOR_OP);
-           put("getGreen", IToken.Kind.COLOR_OP);
-           put("getBlue", IToken.Kind.COLOR_OP);
-           put("getWidth", IToken.Kind.IMAGE_OP);
-           put("getHeight", IToken.Kind.IMAGE_OP);
-           put("void", IToken.Kind.KW_VOID);
-        }};
+    // Prepares this lexer to scan a new input, keeping its buffers. Tokens already returned keep
+    // their own line table, so they still report correct locations for the old input.
+    public void reset(String rawInput) {
+        this.rawInput = rawInput;
+        this.lines = new LineMap(rawInput);
+        this.posOverall = 0;
+        this.tokenStart = 0;
     }
 
     private char advance() {
-        posInLine++;
         return rawInput.charAt(posOverall++);
     }
 
     private void goBack() {
         posOverall--;
-        posInLine--;
     }
 
     private Token makeToken(IToken.Kind kind) {
@@ -87,67 +99,121 @@ public class Lexer implements ILexer {
     }
 
     private Token makeToken(IToken.Kind kind, String literal) {
-        return new Token(kind, literal, tokenStart);
+        return new Token(kind, literal, tokenStart, lines);
+    }
+
+    private Token error(String message, String literal) throws LexicalException {
+        if (diagnostics == null) {
+            throw new LexicalException(message, lines.locate(tokenStart));
+        }
+        diagnostics.add(new Diagnostic(Diagnostic.Phase.LEXICAL, message, lines.locate(tokenStart)));
+        return makeToken(IToken.Kind.ERROR, literal);
+    }
+
+    // Literal tokens carry their decoded value so later passes never re-parse the text
+    private Token makeIntToken(String literal) throws LexicalException {
+        try {
+            return new Token(IToken.Kind.INT_LIT, literal, tokenStart, lines, Integer.parseInt(literal));
+        } catch (NumberFormatException e) {
+            return error("Number is too large to be formatted as an integer", literal);
+        }
+    }
+
+    private Token makeFloatToken(String literal) {
+        return new Token(IToken.Kind.FLOAT_LIT, literal, tokenStart, lines, Float.parseFloat(literal));
+    }
+
+    private Token makeReservedToken(IToken.Kind kind, String literal) {
+        if (kind == IToken.Kind.BOOLEAN_LIT) {
+            return new Token(kind, literal, tokenStart, lines, literal.equals("true"));
+        }
+        return makeToken(kind, literal);
+    }
+
+    // Comments, string literals and runs of whitespace are scanned with a single search instead of
+    // one DFA step per character. String.indexOf(char) is a vectorized intrinsic in HotSpot.
+
+    // Skips the rest of a run of whitespace; the first character has already been read.
+    // The EOF token is located at the last whitespace character, as when scanning one at a time.
+    private void skipWhitespace() {
+        int length = rawInput.length();
+        while (posOverall < length) {
+            char c = rawInput.charAt(posOverall);
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                break;
+            }
+            posOverall++;
+        }
+        tokenStart = posOverall - 1;
+    }
+
+    // Skips to the newline ending a comment, which is then scanned as whitespace
+    private void skipComment() {
+        int newline = rawInput.indexOf('\n', posOverall);
+        posOverall = newline < 0 ? rawInput.length() : newline;
+    }
+
+    // Scans a string literal up to and including the next '"'; the opening '"' has already been read
+    private Token scanString() throws LexicalException {
+        int close = rawInput.indexOf('"', posOverall);
+        if (close < 0) {
+            posOverall = rawInput.length();
+            return error("Unexpected end of file", rawInput.substring(tokenStart));
+        }
+        posOverall = close + 1;
+        return makeToken(IToken.Kind.STRING_LIT, rawInput.substring(tokenStart, posOverall));
     }
 
     @Override
     public IToken next() throws LexicalException {
-        StringBuilder literal = new StringBuilder();
+        literal.setLength(0);
         currState = State.START;
 
         while (true) {
 
             if (posOverall >= rawInput.length()) {
-                if (currState == State.START || currState == State.COMMENT) {
+                if (currState == State.START) {
                     return makeToken(IToken.Kind.EOF);
                 }
-                else if (currState == State.STRING_LIT) {
-                    throw new LexicalException("Unexpected end of file", tokenStart);
-                }
                 else {
                     switch (currState) {
                         case INT_LIT -> {
-                            goBack();
                             currState = State.START;
-                            return makeToken(IToken.Kind.INT_LIT, literal.toString());
+                            return makeIntToken(literal.toString());
                         }
                         case IDENT -> {
-                            goBack();
                             currState = State.START;
-                            return makeToken(IToken.Kind.IDENT, literal.toString());
+                            String litString = literal.toString();
+                            if (reserved.containsKey(litString)) {
+                                return makeReservedToken(reserved.get(litString), litString);
+                            }
+                            return makeToken(IToken.Kind.IDENT, litString);
                         }
                         case FLOAT_LIT -> {
-                            goBack();
                             currState = State.START;
-                            return makeToken(IToken.Kind.FLOAT_LIT, literal.toString());
+                            return makeFloatToken(literal.toString());
                         }
                         case INT_ZERO_LIT -> {
-                            goBack();
                             currState = State.START;
-                            return makeToken(IToken.Kind.INT_LIT, literal.toString());
+                            return makeIntToken(literal.toString());
                         }
                         case MINUS -> {
-                            goBack();
                             currState = State.START;
                             return makeToken(IToken.Kind.MINUS, literal.toString());
                         }
                         case EXCLAMATION -> {
-                            goBack();
                             currState = State.START;
                             return makeToken(IToken.Kind.BANG, literal.toString());
                         }
                         case R_ARROW -> {
-                            goBack();
                             currState = State.START;
                             return makeToken(IToken.Kind.GT, literal.toString());
                         }
                         case L_ARROW -> {
-                            goBack();
                             currState = State.START;
                             return makeToken(IToken.Kind.LT, literal.toString());
                         }
                         case ASSIGNMENT -> {
-                            goBack();
                             currState = State.START;
                             return makeToken(IToken.Kind.ASSIGN, literal.toString());
                         }
@@ -159,14 +225,9 @@ public class Lexer implements ILexer {
 
             switch(currState) {
                 case START -> {
-                    tokenStart = new IToken.SourceLocation(line, posInLine-1);
+                    tokenStart = posOverall - 1;
                     switch (ch) {
-                        case ' ', '\t', '\r' -> {}
-
-                        case '\n' -> {
-                            posInLine = 0;
-                            line++;
-                        }
+                        case ' ', '\t', '\r', '\n' -> skipWhitespace();
 
                         // Single character tokens
                         case '+' -> {
@@ -210,9 +271,7 @@ public class Lexer implements ILexer {
                         }
 
                         // State-switching characters
-                        case '#' -> {
-                            currState = State.COMMENT;
-                        }
+                        case '#' -> skipComment();
                         case '-' -> {
                             literal.append(ch);
                             currState = State.MINUS;
@@ -234,8 +293,7 @@ public class Lexer implements ILexer {
                             currState = State.ASSIGNMENT;
                         }
                         case '"' -> {
-                            literal.append(ch);
-                            currState = State.STRING_LIT;
+                            return scanString();
                         }
                         case '0' -> {
                             literal.append(ch);
@@ -250,21 +308,20 @@ public class Lexer implements ILexer {
                                 literal.append(ch);
                                 currState = State.IDENT;
                             } else {
-                                throw new LexicalException("Character is not supported", tokenStart);
+                                return error("Character is not supported", String.valueOf(ch));
                             }
                         }
                     }
                 }
                 case IDENT -> {
-                    String litString = literal.toString();
-
                     if (Character.isJavaIdentifierPart(ch)) {
                         literal.append(ch);
                     } else {
                         goBack();
+                        String litString = literal.toString();
 
                         if (reserved.containsKey(litString)) {
-                            return makeToken(reserved.get(litString), litString);
+                            return makeReservedToken(reserved.get(litString), litString);
                         }
 
                         return makeToken(IToken.Kind.IDENT, litString);
@@ -275,7 +332,7 @@ public class Lexer implements ILexer {
                         literal.append(ch);
                     } else {
                         goBack();
-                        return makeToken(IToken.Kind.FLOAT_LIT, literal.toString());
+                        return makeFloatToken(literal.toString());
                     }
 
                 }
@@ -286,14 +343,8 @@ public class Lexer implements ILexer {
                     } else if (Character.isDigit(ch)) {
                         literal.append(ch);
                     } else {
-                        try {
-                            int x = Integer.parseInt(literal.toString());
-                        } catch (NumberFormatException e) {
-                            throw new LexicalException("Number is too large to be formatted as an integer", tokenStart);
-                        }
-
                         goBack();
-                        return makeToken(IToken.Kind.INT_LIT, literal.toString());
+                        return makeIntToken(literal.toString());
                     }
 
                 }
@@ -303,15 +354,7 @@ public class Lexer implements ILexer {
                         currState = State.FLOAT_LIT;
                     } else {
                         goBack();
-                        return makeToken(IToken.Kind.INT_LIT, literal.toString());
-                    }
-                }
-                case STRING_LIT -> {
-                    if (ch == '"') {
-                        literal.append(ch);
-                        return makeToken(IToken.Kind.STRING_LIT, literal.toString());
-                    } else {
-                        literal.append(ch);
+                        return makeIntToken(literal.toString());
                     }
                 }
                 case MINUS -> {
@@ -368,12 +411,6 @@ public class Lexer implements ILexer {
                         return makeToken(IToken.Kind.ASSIGN, literal.toString());
                     }
                 }
-                case COMMENT -> {
-                    if (ch == '\n') {
-                        goBack();
-                        currState = State.START;
-                    }
-                }
             }
         }
     }
@@ -381,16 +418,18 @@ public class Lexer implements ILexer {
     @Override
     public IToken peek() throws LexicalException {
         int tmp_po = posOverall;
-        int tmp_pil = posInLine;
-        int tmp_line = line;
-        IToken.SourceLocation tmp_itsl = tokenStart;
+        int tmp_start = tokenStart;
+        int tmp_errors = diagnostics == null ? 0 : diagnostics.size();
 
         IToken tmp = next();
 
+        // errors are reported by next(), not again on lookahead
+        if (diagnostics != null) {
+            diagnostics.subList(tmp_errors, diagnostics.size()).clear();
+        }
+
         posOverall = tmp_po;
-        posInLine = tmp_pil;
-        line = tmp_line;
-        tokenStart = tmp_itsl;
+        tokenStart = tmp_start;
 
         return tmp;
     }
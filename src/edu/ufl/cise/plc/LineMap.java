@@ -0,0 +1,66 @@
+package edu.ufl.cise.plc;
+
+import java.util.Arrays;
+
+// Offsets of the first character of each line of a source string. Tokens only store their offset
+// into the source; line and column are computed from this table when a location is asked for.
+public class LineMap {
+
+    private int[] lineStarts = new int[64];
+    private int lineCount;
+
+    public LineMap(String source) {
+        build(source);
+    }
+
+    // A line map with the given line start offsets, the first of which must be 0
+    public LineMap(int[] lineStarts, int lineCount) {
+        this.lineStarts = Arrays.copyOf(lineStarts, Math.max(lineCount, 1));
+        this.lineCount = lineCount;
+    }
+
+    private void build(String source) {
+        lineCount = 0;
+        addLine(0);
+        int newline = source.indexOf('\n');
+        while (newline >= 0) {
+            addLine(newline + 1);
+            newline = source.indexOf('\n', newline + 1);
+        }
+    }
+
+    private void addLine(int start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = start;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    // Returns the 0-based line containing the given offset
+    public int lineOf(int offset) {
+        int lo = 0;
+        int hi = lineCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    public IToken.SourceLocation locate(int offset) {
+        int line = lineOf(offset);
+        return new IToken.SourceLocation(line, offset - lineStarts[line]);
+    }
+}
@@ -0,0 +1,97 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+
+class LoopInvariantTests extends CodeGenTestSupport {
+
+	LoopInvariantTests() {
+		super(EnumSet.of(Option.LICM), EnumSet.of(Option.LICM, Option.CSE));
+	}
+
+	//The last line of the generated code that sets the pixels of the given image
+	String loopBody(String code, String image) {
+		String body = null;
+		for (String line : code.split("\n")) {
+			if (line.contains("ImageOps.setColor(" + image + ",")) {
+				body = line;
+			}
+		}
+		return body;
+	}
+
+	@Test
+	void invariantsComputedBeforeLoops() throws Exception {
+		String input = """
+				image f(int w, int h, int k)
+				image[w, h] a;
+				a[x, y] = <<x, y, x + y>>;
+				image[w, h] b;
+				b[x, y] = a[x, y] * (RED + <<k * 3, k / 2, k>>) / <<k + 1, k + 2, k + 3>> + <<getWidth a / 16, 0, getHeight a / 16>>;
+				^ b;
+				""";
+		String body = loopBody(code(input, EnumSet.of(Option.LICM)), "b");
+		assertTrue(body.contains("a.getRGB(x, y)"));
+		assertFalse(body.contains("Color.RED"));
+		assertFalse(body.contains("k*3"));
+		assertFalse(body.contains("k+1"));
+		assertFalse(body.contains("getWidth"));
+		Object[] params = { 40, 30, 7 };
+		checkSameResult(input, params);
+	}
+
+	@Test
+	void pixelsReadInLoops() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image b = a;
+				a[x, y] = b[0, 0] + <<1, 1, 1>> * a[1, 0];
+				^ a;
+				""";
+		String body = loopBody(code(input, EnumSet.of(Option.LICM)), "a");
+		//The loops write the pixels they read, through a and through b
+		assertTrue(body.contains("b.getRGB(0, 0)"));
+		assertTrue(body.contains("a.getRGB(1, 0)"));
+		Object[] params = { 20 };
+		checkSameResult(input, params);
+	}
+
+	@Test
+	void conditionalCasesNotComputedBeforeLoops() throws Exception {
+		String input = """
+				image f(int w, int k, int d)
+				image[w, w] a;
+				a[x, y] = if (x > w) <<k / d, 0, 0>> else <<k, k, k>> fi;
+				^ a;
+				""";
+		String code = code(input, EnumSet.of(Option.LICM));
+		assertTrue(loopBody(code, "a").contains("k/d"));
+		//k / d is never computed, so d can be 0
+		int[] pixels = pixels(input, EnumSet.of(Option.LICM), new Object[] { 5, 9, 0 });
+		assertEquals(0xff090909, pixels[0]);
+	}
+
+	@Test
+	void rightOperandsNotComputedBeforeLoops() throws Exception {
+		String input = """
+				image f(int w, int k)
+				image[w, w] b;
+				b[x, y] = if (x < 0 & <<100 / k, 0, 0>> == RED) GREEN else BLUE fi;
+				^ b;
+				""";
+		String code = code(input, EnumSet.of(Option.LICM));
+		assertTrue(loopBody(code, "b").contains("100/k"));
+		//x < 0 is never true, so 100 / k is never computed and k can be 0
+		int[] pixels = pixels(input, EnumSet.of(Option.LICM), new Object[] { 5, 0 });
+		assertEquals(0xff0000ff, pixels[0]);
+	}
+}
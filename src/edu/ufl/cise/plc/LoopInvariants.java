@@ -0,0 +1,93 @@
+package edu.ufl.cise.plc;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// Finds the parts of the right hand side of a pixel assignment that have the same value for every
+// pixel, so that the generated code can compute them once before the loops over the pixels.
+//
+// A subexpression is invariant if it does not use the variables of the pixel selector and does not
+// read the pixels of an image the loops may change: the loops write the pixels of the target image,
+// which other image variables may refer to as well, as PixelAliases tells. The size of an image does
+// not change in the loops, so getWidth and getHeight are invariant. Only subexpressions that are
+// evaluated for every pixel are moved, not the cases of a conditional expression or the right operand
+// of & or |, generated as && and ||, which the loops may never evaluate.
+class LoopInvariants {
+    private final Set<String> loopVariables;
+    // Whether the loops leave the pixels of an image variable unchanged
+    private final Predicate<String> unchanged;
+    private final TypeInfo types;
+    private final Map<Expr, Boolean> invariant = new IdentityHashMap<>();
+
+    private LoopInvariants(Set<String> loopVariables, Predicate<String> unchanged, TypeInfo types) {
+        this.loopVariables = loopVariables;
+        this.unchanged = unchanged;
+        this.types = types;
+    }
+
+    // The largest invariant subexpressions of expr that are worth computing before the loops, in the
+    // order they are evaluated
+    static List<Expr> find(Expr expr, Set<String> loopVariables, Predicate<String> unchanged, TypeInfo types) {
+        List<Expr> invariants = new ArrayList<>();
+        new LoopInvariants(loopVariables, unchanged, types).collect(expr, invariants);
+        return invariants;
+    }
+
+    private void collect(Expr expr, List<Expr> invariants) {
+        if (isInvariant(expr)) {
+            if (worthMoving(expr)) {
+                invariants.add(expr);
+            }
+        } else if (expr instanceof ConditionalExpr e) {
+            collect(e.getCondition(), invariants);
+        } else if (expr instanceof BinaryExpr e
+                && (e.getOp().getKind() == Kind.AND || e.getOp().getKind() == Kind.OR)) {
+            collect(e.getLeft(), invariants);
+        } else {
+            for (Expr child : ExprHashCons.children(expr)) {
+                collect(child, invariants);
+            }
+        }
+    }
+
+    // Identifiers and literals cost no more than a temporary, except an int literal used as a color,
+    // which allocates a ColorTuple
+    private boolean worthMoving(Expr expr) {
+        if (expr instanceof IntLitExpr) {
+            return types.getCoerceTo(expr) == Type.COLOR;
+        }
+        return !(expr instanceof IdentExpr || expr instanceof FloatLitExpr || expr instanceof BooleanLitExpr
+                || expr instanceof StringLitExpr);
+    }
+
+    private boolean isInvariant(Expr expr) {
+        Boolean result = invariant.get(expr);
+        if (result == null) {
+            if (expr instanceof IdentExpr) {
+                result = !loopVariables.contains(expr.getText()) && types.getType(expr) != Type.IMAGE;
+            } else if (expr instanceof UnaryExpr e && e.getOp().getKind() == Kind.IMAGE_OP) {
+                result = e.getExpr() instanceof IdentExpr && !loopVariables.contains(e.getExpr().getText());
+            } else if (expr instanceof UnaryExprPostfix e) {
+                result = unchanged.test(e.getText()) && isInvariant(e.getSelector().getX())
+                        && isInvariant(e.getSelector().getY());
+            } else if (expr instanceof ConsoleExpr) {
+                result = false;
+            } else {
+                result = true;
+                for (Expr child : ExprHashCons.children(expr)) {
+                    result &= isInvariant(child);
+                }
+            }
+            invariant.put(expr, result);
+        }
+        return result;
+    }
+}
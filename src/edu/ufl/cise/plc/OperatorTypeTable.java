@@ -0,0 +1,108 @@
+package edu.ufl.cise.plc;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+import static edu.ufl.cise.plc.IToken.Kind.*;
+import static edu.ufl.cise.plc.ast.Types.Type.*;
+
+//Typing rules of the unary and binary operators, as dense arrays indexed by operator kind and operand
+//types so that the type checker finds the rule for an expression with one array access.
+//A null entry means the combination is illegal.
+//Each legal combination is one line in the static initializer below.
+class OperatorTypeTable {
+
+	//Result type of a binary expression, and the types its operands must be coerced to (null if none)
+	record Rule(Type result, Type coerceLeft, Type coerceRight) {
+	}
+
+	private static final int KINDS = Kind.values().length;
+	private static final int TYPES = Type.values().length;
+
+	private static final Rule[] binaryRules = new Rule[KINDS * TYPES * TYPES];
+	private static final Type[] unaryResults = new Type[KINDS * TYPES];
+
+	static {
+		unary(BANG, BOOLEAN, BOOLEAN);
+		unary(MINUS, FLOAT, FLOAT);
+		unary(MINUS, INT, INT);
+		unary(COLOR_OP, INT, INT);
+		unary(COLOR_OP, COLOR, INT);
+		unary(COLOR_OP, IMAGE, IMAGE);
+		unary(IMAGE_OP, IMAGE, INT);
+
+		Kind[] logical = {AND, OR};
+		binary(logical, BOOLEAN, BOOLEAN, BOOLEAN, null, null);
+
+		Kind[] equality = {EQUALS, NOT_EQUALS};
+		for (Type t : Type.values()) {
+			binary(equality, t, t, BOOLEAN, null, null);
+		}
+
+		Kind[] arithmetic = {PLUS, MINUS, TIMES, DIV, MOD};
+		binary(arithmetic, INT, INT, INT, null, null);
+		binary(arithmetic, FLOAT, FLOAT, FLOAT, null, null);
+		binary(arithmetic, FLOAT, INT, FLOAT, null, FLOAT);
+		binary(arithmetic, INT, FLOAT, FLOAT, FLOAT, null);
+		binary(arithmetic, COLOR, COLOR, COLOR, null, null);
+		binary(arithmetic, COLORFLOAT, COLORFLOAT, COLORFLOAT, null, null);
+		binary(arithmetic, COLORFLOAT, COLOR, COLORFLOAT, null, COLORFLOAT);
+		binary(arithmetic, COLOR, COLORFLOAT, COLORFLOAT, COLORFLOAT, null);
+		binary(arithmetic, IMAGE, IMAGE, IMAGE, null, null);
+
+		Kind[] multiplicative = {TIMES, DIV, MOD};
+		binary(multiplicative, IMAGE, INT, IMAGE, null, null);
+		binary(multiplicative, IMAGE, FLOAT, IMAGE, null, null);
+		binary(multiplicative, INT, COLOR, COLOR, COLOR, null);
+		binary(multiplicative, COLOR, INT, COLOR, null, COLOR);
+		binary(multiplicative, COLOR, FLOAT, COLOR, null, COLOR);
+		binary(multiplicative, FLOAT, COLOR, COLORFLOAT, COLORFLOAT, COLORFLOAT);
+		//Any other pair of equal types has that type
+		for (Type t : Type.values()) {
+			if (binaryRules[index(TIMES, t, t)] == null) {
+				binary(multiplicative, t, t, t, null, null);
+			}
+		}
+
+		Kind[] relational = {LT, LE, GT, GE};
+		binary(relational, INT, INT, BOOLEAN, null, null);
+		binary(relational, FLOAT, FLOAT, BOOLEAN, null, null);
+		binary(relational, INT, FLOAT, BOOLEAN, FLOAT, null);
+		binary(relational, FLOAT, INT, BOOLEAN, null, FLOAT);
+	}
+
+	private static int index(Kind op, Type left, Type right) {
+		return (op.ordinal() * TYPES + left.ordinal()) * TYPES + right.ordinal();
+	}
+
+	private static void unary(Kind op, Type operand, Type result) {
+		unaryResults[op.ordinal() * TYPES + operand.ordinal()] = result;
+	}
+
+	private static void binary(Kind[] ops, Type left, Type right, Type result, Type coerceLeft, Type coerceRight) {
+		Rule rule = new Rule(result, coerceLeft, coerceRight);
+		for (Kind op : ops) {
+			binaryRules[index(op, left, right)] = rule;
+		}
+	}
+
+	//Result type of op applied to an operand of the given type, or null if that is illegal
+	static Type unary(Kind op, Type operand) {
+		return unaryResults[op.ordinal() * TYPES + operand.ordinal()];
+	}
+
+	//Rule for op applied to operands of the given types, or null if that is illegal
+	static Rule binary(Kind op, Type left, Type right) {
+		return binaryRules[index(op, left, right)];
+	}
+
+	//Message for an illegal combination of op and operand types
+	static String binaryError(Kind op) {
+		return switch (op) {
+			case AND, OR -> "Booleans required";
+			case EQUALS, NOT_EQUALS -> "Incompatible types for comparison";
+			case PLUS, MINUS, TIMES, DIV, MOD, LT, LE, GT, GE -> "incompatible types for operator";
+			default -> "use a real operator";
+		};
+	}
+}
@@ -4,33 +4,151 @@ import edu.ufl.cise.plc.ast.*;
 import edu.ufl.cise.plc.ast.Types.Type;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Parser implements IParser {
     // Current token
     IToken t;
     Lexer lexer;
+    // When not null, tokens are taken from this buffer instead of the lexer; next is the index of
+    // the token after t
+    TokenBuffer tokens;
+    int next;
+    // A lexical error in the first token, thrown by parse() as the constructors and reset cannot
+    LexicalException firstError;
+
+    // When not null, syntax errors are added here and parsing resumes after the next SEMI
+    final List<Diagnostic> diagnostics;
+    // False when only checking syntax; node constructors are skipped and null is returned instead
+    boolean buildAst = true;
+
+    // Unwinds to the enclosing declaration or statement after an error has been recorded. A single
+    // instance without a stack trace is shared so that recovering from an error allocates nothing.
+    private static final class Resync extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Resync() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Resync RESYNC = new Resync();
+
+    // Token classes as bitmasks over Kind ordinals, so testing membership is a shift and an AND
+    static final long TYPE_OR_VOID = kinds(IToken.Kind.TYPE, IToken.Kind.KW_VOID);
+    static final long DECLARATION_OPS = kinds(IToken.Kind.ASSIGN, IToken.Kind.LARROW);
+    static final long UNARY_OPS = kinds(IToken.Kind.BANG, IToken.Kind.MINUS, IToken.Kind.COLOR_OP,
+            IToken.Kind.IMAGE_OP);
+    static final long PRIMARY_TOKENS = kinds(IToken.Kind.BOOLEAN_LIT, IToken.Kind.STRING_LIT,
+            IToken.Kind.INT_LIT, IToken.Kind.FLOAT_LIT, IToken.Kind.IDENT, IToken.Kind.COLOR_CONST,
+            IToken.Kind.KW_CONSOLE);
+
+    static long kinds(IToken.Kind... kinds) {
+        if (IToken.Kind.values().length > Long.SIZE) {
+            throw new IllegalStateException("Too many token kinds for a long bitmask");
+        }
+        long mask = 0;
+        for (IToken.Kind k : kinds) {
+            mask |= 1L << k.ordinal();
+        }
+        return mask;
+    }
 
     public Parser(String input) {
-        lexer = new Lexer(input);
+        this(input, null);
+    }
+
+    public Parser(String input, List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+        lexer = new Lexer(input, diagnostics);
+        start();
+    }
+
+    // Parses the tokens in the given buffer rather than pulling them from a lexer one at a time
+    public Parser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    public Parser(TokenBuffer tokens, List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+        this.tokens = tokens;
+        start();
+    }
+
+    // Prepares this parser and its lexer or token buffer to parse a new input, keeping their buffers
+    // and tables
+    public void reset(String input) {
+        if (tokens != null) {
+            tokens.reset(input);
+            next = 0;
+        } else {
+            lexer.reset(input);
+        }
+        buildAst = true;
+        start();
+    }
+
+    // Reads the first token of the input, keeping a lexical error for parse() to throw
+    private void start() {
+        t = null;
+        firstError = null;
         try {
             consume();
         } catch (LexicalException e) {
-            e.printStackTrace();
+            firstError = e;
         }
     }
 
     @Override
     public ASTNode parse() throws PLCException {
+        if (firstError != null) {
+            throw firstError;
+        }
         ASTNode p = program();
         match(IToken.Kind.EOF);
         return p;
     }
 
+    // Checks the syntax of the whole input without building an AST. Requires a parser created with
+    // a diagnostics list; returns that list, which is empty if the program is syntactically valid.
+    public List<Diagnostic> validate() throws PLCException {
+        if (diagnostics == null) throw new IllegalStateException("validate() requires a diagnostics list");
+        if (firstError != null) {
+            throw firstError;
+        }
+        buildAst = false;
+        program();
+        return diagnostics;
+    }
+
+    // In the default mode, returns the exception for the caller to throw. When collecting
+    // diagnostics, records the error (unless the lexer already reported this token) and unwinds.
+    SyntaxException syntaxError(String message) {
+        if (diagnostics == null) {
+            return new SyntaxException(message);
+        }
+        if (!isKind(IToken.Kind.ERROR)) {
+            diagnostics.add(new Diagnostic(Diagnostic.Phase.SYNTAX, message, t.getSourceLocation()));
+        }
+        throw RESYNC;
+    }
+
+    // Skips the rest of a declaration or statement containing an error
+    void synchronize() throws LexicalException {
+        while (!isKind(IToken.Kind.SEMI) && !isKind(IToken.Kind.EOF)) {
+            consume();
+        }
+        if (isKind(IToken.Kind.SEMI)) {
+            consume();
+        }
+    }
+
     void match(IToken.Kind c) throws LexicalException, SyntaxException {
         if (isKind(c)) {
             consume();
         } else {
-            throw new SyntaxException(String.format("Syntax error! Expected %s, got %s", c, t.getKind()));
+            throw syntaxError(String.format("Syntax error! Expected %s, got %s", c, t.getKind()));
         }
     }
 
@@ -39,83 +157,89 @@ public class Parser implements IParser {
         return t.getKind() == kind;
     }
 
-    protected boolean isKind(IToken.Kind... kinds) {
-        for (IToken.Kind k : kinds) {
-            if (k == t.getKind())
-                return true;
-        }
-        return false;
+    protected boolean isKind(long kinds) {
+        return (kinds & (1L << t.getKind().ordinal())) != 0;
     }
 
     void consume() throws LexicalException {
-       t = lexer.next();
+        t = tokens != null ? tokens.get(next++) : lexer.next();
     }
 
     public Program program() throws LexicalException, SyntaxException {
         IToken firstToken = t;
+        Type returnType = null;
+        String name = null;
+        ArrayList<NameDef> params = new ArrayList<NameDef>();
+        boolean validHeader = true;
 
-        Type returnType;
-        if (isKind(IToken.Kind.TYPE, IToken.Kind.KW_VOID)) {
-            returnType = Type.toType(t.getText());
-        }
-        else {
-            throw new SyntaxException("Program() did not see type or void as first token.");
-        }
-        consume();
+        try {
+            if (isKind(TYPE_OR_VOID)) {
+                returnType = Type.toType(t.getText());
+            }
+            else {
+                throw syntaxError("Program() did not see type or void as first token.");
+            }
+            consume();
 
-        String name;
-        if (isKind(IToken.Kind.IDENT)) {
-            name = t.getText();
-        }
-        else {
-            throw new SyntaxException("Program() did not see ident as second token.");
-        }
-        consume();
+            if (isKind(IToken.Kind.IDENT)) {
+                name = t.getText();
+            }
+            else {
+                throw syntaxError("Program() did not see ident as second token.");
+            }
+            consume();
 
-        match(IToken.Kind.LPAREN);
+            match(IToken.Kind.LPAREN);
 
-        ArrayList<NameDef> params = new ArrayList<NameDef>();
-        if (!isKind(IToken.Kind.RPAREN)) {
-            params.add(nameDef());
-            consume();
-            while (isKind(IToken.Kind.COMMA)) {
-                consume();
+            if (!isKind(IToken.Kind.RPAREN)) {
                 params.add(nameDef());
                 consume();
+                while (isKind(IToken.Kind.COMMA)) {
+                    consume();
+                    params.add(nameDef());
+                    consume();
+                }
             }
+            match(IToken.Kind.RPAREN);
+        } catch (Resync r) {
+            validHeader = false;
+            synchronize();
         }
-        match(IToken.Kind.RPAREN);
 
         ArrayList<ASTNode> decsAndStatements = new ArrayList<ASTNode>();
 
         while (!isKind(IToken.Kind.EOF)) {
-            if (isKind(IToken.Kind.TYPE)) {
-                decsAndStatements.add(declaration());
+            try {
+                if (isKind(IToken.Kind.TYPE)) {
+                    decsAndStatements.add(declaration());
+                }
+                else {
+                    decsAndStatements.add(statement());
+                }
+
+                match(IToken.Kind.SEMI);
+            } catch (Resync r) {
+                synchronize();
             }
-            else {
-                decsAndStatements.add(statement());
-            }
-
-            match(IToken.Kind.SEMI);
         }
 
-        return new Program(firstToken, returnType, name, params, decsAndStatements);
+        return buildAst && validHeader ? new Program(firstToken, returnType, name, params, decsAndStatements) : null;
     }
 
     public NameDef nameDef() throws LexicalException, SyntaxException {
         IToken firstToken = t;
-        if (!isKind(IToken.Kind.TYPE)) throw new SyntaxException("Expected type, didn't get that");
+        if (!isKind(IToken.Kind.TYPE)) throw syntaxError("Expected type, didn't get that");
         String type = t.getText();
         consume();
 
         if (isKind(IToken.Kind.IDENT)) {
             String name = t.getText();
-            return new NameDef(firstToken, type, name);
+            return buildAst ? new NameDef(firstToken, type, name) : null;
         }
         else {
             Dimension dim = dimension();
             String name = t.getText();
-            return new NameDefWithDim(firstToken, type, name, dim);
+            return buildAst ? new NameDefWithDim(firstToken, type, name, dim) : null;
         }
     }
 
@@ -124,201 +248,272 @@ public class Parser implements IParser {
         NameDef nameDef = nameDef();
         consume();
 
-        if (isKind(IToken.Kind.ASSIGN, IToken.Kind.LARROW)) {
+        if (isKind(DECLARATION_OPS)) {
             IToken op = t;
             consume();
 
             Expr expr = expr();
-            return new VarDeclaration(firstToken, nameDef, op, expr);
+            return buildAst ? new VarDeclaration(firstToken, nameDef, op, expr) : null;
         }
         else {
-            return new VarDeclaration(firstToken, nameDef, null, null);
+            return buildAst ? new VarDeclaration(firstToken, nameDef, null, null) : null;
         }
     }
 
-    public Expr expr() throws LexicalException, SyntaxException {
-        Expr expr;
-        if (isKind(IToken.Kind.KW_IF)) {
-            expr = conditionalExpr();
-        } else {
-            expr = logicalOrExpr();
-        }
-
-        return expr;
+    // Expressions are parsed without recursion. Operands, and the operators and constructs still
+    // waiting for operands, are kept on the explicit stacks below, so the depth of the Java stack
+    // does not grow with the nesting of the input. The trees are the same as those of the grammar's
+    // recursive descent: binary operators are left associative, prefix unary operators bind tighter
+    // than any binary operator, and a primary expression may be followed by one pixel selector.
+    private enum ExprState {
+        EXPR,       // start of an Expr
+        OPERAND,    // start of a UnaryExpr
+        POSTFIX,    // after a PrimaryExpr
+        OPERATOR,   // after a UnaryExpr
+        DELIVER     // an Expr is complete and on top of the operand stack
     }
 
-    public Expr conditionalExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr conditional;
-        Expr cond;
-        Expr trueCase;
-        Expr falseCase = null;
-
-        consume();
-        match(IToken.Kind.LPAREN);
-        cond = expr();
-        match(IToken.Kind.RPAREN);
-        trueCase = expr();
+    // Operator stack entries are binary operators, stored with their precedence, and these
+    private static final int OP_UNARY = -1;
+    // Start of a nested Expr, where reductions stop
+    private static final int OP_BASE = 0;
 
+    // Precedence of each binary operator, indexed by Kind ordinal; 0 for other kinds
+    private static final int[] BINARY_PRECEDENCE = new int[IToken.Kind.values().length];
 
-        if (isKind(IToken.Kind.KW_ELSE)) {
-            consume();
-            falseCase = expr();
+    static {
+        BINARY_PRECEDENCE[IToken.Kind.OR.ordinal()] = 1;
+        BINARY_PRECEDENCE[IToken.Kind.AND.ordinal()] = 2;
+        for (IToken.Kind k : new IToken.Kind[]{IToken.Kind.GT, IToken.Kind.LT, IToken.Kind.EQUALS,
+                IToken.Kind.NOT_EQUALS, IToken.Kind.GE, IToken.Kind.LE}) {
+            BINARY_PRECEDENCE[k.ordinal()] = 3;
         }
-
-        match(IToken.Kind.KW_FI);
-        conditional = new ConditionalExpr(firstToken, cond, trueCase, falseCase);
-
-        return conditional;
+        BINARY_PRECEDENCE[IToken.Kind.PLUS.ordinal()] = 4;
+        BINARY_PRECEDENCE[IToken.Kind.MINUS.ordinal()] = 4;
+        BINARY_PRECEDENCE[IToken.Kind.TIMES.ordinal()] = 5;
+        BINARY_PRECEDENCE[IToken.Kind.DIV.ordinal()] = 5;
+        BINARY_PRECEDENCE[IToken.Kind.MOD.ordinal()] = 5;
     }
 
-    public Expr logicalOrExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr left;
-        Expr right;
+    // Constructs waiting for a nested Expr; the stage counts the nested Exprs already parsed
+    private static final int FRAME_PAREN = 0;
+    private static final int FRAME_COLOR = 1;
+    private static final int FRAME_SELECTOR = 2;
+    private static final int FRAME_CONDITIONAL = 3;
+
+    private Expr[] operands = new Expr[16];
+    // First token of each operand, which becomes the first token of a BinaryExpr it is the left of
+    private IToken[] operandStarts = new IToken[16];
+    private int operandCount;
+    private IToken[] ops = new IToken[16];
+    private int[] opPrecedences = new int[16];
+    private int opCount;
+    private int[] frameKinds = new int[16];
+    private int[] frameStages = new int[16];
+    private IToken[] frameTokens = new IToken[16];
+    private int frameCount;
 
-        left = logicalAndExpr();
-        while(isKind(IToken.Kind.OR)) {
-            IToken op = t;
-            consume();
-            right = logicalAndExpr();
-            left = new BinaryExpr(firstToken, left, op, right);
+    public Expr expr() throws LexicalException, SyntaxException {
+        operandCount = 0;
+        opCount = 0;
+        frameCount = 0;
+        ExprState state = ExprState.EXPR;
+
+        while (true) {
+            switch (state) {
+                case EXPR -> {
+                    if (isKind(IToken.Kind.KW_IF)) {
+                        pushFrame(FRAME_CONDITIONAL, t);
+                        consume();
+                        match(IToken.Kind.LPAREN);
+                    } else {
+                        pushOp(OP_BASE, null);
+                        state = ExprState.OPERAND;
+                    }
+                }
+                case OPERAND -> {
+                    while (isKind(UNARY_OPS)) {
+                        pushOp(OP_UNARY, t);
+                        consume();
+                    }
+                    if (isKind(PRIMARY_TOKENS)) {
+                        pushOperand(buildAst ? primaryExpr(t) : null, t);
+                        consume();
+                        state = ExprState.POSTFIX;
+                    } else if (isKind(IToken.Kind.LPAREN)) {
+                        pushFrame(FRAME_PAREN, t);
+                        consume();
+                        state = ExprState.EXPR;
+                    } else if (isKind(IToken.Kind.LANGLE)) {
+                        pushFrame(FRAME_COLOR, t);
+                        consume();
+                        state = ExprState.EXPR;
+                    } else {
+                        throw syntaxError("Syntax error!");
+                    }
+                }
+                case POSTFIX -> {
+                    if (isKind(IToken.Kind.LSQUARE)) {
+                        pushFrame(FRAME_SELECTOR, t);
+                        consume();
+                        state = ExprState.EXPR;
+                    } else {
+                        state = ExprState.OPERATOR;
+                    }
+                }
+                case OPERATOR -> {
+                    while (opPrecedences[opCount - 1] == OP_UNARY) {
+                        reduceUnary();
+                    }
+                    int precedence = BINARY_PRECEDENCE[t.getKind().ordinal()];
+                    if (precedence > 0) {
+                        while (opPrecedences[opCount - 1] >= precedence) {
+                            reduceBinary();
+                        }
+                        pushOp(precedence, t);
+                        consume();
+                        state = ExprState.OPERAND;
+                    } else {
+                        while (opPrecedences[opCount - 1] != OP_BASE) {
+                            reduceBinary();
+                        }
+                        opCount--;
+                        state = ExprState.DELIVER;
+                    }
+                }
+                case DELIVER -> {
+                    if (frameCount == 0) {
+                        return popOperand();
+                    }
+                    state = completeFrame();
+                }
+            }
         }
-
-        return left;
     }
 
-    public Expr logicalAndExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr left;
-        Expr right;
-
-        left = comparisonExpr();
-        while(isKind(IToken.Kind.AND)) {
-            IToken op = t;
-            consume();
-            right = comparisonExpr();
-            left = new BinaryExpr(firstToken, left, op, right);
+    // Continues the innermost construct now that its latest nested Expr is complete
+    private ExprState completeFrame() throws LexicalException, SyntaxException {
+        int f = frameCount - 1;
+        IToken firstToken = frameTokens[f];
+        switch (frameKinds[f]) {
+            case FRAME_PAREN -> {
+                match(IToken.Kind.RPAREN);
+                operandStarts[operandCount - 1] = firstToken;
+                frameCount--;
+                return ExprState.POSTFIX;
+            }
+            case FRAME_COLOR -> {
+                if (frameStages[f] < 2) {
+                    match(IToken.Kind.COMMA);
+                    frameStages[f]++;
+                    return ExprState.EXPR;
+                }
+                match(IToken.Kind.RANGLE);
+                Expr blue = popOperand();
+                Expr green = popOperand();
+                Expr red = popOperand();
+                pushOperand(buildAst ? new ColorExpr(firstToken, red, green, blue) : null, firstToken);
+                frameCount--;
+                return ExprState.POSTFIX;
+            }
+            case FRAME_SELECTOR -> {
+                if (frameStages[f] == 0) {
+                    match(IToken.Kind.COMMA);
+                    frameStages[f]++;
+                    return ExprState.EXPR;
+                }
+                match(IToken.Kind.RSQUARE);
+                Expr y = popOperand();
+                Expr x = popOperand();
+                IToken primaryStart = operandStarts[operandCount - 1];
+                Expr primary = popOperand();
+                PixelSelector selector = buildAst ? new PixelSelector(firstToken, x, y) : null;
+                pushOperand(buildAst ? new UnaryExprPostfix(primaryStart, primary, selector) : null, primaryStart);
+                frameCount--;
+                return ExprState.OPERATOR;
+            }
+            default -> {
+                if (frameStages[f] == 0) {
+                    match(IToken.Kind.RPAREN);
+                    frameStages[f]++;
+                    return ExprState.EXPR;
+                }
+                if (frameStages[f] == 1 && isKind(IToken.Kind.KW_ELSE)) {
+                    consume();
+                    frameStages[f]++;
+                    return ExprState.EXPR;
+                }
+                match(IToken.Kind.KW_FI);
+                Expr falseCase = frameStages[f] == 2 ? popOperand() : null;
+                Expr trueCase = popOperand();
+                Expr condition = popOperand();
+                pushOperand(buildAst ? new ConditionalExpr(firstToken, condition, trueCase, falseCase) : null, firstToken);
+                frameCount--;
+                return ExprState.DELIVER;
+            }
         }
-
-        return left;
     }
 
-    public Expr comparisonExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr left;
-        Expr right;
-
-        left = additiveExpr();
-        while(isKind(IToken.Kind.GT, IToken.Kind.LT, IToken.Kind.EQUALS, IToken.Kind.NOT_EQUALS, IToken.Kind.GE, IToken.Kind.LE)) {
-            IToken op = t;
-            consume();
-            right = additiveExpr();
-            left = new BinaryExpr(firstToken, left, op, right);
-        }
-
-        return left;
+    private Expr primaryExpr(IToken firstToken) {
+        return switch (firstToken.getKind()) {
+            case BOOLEAN_LIT -> new BooleanLitExpr(firstToken);
+            case STRING_LIT -> new StringLitExpr(firstToken);
+            case INT_LIT -> new IntLitExpr(firstToken);
+            case FLOAT_LIT -> new FloatLitExpr(firstToken);
+            case IDENT -> new IdentExpr(firstToken);
+            case COLOR_CONST -> new ColorConstExpr(firstToken);
+            default -> new ConsoleExpr(firstToken);
+        };
     }
 
-    public Expr additiveExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr left;
-        Expr right;
-
-        left = multiplicativeExpr();
-        while(isKind(IToken.Kind.PLUS,IToken.Kind.MINUS)) {
-            IToken op = t;
-            consume();
-            right = multiplicativeExpr();
-            left = new BinaryExpr(firstToken, left, op, right);
-        }
-
-        return left;
+    private void reduceUnary() {
+        IToken op = ops[--opCount];
+        Expr e = popOperand();
+        pushOperand(buildAst ? new UnaryExpr(op, op, e) : null, op);
     }
 
-    public Expr multiplicativeExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr left;
-        Expr right;
-
-        left = unaryExpr();
-        while(isKind(IToken.Kind.TIMES,IToken.Kind.DIV,IToken.Kind.MOD)) {
-            IToken op = t;
-            consume();
-            right = unaryExpr();
-            left = new BinaryExpr(firstToken, left, op, right);
-        }
-
-        return left;
+    private void reduceBinary() {
+        IToken op = ops[--opCount];
+        Expr right = popOperand();
+        IToken firstToken = operandStarts[operandCount - 1];
+        Expr left = popOperand();
+        pushOperand(buildAst ? new BinaryExpr(firstToken, left, op, right) : null, firstToken);
     }
 
-    public Expr unaryExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr uE;
-        Expr e;
-        if(isKind(IToken.Kind.BANG,IToken.Kind.MINUS, IToken.Kind.COLOR_OP, IToken.Kind.IMAGE_OP)) {
-            IToken op = t;
-            consume();
-            e = unaryExpr();
-            uE = new UnaryExpr(firstToken, op, e);
-        } else {
-            uE = unaryExprPostFix();
+    private void pushOperand(Expr e, IToken start) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+            operandStarts = Arrays.copyOf(operandStarts, operandCount * 2);
         }
-
-        return uE;
+        operands[operandCount] = e;
+        operandStarts[operandCount++] = start;
     }
 
-    public Expr unaryExprPostFix() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr primary;
-        PixelSelector sel;
-        primary = primaryExpr();
-        sel = pixelSel();
+    private Expr popOperand() {
+        Expr e = operands[--operandCount];
+        operands[operandCount] = null;
+        operandStarts[operandCount] = null;
+        return e;
+    }
 
-        if (sel == null) {
-            return primary;
+    private void pushOp(int precedence, IToken op) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, opCount * 2);
+            opPrecedences = Arrays.copyOf(opPrecedences, opCount * 2);
         }
-
-        return new UnaryExprPostfix(firstToken, primary, sel);
+        opPrecedences[opCount] = precedence;
+        ops[opCount++] = op;
     }
 
-    public Expr primaryExpr() throws LexicalException, SyntaxException {
-        IToken firstToken = t;
-        Expr expr;
-        if(isKind(IToken.Kind.BOOLEAN_LIT, IToken.Kind.STRING_LIT, IToken.Kind.INT_LIT,
-                IToken.Kind.FLOAT_LIT, IToken.Kind.IDENT, IToken.Kind.COLOR_CONST, IToken.Kind.KW_CONSOLE)) {
-            expr = switch (t.getKind()) {
-                case BOOLEAN_LIT -> new BooleanLitExpr(firstToken);
-                case STRING_LIT -> new StringLitExpr(firstToken);
-                case INT_LIT -> new IntLitExpr(firstToken);
-                case FLOAT_LIT -> new FloatLitExpr(firstToken);
-                case IDENT -> new IdentExpr(firstToken);
-                case COLOR_CONST -> new ColorConstExpr(firstToken);
-                case KW_CONSOLE -> new ConsoleExpr(firstToken);
-                default -> null;
-            };
-
-            consume();
-        } else if (isKind(IToken.Kind.LPAREN)) {
-            consume();
-            expr = expr();
-            match(IToken.Kind.RPAREN);
-        } else if (isKind(IToken.Kind.LANGLE)) {
-            consume();
-            Expr red = expr();
-            match(IToken.Kind.COMMA);
-            Expr green = expr();
-            match(IToken.Kind.COMMA);
-            Expr blue = expr();
-            match(IToken.Kind.RANGLE);
-
-            expr = new ColorExpr(firstToken, red, green, blue);
-        }
-        else {
-            throw new SyntaxException("Syntax error!");
+    private void pushFrame(int kind, IToken firstToken) {
+        if (frameCount == frameKinds.length) {
+            frameKinds = Arrays.copyOf(frameKinds, frameCount * 2);
+            frameStages = Arrays.copyOf(frameStages, frameCount * 2);
+            frameTokens = Arrays.copyOf(frameTokens, frameCount * 2);
         }
-
-        return expr;
+        frameKinds[frameCount] = kind;
+        frameStages[frameCount] = 0;
+        frameTokens[frameCount++] = firstToken;
     }
 
     public PixelSelector pixelSel() throws LexicalException, SyntaxException {
@@ -332,7 +527,7 @@ public class Parser implements IParser {
             match(IToken.Kind.COMMA);
             right = expr();
             match(IToken.Kind.RSQUARE);
-            node = new PixelSelector(firstToken, left, right);
+            node = buildAst ? new PixelSelector(firstToken, left, right) : null;
         }
 
         return node;
@@ -347,7 +542,7 @@ public class Parser implements IParser {
         Expr height = expr();
         match(IToken.Kind.RSQUARE);
 
-        return new Dimension(firstToken, width, height);
+        return buildAst ? new Dimension(firstToken, width, height) : null;
     }
 
     public Statement statement() throws LexicalException, SyntaxException {
@@ -365,13 +560,13 @@ public class Parser implements IParser {
             Expr expr = expr();
 
             if (opKind == IToken.Kind.ASSIGN) {
-                return new AssignmentStatement(firstToken, name, selector, expr);
+                return buildAst ? new AssignmentStatement(firstToken, name, selector, expr) : null;
             }
             else if (opKind == IToken.Kind.LARROW) {
-                return new ReadStatement(firstToken, name, selector, expr);
+                return buildAst ? new ReadStatement(firstToken, name, selector, expr) : null;
             }
             else {
-                throw new SyntaxException("Seeking <- or =, found neither");
+                throw syntaxError("Seeking <- or =, found neither");
             }
         }
         else if (isKind(IToken.Kind.KW_WRITE)) {
@@ -381,17 +576,17 @@ public class Parser implements IParser {
             match(IToken.Kind.RARROW);
             Expr dest = expr();
 
-            return new WriteStatement(firstToken, source, dest);
+            return buildAst ? new WriteStatement(firstToken, source, dest) : null;
         }
         else if (isKind(IToken.Kind.RETURN)) {
             consume();
 
             Expr expr = expr();
 
-            return new ReturnStatement(firstToken, expr);
+            return buildAst ? new ReturnStatement(firstToken, expr) : null;
         }
         else {
-            throw new SyntaxException("No acceptable syntax found in statement()");
+            throw syntaxError("No acceptable syntax found in statement()");
         }
     }
 }
@@ -0,0 +1,86 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.ast.AssignmentStatement;
+import edu.ufl.cise.plc.ast.InPlaceTypeInfo;
+import edu.ufl.cise.plc.ast.Program;
+
+class PixelAliasTests extends CodeGenTestSupport {
+
+	PixelAliasTests() {
+		super(EnumSet.of(Option.ROW_ORDER, Option.LICM), EnumSet.allOf(Option.class));
+	}
+
+	//Whether each pixel assignment of the program is pointwise, in program order
+	List<Boolean> pointwise(String input) throws Exception {
+		Program program = typeChecked(input);
+		PixelAliases aliases = new PixelAliases(program, InPlaceTypeInfo.INSTANCE);
+		return program.getDecsAndStatements().stream()
+				.filter(node -> node instanceof AssignmentStatement s && s.getSelector() != null)
+				.map(node -> aliases.isPointwise((AssignmentStatement) node)).toList();
+	}
+
+	@Test
+	void pointwiseAssignments() throws Exception {
+		String input = """
+				image f(int w)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image[w, w] b;
+				b[x, y] = a[w - 1 - x, y] + a[0, 0];
+				a[x, y] = a[x, y] * 2 + b[y, x];
+				a[x, y] = a[x, w - 1 - y] * 1;
+				image s = a;
+				b[x, y] = s[x, y] / 2;
+				a[x, y] = s[y, x] * 1;
+				^ a;
+				""";
+		//Only the reads of a, through a or s, at other pixels are not pointwise
+		assertEquals(List.of(true, true, true, false, true, false), pointwise(input));
+		checkSameResult(input, new Object[] { 20 });
+	}
+
+	@Test
+	void aliasesThroughAssignments() throws Exception {
+		String input = """
+				image f(int w, image p)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image s = p;
+				s = if (w > 10) a else p fi;
+				a[x, y] = s[w - 1 - x, 0];
+				^ a;
+				""";
+		assertEquals(List.of(true, false), pointwise(input));
+		String code = code(input, EnumSet.of(Option.ROW_ORDER));
+		assertTrue(code.contains("for(int y= 0;y < a.getHeight();y++)"));
+		assertTrue(code.contains("for(int x= 0;x < a.getWidth();x++)"));
+	}
+
+	@Test
+	void readsOfOtherImagesBeforeLoops() throws Exception {
+		String input = """
+				image f(int w, image p)
+				image[w, w] a;
+				a[x, y] = <<x, y, 0>>;
+				image[w, w] b;
+				b[x, y] = a[0, 0] + p[1, 1] * b[0, 0];
+				^ b;
+				""";
+		String code = code(input, EnumSet.of(Option.LICM));
+		//b is the target, so only the pixels of a and p are read once
+		assertTrue(code.contains(" = ColorTuple.unpack(a.getRGB(0, 0));"));
+		assertTrue(code.contains(" = ColorTuple.unpack(p.getRGB(1, 1));"));
+		assertFalse(code.contains(" = ColorTuple.unpack(b.getRGB(0, 0));"));
+		checkSameResult(input, new Object[] { 15, image(5, 5, 3) });
+	}
+}
@@ -0,0 +1,93 @@
+package edu.ufl.cise.plc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// Which image variables may refer to the same image, and which pixels of the image it sets the right
+// hand side of a pixel assignment reads.
+//
+// An image variable refers to an image of its own, which nothing else refers to, unless it is declared
+// without a size and declared or assigned as another image variable, or a conditional choosing one.
+// Then it may refer to the images of those variables, at any point in the program. Parameters are
+// images of their own: the loops of a pixel assignment only write images declared with a size.
+//
+// The loops of a pixel assignment set the pixels one at a time, in place. If the right hand side reads
+// no pixel of the target image other than the one being set, the pixels can be set in any order with
+// the same result: the assignment is pointwise. Otherwise a pixel
+// can depend on pixels set before it, and the loops must set them in the order the language defines.
+class PixelAliases {
+    // The variables whose images each image variable may refer to
+    private final Map<String, Set<String>> images = new HashMap<>();
+
+    PixelAliases(Program program, TypeInfo types) {
+        for (NameDef param : program.getParams()) {
+            images.put(param.getName(), new HashSet<>(Set.of(param.getName())));
+        }
+        for (ASTNode node : program.getDecsAndStatements()) {
+            if (node instanceof VarDeclaration d && d.getType() == Type.IMAGE) {
+                Set<String> names = new HashSet<>(Set.of(d.getName()));
+                if (d.getDim() == null && d.getOp() != null && d.getOp().getKind() == Kind.ASSIGN) {
+                    names.addAll(imagesOf(d.getExpr()));
+                }
+                images.put(d.getName(), names);
+            } else if (node instanceof AssignmentStatement s && s.getSelector() == null && images.containsKey(s.getName())
+                    && types.getDec(s).getDim() == null) {
+                images.get(s.getName()).addAll(imagesOf(s.getExpr()));
+            }
+        }
+    }
+
+    // The variables whose images expr may be
+    private Set<String> imagesOf(Expr expr) {
+        if (expr instanceof IdentExpr) {
+            return images.getOrDefault(expr.getText(), Collections.emptySet());
+        } else if (expr instanceof ConditionalExpr e) {
+            Set<String> names = new HashSet<>(imagesOf(e.getTrueCase()));
+            names.addAll(imagesOf(e.getFalseCase()));
+            return names;
+        }
+        return Collections.emptySet();
+    }
+
+    // Whether the image variables a and b may refer to the same image
+    boolean mayAlias(String a, String b) {
+        if (a.equals(b)) {
+            return true;
+        }
+        Set<String> images = this.images.getOrDefault(b, Collections.emptySet());
+        for (String image : this.images.getOrDefault(a, Collections.emptySet())) {
+            if (images.contains(image)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether the pixel assignment s is pointwise
+    boolean isPointwise(AssignmentStatement s) {
+        return isPointwise(s.getExpr(), s.getName(), s.getSelector().getX().getText(), s.getSelector().getY().getText());
+    }
+
+    private boolean isPointwise(Expr expr, String target, String x, String y) {
+        if (expr instanceof UnaryExprPostfix e && mayAlias(e.getText(), target)) {
+            PixelSelector selector = e.getSelector();
+            if (!(selector.getX() instanceof IdentExpr && selector.getX().getText().equals(x)
+                    && selector.getY() instanceof IdentExpr && selector.getY().getText().equals(y))) {
+                return false;
+            }
+        }
+        for (Expr child : ExprHashCons.children(expr)) {
+            if (!isPointwise(child, target, x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package edu.ufl.cise.plc;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// Whether a type checked program is pure: its result depends only on its arguments and the contents of
+// the image files it reads, and running it changes nothing else, so a result computed before for the
+// same arguments and unchanged files can be returned instead of running it again.
+//
+// A program is not pure if it reads the console, writes to the console or a file, or reads a value from
+// a file, since FileURLIO keeps value files open and each read continues where the last one stopped. It
+// is not pure if it sets pixels of an image parameter, which belongs to the caller. An image it reads
+// must be a file, not a URL, named by a string literal or a string parameter that is never assigned or
+// read into, so the files can be found from the arguments before the program runs.
+public class ProgramEffects {
+    private final List<String> parameters = new ArrayList<>();
+    // The sources of the images read, each a StringLitExpr or an IdentExpr naming a string parameter
+    private final List<Expr> sources = new ArrayList<>();
+    private boolean pure = true;
+
+    public ProgramEffects(Program program, TypeInfo types) {
+        for (NameDef param : program.getParams()) {
+            parameters.add(param.getName());
+        }
+        Set<String> replaced = new HashSet<>();
+        PixelAliases aliases = new PixelAliases(program, types);
+        for (ASTNode node : program.getDecsAndStatements()) {
+            if (node instanceof VarDeclaration d && d.getExpr() != null) {
+                if (d.getOp().getKind() == Kind.LARROW) {
+                    read(d.getExpr(), d.getType(), types);
+                } else if (d.getType() == Type.IMAGE && types.getType(d.getExpr()) == Type.STRING) {
+                    read(d.getExpr(), Type.IMAGE, types);
+                }
+            } else if (node instanceof ReadStatement s) {
+                replaced.add(s.getName());
+                read(s.getSource(), types.getDec(s).getType(), types);
+            } else if (node instanceof AssignmentStatement s) {
+                replaced.add(s.getName());
+                if (s.getSelector() != null) {
+                    for (String param : parameters) {
+                        pure &= !aliases.mayAlias(s.getName(), param);
+                    }
+                }
+            } else if (node instanceof WriteStatement) {
+                pure = false;
+            }
+        }
+        for (Expr source : sources) {
+            pure &= source instanceof StringLitExpr s ? !isURL(s.getValue()) : !replaced.contains(source.getText());
+        }
+    }
+
+    // Records a read of a value of the given type from source
+    private void read(Expr source, Type type, TypeInfo types) {
+        if (type == Type.IMAGE && types.getType(source) == Type.STRING && (source instanceof StringLitExpr
+                || source instanceof IdentExpr && parameters.contains(source.getText()))) {
+            sources.add(source);
+        } else {
+            pure = false;
+        }
+    }
+
+    private static boolean isURL(String source) {
+        try {
+            new URL(source);
+            return true;
+        } catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    public boolean isPure() {
+        return pure;
+    }
+
+    // The image files a pure program reads when run with the given arguments, or null if one of them is
+    // not a file
+    public List<String> files(Object[] params) {
+        List<String> files = new ArrayList<>();
+        for (Expr source : sources) {
+            String file = source instanceof StringLitExpr s ? s.getValue()
+                    : (String) params[parameters.indexOf(source.getText())];
+            if (file == null || isURL(file)) {
+                return null;
+            }
+            files.add(file);
+        }
+        return files;
+    }
+}
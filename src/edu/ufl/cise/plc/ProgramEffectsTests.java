@@ -0,0 +1,133 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.InPlaceTypeInfo;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.runtime.ImageOps;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.PLCLangExec;
+
+class ProgramEffectsTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	ProgramEffects effects(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		ProgramEffects effects = new ProgramEffects(program, InPlaceTypeInfo.INSTANCE);
+		show(effects.isPure() + ": " + input);
+		return effects;
+	}
+
+	BufferedImage image(int width, int height, int rgb) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, rgb + x);
+			}
+		}
+		return image;
+	}
+
+	@Test
+	void pureAndImpurePrograms() throws Exception {
+		assertTrue(effects("int f(int a) ^ a * 2;").isPure());
+		ProgramEffects files = effects("image f(string s) image a <- \"a.png\"; image[10, 10] b <- s; ^ a + b;");
+		assertTrue(files.isPure());
+		assertEquals(List.of("a.png", "b.png"), files.files(new Object[] { "b.png" }));
+		assertNull(files.files(new Object[] { "https://example.com/b.png" }));
+		assertFalse(effects("int f(int a) write a -> console; ^ a;").isPure());
+		assertFalse(effects("int f() int a <- console; ^ a;").isPure());
+		assertFalse(effects("int f() int a <- \"a.dat\"; ^ a;").isPure());
+		assertFalse(effects("image f() image a <- \"https://example.com/a.png\"; ^ a;").isPure());
+		assertFalse(effects("image f(string s) s = \"b.png\"; image a <- s; ^ a;").isPure());
+		assertFalse(effects("image f(image p) image s = p; s[x, y] = RED; ^ s;").isPure());
+	}
+
+	@Test
+	void resultsReused() throws Exception {
+		String input = """
+				image f(image p, int k)
+				image[getWidth p, getHeight p] a;
+				a[x, y] = p[x, y] * <<k, k, k>>;
+				^ a;
+				""";
+		PLCLangExec exec = new PLCLangExec("", VERBOSE, 4);
+		BufferedImage first = (BufferedImage) exec.exec(input, new Object[] { image(8, 4, 0x010203), 2 });
+		//An image with the same pixels is the same argument
+		BufferedImage second = (BufferedImage) exec.exec(input, new Object[] { image(8, 4, 0x010203), 2 });
+		assertEquals(1, exec.getReusedResults());
+		assertArrayEquals(ImageOps.getRGBPixels(first), ImageOps.getRGBPixels(second));
+		//Changing a returned image does not change the kept result
+		second.setRGB(0, 0, 0);
+		assertArrayEquals(ImageOps.getRGBPixels(first),
+				ImageOps.getRGBPixels((BufferedImage) exec.exec(input, new Object[] { image(8, 4, 0x010203), 2 })));
+		exec.exec(input, new Object[] { image(8, 4, 0x010204), 2 });
+		exec.exec(input, new Object[] { image(8, 4, 0x010203), 3 });
+		assertEquals(2, exec.getReusedResults());
+	}
+
+	@Test
+	void impureProgramsRun() throws Exception {
+		String input = """
+				int f(int a)
+				write a -> console;
+				^ a + 1;
+				""";
+		PLCLangExec exec = new PLCLangExec("", VERBOSE, 4);
+		assertEquals(4, exec.exec(input, new Object[] { 3 }));
+		assertEquals(4, exec.exec(input, new Object[] { 3 }));
+		assertEquals(0, exec.getReusedResults());
+	}
+
+	@Test
+	void changedFilesRerun() throws Exception {
+		String input = """
+				image f(string file)
+				image a <- file;
+				^ a * 2;
+				""";
+		File file = File.createTempFile("effects", ".png");
+		file.deleteOnExit();
+		ImageIO.write(image(6, 6, 0x101010), "png", file);
+		PLCLangExec exec = new PLCLangExec("", VERBOSE, 4);
+		Object[] params = { file.getPath() };
+		exec.exec(input, params);
+		exec.exec(input, params);
+		assertEquals(1, exec.getReusedResults());
+		ImageIO.write(image(6, 6, 0x202020), "png", file);
+		file.setLastModified(file.lastModified() + 2000);
+		BufferedImage changed = (BufferedImage) exec.exec(input, params);
+		assertEquals(1, exec.getReusedResults());
+		assertEquals(0x404040, changed.getRGB(0, 0) & 0xffffff);
+	}
+
+	@Test
+	void leastRecentlyUsedDropped() throws Exception {
+		String input = "int f(int a) ^ a * 2;";
+		PLCLangExec exec = new PLCLangExec("", VERBOSE, 2);
+		for (int a : new int[] { 1, 2, 1, 3, 1, 2 }) {
+			assertEquals(a * 2, exec.exec(input, new Object[] { a }));
+		}
+		//3 drops 2, which was used before 1, so 2 is run again
+		assertEquals(2, exec.getReusedResults());
+	}
+}
@@ -2,22 +2,72 @@ package edu.ufl.cise.plc;
 
 import edu.ufl.cise.plc.ast.Declaration;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Objects;
 
+// Declarations visible at the current point of a program, in nested scopes. Each declaration gets
+// the next free slot number when it is inserted, so the slots of the visible declarations are
+// always 0 to size - 1. Exiting a scope frees the slots of the declarations made in it for reuse,
+// as a backend can reuse the local variable of a variable that is no longer visible.
+//
+// A name can only be declared once among the visible declarations, and never with the name of the
+// program: PLCLang has no shadowing.
 public class SymbolTable {
 
-    // Implement a symbol table class that is appropriate for this language.
-    HashMap<String, Declaration> entries = new HashMap<>();
+    // Slot of each visible name
+    private final HashMap<String, Integer> slotsByName = new HashMap<>();
+    private Declaration[] declarations = new Declaration[16];
+    private String[] names = new String[16];
+    private int size;
+    // Number of slots when each open scope was entered
+    private int[] scopeStarts = new int[4];
+    private int scopeDepth;
+    private int maxSize;
     String programName;
+    // Whether insert records each declaration's slot in the declaration itself
+    private final boolean setSlots;
+
+    public SymbolTable() {
+        this(true);
+    }
+
+    // A table that leaves the inserted declarations unmodified. Their slots are only available
+    // from lookupSlot.
+    public SymbolTable(boolean setSlots) {
+        this.setSlots = setSlots;
+    }
 
     public boolean insert(String name, Declaration dec) {
-        if (Objects.equals(name, programName)) return false;
-        return entries.putIfAbsent(name, dec) == null;
+        if (Objects.equals(name, programName) || slotsByName.containsKey(name)) return false;
+        if (size == declarations.length) {
+            declarations = Arrays.copyOf(declarations, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        declarations[size] = dec;
+        names[size] = name;
+        if (setSlots) {
+            dec.setSlot(size);
+        }
+        slotsByName.put(name, size);
+        size++;
+        maxSize = Math.max(maxSize, size);
+        return true;
     }
 
     public Declaration lookup(String name) {
-        return entries.get(name);
+        Integer slot = slotsByName.get(name);
+        return slot == null ? null : declarations[slot];
+    }
+
+    // Returns the slot of the visible declaration of name, or -1 if there is none
+    public int lookupSlot(String name) {
+        Integer slot = slotsByName.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public Declaration getDeclaration(int slot) {
+        return declarations[slot];
     }
 
     public void setProgramName(String name) {
@@ -25,12 +75,29 @@ public class SymbolTable {
     }
 
     public boolean contains(String name) {
-        return entries.containsKey(name);
+        return slotsByName.containsKey(name);
     }
 
-    public void remove(String name) {
-        entries.remove(name);
+    public void enterScope() {
+        if (scopeDepth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopeDepth * 2);
+        }
+        scopeStarts[scopeDepth++] = size;
     }
-}
 
+    // Removes the declarations made since the matching enterScope
+    public void exitScope() {
+        int start = scopeStarts[--scopeDepth];
+        while (size > start) {
+            size--;
+            slotsByName.remove(names[size]);
+            declarations[size] = null;
+            names[size] = null;
+        }
+    }
 
+    // Most slots in use at once so far, which is the number of local variables a backend needs
+    public int getSlotCount() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,105 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.AssignmentStatement;
+import edu.ufl.cise.plc.ast.BinaryExpr;
+import edu.ufl.cise.plc.ast.ColorExpr;
+import edu.ufl.cise.plc.ast.IdentExpr;
+import edu.ufl.cise.plc.ast.NameDef;
+import edu.ufl.cise.plc.ast.Program;
+
+class SymbolTableTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	Program typeChecked(String input) throws Exception {
+		Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		show(program);
+		return program;
+	}
+
+	@Test
+	void scopesAndSlots() {
+		SymbolTable table = new SymbolTable();
+		table.setProgramName("p");
+		NameDef a = new NameDef(null, "int", "a");
+		NameDef x = new NameDef(null, "int", "x");
+		NameDef y = new NameDef(null, "int", "y");
+		assertTrue(table.insert("a", a));
+		assertFalse(table.insert("p", new NameDef(null, "int", "p")));
+
+		table.enterScope();
+		assertTrue(table.insert("x", x));
+		assertFalse(table.insert("a", new NameDef(null, "int", "a")));
+		assertEquals(1, x.getSlot());
+		assertSame(x, table.getDeclaration(table.lookupSlot("x")));
+		table.exitScope();
+
+		assertNull(table.lookup("x"));
+		assertEquals(-1, table.lookupSlot("x"));
+		assertTrue(table.insert("y", y));
+		assertEquals(1, y.getSlot());
+		assertSame(a, table.lookup("a"));
+		assertEquals(2, table.getSlotCount());
+	}
+
+	@Test
+	void pixelSelectorVariablesScopedToAssignment() throws Exception {
+		String input = """
+				image f(int size)
+				image[size, size] a;
+				a[x, y] = <<x, y, 0>>;
+				int z = size;
+				a[x, y] = <<z, x, y>>;
+				^ a;
+				""";
+		Program program = typeChecked(input);
+		AssignmentStatement first = (AssignmentStatement) program.getDecsAndStatements().get(1);
+		AssignmentStatement second = (AssignmentStatement) program.getDecsAndStatements().get(3);
+		// size is slot 0, a is 1; x and y use 2 and 3, which z reuses after the first loop
+		assertEquals(2, ((IdentExpr) first.getSelector().getX()).getSlot());
+		assertEquals(3, ((IdentExpr) first.getSelector().getY()).getSlot());
+		assertEquals(2, ((IdentExpr) ((ColorExpr) second.getExpr()).getRed()).getSlot());
+		assertEquals(3, ((IdentExpr) ((ColorExpr) second.getExpr()).getGreen()).getSlot());
+		assertEquals(4, ((IdentExpr) ((ColorExpr) second.getExpr()).getBlue()).getSlot());
+	}
+
+	@Test
+	void identExprSlots() throws Exception {
+		String input = """
+				int f(int a, int b)
+				int c = a + b;
+				^ c;
+				""";
+		Program program = typeChecked(input);
+		BinaryExpr sum = (BinaryExpr) ((edu.ufl.cise.plc.ast.VarDeclaration) program.getDecsAndStatements().get(0)).getExpr();
+		assertEquals(0, ((IdentExpr) sum.getLeft()).getSlot());
+		assertEquals(1, ((IdentExpr) sum.getRight()).getSlot());
+	}
+
+	@Test
+	void pixelSelectorVariableAlreadyDeclared() throws Exception {
+		String input = """
+				image f(int x)
+				image[x, x] a;
+				a[x, y] = <<x, y, 0>>;
+				^ a;
+				""";
+		assertThrows(TypeCheckException.class, () -> typeChecked(input));
+	}
+}
@@ -3,12 +3,39 @@ package edu.ufl.cise.plc;
 public class Token implements IToken {
     private final Kind kind;
     private final String literal;
-    private final SourceLocation location;
+    // Offset of the first character of the token in the source; the location is computed on demand
+    private final int offset;
+    private final LineMap lines;
 
-    public Token(Kind kind, String literal, SourceLocation location) {
+    // Decoded values of INT_LIT, FLOAT_LIT and BOOLEAN_LIT tokens, filled in by the lexer
+    private final int intValue;
+    private final float floatValue;
+    private final boolean booleanValue;
+
+    public Token(Kind kind, String literal, int offset, LineMap lines) {
+        this(kind, literal, offset, lines, 0, 0f, false);
+    }
+
+    public Token(Kind kind, String literal, int offset, LineMap lines, int intValue) {
+        this(kind, literal, offset, lines, intValue, 0f, false);
+    }
+
+    public Token(Kind kind, String literal, int offset, LineMap lines, float floatValue) {
+        this(kind, literal, offset, lines, 0, floatValue, false);
+    }
+
+    public Token(Kind kind, String literal, int offset, LineMap lines, boolean booleanValue) {
+        this(kind, literal, offset, lines, 0, 0f, booleanValue);
+    }
+
+    private Token(Kind kind, String literal, int offset, LineMap lines, int intValue, float floatValue, boolean booleanValue) {
         this.kind = kind;
         this.literal = literal;
-        this.location = location;
+        this.offset = offset;
+        this.lines = lines;
+        this.intValue = intValue;
+        this.floatValue = floatValue;
+        this.booleanValue = booleanValue;
     }
 
     @Override
@@ -23,37 +50,33 @@ public class Token implements IToken {
 
     @Override
     public SourceLocation getSourceLocation() {
-        return location;
+        return lines.locate(offset);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public LineMap getLineMap() {
+        return lines;
     }
 
     @Override
     public int getIntValue() {
-        try {
-            return Integer.parseInt(literal);
-        }
-        catch (Exception e) {
-            throw new UnsupportedOperationException();
-        }
+        if (kind != Kind.INT_LIT) throw new UnsupportedOperationException();
+        return intValue;
     }
 
     @Override
     public float getFloatValue() {
-        try {
-            return Float.parseFloat(literal);
-        }
-        catch (Exception e) {
-            throw new UnsupportedOperationException();
-        }
+        if (kind != Kind.FLOAT_LIT) throw new UnsupportedOperationException();
+        return floatValue;
     }
 
     @Override
     public boolean getBooleanValue() {
-        try {
-            return Boolean.parseBoolean(literal);
-        }
-        catch (Exception e) {
-            throw new UnsupportedOperationException();
-        }
+        if (kind != Kind.BOOLEAN_LIT) throw new UnsupportedOperationException();
+        return booleanValue;
     }
 
     @Override
@@ -0,0 +1,68 @@
+package edu.ufl.cise.plc;
+
+import java.util.Arrays;
+import java.util.List;
+
+// All tokens of an input, lexed up front into an array so that the parser can consume them without
+// calling back into the lexer.
+//
+// If the lexer throws, the tokens before the error are kept and the exception is rethrown when the
+// parser asks for the token at which it occurred, so errors are reported in the same order as when
+// parsing from the lexer directly.
+public class TokenBuffer {
+
+    private final Lexer lexer;
+    private IToken[] tokens = new IToken[256];
+    private int count;
+    private LexicalException error;
+
+    public TokenBuffer(String input) {
+        this(input, null);
+    }
+
+    public TokenBuffer(String input, List<Diagnostic> diagnostics) {
+        lexer = new Lexer(input, diagnostics);
+        fill();
+    }
+
+    // Lexes a new input into this buffer, keeping its array and lexer
+    public void reset(String input) {
+        Arrays.fill(tokens, 0, count, null);
+        count = 0;
+        error = null;
+        lexer.reset(input);
+        fill();
+    }
+
+    private void fill() {
+        try {
+            IToken token;
+            do {
+                token = lexer.next();
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = token;
+            } while (token.getKind() != IToken.Kind.EOF);
+        } catch (LexicalException e) {
+            error = e;
+        }
+    }
+
+    // Number of tokens lexed, including the final EOF
+    public int size() {
+        return count;
+    }
+
+    // Returns the i'th token. Positions past the end return the EOF token, or throw the lexer's error
+    // if the input could not be lexed that far.
+    public IToken get(int i) throws LexicalException {
+        if (i < count) {
+            return tokens[i];
+        }
+        if (error != null) {
+            throw error;
+        }
+        return tokens[count - 1];
+    }
+}
@@ -1,7 +1,6 @@
 package edu.ufl.cise.plc;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import edu.ufl.cise.plc.IToken.Kind;
@@ -14,13 +13,31 @@ import static edu.ufl.cise.plc.ast.Types.Type.*;
 
 public class TypeCheckVisitor implements ASTVisitor {
 
-	SymbolTable symbolTable = new SymbolTable();
+	//Where the attributes computed for each node are recorded
+	final TypeInfo types;
+	SymbolTable symbolTable = new SymbolTable(false);
 	Program root;
-	
-	record Pair<T0,T1>(T0 t0, T1 t1) {
+	ImageShapes shapes;
+
+	public TypeCheckVisitor() {
+		this(InPlaceTypeInfo.INSTANCE);
+	}
 
-	};  // may be useful for constructing lookup tables.
+	//A type checker that records types, coercions and declarations in the given TypeInfo.
+	//With a SideTableTypeInfo the checked Program is left unmodified.
+	public TypeCheckVisitor(TypeInfo types) {
+		this.types = types;
+	}
 	
+	//Inserts dec in the symbol table, recording its slot
+	private boolean declare(String name, Declaration dec) {
+		boolean unique = symbolTable.insert(name, dec);
+		if (unique) {
+			types.setSlot(dec, symbolTable.lookupSlot(name));
+		}
+		return unique;
+	}
+
 	private void check(boolean condition, ASTNode node, String message) throws TypeCheckException {
 		if (!condition) {
 			throw new TypeCheckException(message, node.getSourceLoc());
@@ -32,37 +49,37 @@ public class TypeCheckVisitor implements ASTVisitor {
 	//Return the type for convenience in this visitor.  
 	@Override
 	public Object visitBooleanLitExpr(BooleanLitExpr booleanLitExpr, Object arg) throws Exception {
-		booleanLitExpr.setType(Type.BOOLEAN);
+		types.setType(booleanLitExpr, Type.BOOLEAN);
 		return Type.BOOLEAN;
 	}
 
 	@Override
 	public Object visitStringLitExpr(StringLitExpr stringLitExpr, Object arg) throws Exception {
-		stringLitExpr.setType(Type.STRING);
+		types.setType(stringLitExpr, Type.STRING);
 		return Type.STRING;
 	}
 
 	@Override
 	public Object visitIntLitExpr(IntLitExpr intLitExpr, Object arg) throws Exception {
-		intLitExpr.setType(Type.INT);
+		types.setType(intLitExpr, Type.INT);
 		return Type.INT;
 	}
 
 	@Override
 	public Object visitFloatLitExpr(FloatLitExpr floatLitExpr, Object arg) throws Exception {
-		floatLitExpr.setType(Type.FLOAT);
+		types.setType(floatLitExpr, Type.FLOAT);
 		return Type.FLOAT;
 	}
 
 	@Override
 	public Object visitColorConstExpr(ColorConstExpr colorConstExpr, Object arg) throws Exception {
-		colorConstExpr.setType(Type.COLOR);
+		types.setType(colorConstExpr, Type.COLOR);
 		return Type.COLOR;
 	}
 
 	@Override
 	public Object visitConsoleExpr(ConsoleExpr consoleExpr, Object arg) throws Exception {
-		consoleExpr.setType(Type.CONSOLE);
+		types.setType(consoleExpr, Type.CONSOLE);
 		return Type.CONSOLE;
 	}
 	
@@ -76,181 +93,50 @@ public class TypeCheckVisitor implements ASTVisitor {
 		check(redType == greenType && redType == blueType, colorExpr, "color components must have same type");
 		check(redType == Type.INT || redType == Type.FLOAT, colorExpr, "color component type must be int or float");
 		Type exprType = (redType == Type.INT) ? Type.COLOR : Type.COLORFLOAT;
-		colorExpr.setType(exprType);
+		types.setType(colorExpr, exprType);
 		return exprType;
 	}	
 
 	
 	
-	//Maps forms a lookup table that maps an operator expression pair into result type.  
-	//This more convenient than a long chain of if-else statements. 
-	//Given combinations are legal; if the operator expression pair is not in the map, it is an error. 
-	Map<Pair<Kind,Type>, Type> unaryExprs = Map.of(
-			new Pair<Kind,Type>(Kind.BANG,BOOLEAN), BOOLEAN,
-			new Pair<Kind,Type>(Kind.MINUS, FLOAT), FLOAT,
-			new Pair<Kind,Type>(Kind.MINUS, INT),INT,
-			new Pair<Kind,Type>(Kind.COLOR_OP,INT), INT,
-			new Pair<Kind,Type>(Kind.COLOR_OP,COLOR), INT,
-			new Pair<Kind,Type>(Kind.COLOR_OP,IMAGE), IMAGE,
-			new Pair<Kind,Type>(Kind.IMAGE_OP,IMAGE), INT
-			);
-	
-	//Visits the child expression to get the type, then uses the above table to determine the result type
+	//Visits the child expression to get the type, then uses the operator table to determine the result type
 	//and check that this node represents a legal combination of operator and expression type. 
 	@Override
 	public Object visitUnaryExpr(UnaryExpr unaryExpr, Object arg) throws Exception {
 		// !, -, getRed, getGreen, getBlue
 		Kind op = unaryExpr.getOp().getKind();
 		Type exprType = (Type) unaryExpr.getExpr().visit(this, arg);
-		//Use the lookup table above to both check for a legal combination of operator and expression, and to get result type.
-		Type resultType = unaryExprs.get(new Pair<>(op, exprType));
+		Type resultType = OperatorTypeTable.unary(op, exprType);
 		check(resultType != null, unaryExpr, "incompatible types for unaryExpr");
 		//Save the type of the unary expression in the AST node for use in code generation later. 
-		unaryExpr.setType(resultType);
+		types.setType(unaryExpr, resultType);
 		//return the type for convenience in this visitor.
 		return resultType;
 	}
 
 
-	//This method has several cases. Work incrementally and test as you go. 
+	//The operator table gives the result type and the coercions of the operands for each legal
+	//combination of operator and operand types.
 	@Override
 	public Object visitBinaryExpr(BinaryExpr binaryExpr, Object arg) throws Exception {
 		Kind op = binaryExpr.getOp().getKind();
 		Type lType = (Type) binaryExpr.getLeft().visit(this, arg);
 		Type rType = (Type) binaryExpr.getRight().visit(this, arg);
 
-		Type resultType = null;
-		switch (op) { // EQUALS, NOT_EQUALS, PLUS, MINUS, TIMES, DIV, MOD, LT, LE, GT, GE
-			case AND, OR -> {
-				check(lType == Type.BOOLEAN && rType == Type.BOOLEAN, binaryExpr, "Booleans required");
-				resultType = Type.BOOLEAN;
-			}
-			case EQUALS, NOT_EQUALS -> {
-				check(lType == rType, binaryExpr, "Incompatible types for comparison");
-				resultType = Type.BOOLEAN;
-			}
-			case PLUS, MINUS -> {
-				if (lType == Type.INT && rType == Type.INT) {
-					resultType = Type.INT;
-				}
-				else if (lType == Type.FLOAT && rType == Type.FLOAT) {
-					resultType = Type.FLOAT;
-				}
-				else if (lType == Type.FLOAT && rType == Type.INT) {
-					// Coerce to float
-					binaryExpr.getRight().setCoerceTo(Type.FLOAT);
-					resultType = Type.FLOAT;
-				}
-				else if (lType == Type.INT && rType == Type.FLOAT) {
-					// Coerce to float
-					binaryExpr.getLeft().setCoerceTo(Type.FLOAT);
-					resultType = Type.FLOAT;
-				}
-				else if (lType == Type.COLOR && rType == Type.COLOR) {
-					resultType = Type.COLOR;
-				}
-				else if (lType == Type.COLORFLOAT && rType == Type.COLORFLOAT) {
-					resultType = Type.COLORFLOAT;
-				}
-				else if (lType == Type.COLORFLOAT && rType == Type.COLOR) {
-					// Coerce to colorfloat
-					binaryExpr.getRight().setCoerceTo(Type.COLORFLOAT);
-					resultType = Type.COLORFLOAT;
-				}
-				else if (lType == Type.COLOR && rType == Type.COLORFLOAT) {
-					// Coerce to colorfloat
-					binaryExpr.getLeft().setCoerceTo(Type.COLORFLOAT);
-					resultType = Type.COLORFLOAT;
-				}
-				else if (lType == Type.IMAGE && rType == Type.IMAGE) {
-					resultType = Type.IMAGE;
-				}
-				else check(false, binaryExpr, "incompatible types for operator");
-			}
-			case TIMES, DIV, MOD -> {
-				if (lType == Type.INT && rType == Type.INT) {
-					resultType = Type.INT;
-				}
-				else if (lType == Type.FLOAT && rType == Type.FLOAT) {
-					resultType = Type.FLOAT;
-				}
-				else if (lType == Type.FLOAT && rType == Type.INT) {
-					// Coerce to float
-					binaryExpr.getRight().setCoerceTo(Type.FLOAT);
-					resultType = Type.FLOAT;
-				}
-				else if (lType == Type.INT && rType == Type.FLOAT) {
-					// Coerce to float
-					binaryExpr.getLeft().setCoerceTo(Type.FLOAT);
-					resultType = Type.FLOAT;
-				}
-				else if (lType == Type.COLOR && rType == Type.COLOR) {
-					resultType = Type.COLOR;
-				}
-				else if (lType == Type.COLORFLOAT && rType == Type.COLORFLOAT) {
-					resultType = Type.COLORFLOAT;
-				}
-				else if (lType == Type.COLORFLOAT && rType == Type.COLOR) {
-					// Coerce to colorfloat
-					binaryExpr.getRight().setCoerceTo(Type.COLORFLOAT);
-					resultType = Type.COLORFLOAT;
-				}
-				else if (lType == Type.COLOR && rType == Type.COLORFLOAT) {
-					// Coerce to colorfloat
-					binaryExpr.getLeft().setCoerceTo(Type.COLORFLOAT);
-					resultType = Type.COLORFLOAT;
-				}
-				else if (lType == Type.IMAGE && rType == Type.IMAGE) {
-					resultType = Type.IMAGE;
-				}
-				else if (lType == Type.IMAGE && rType == Type.INT) {
-					resultType = Type.IMAGE;
-				}
-				else if (lType == Type.IMAGE && rType == Type.FLOAT) {
-					resultType = Type.IMAGE;
-				}
-				else if (lType == Type.INT && rType == Type.COLOR) {
-					binaryExpr.getLeft().setCoerceTo(Type.COLOR);
-					resultType = Type.COLOR;
-				}
-				else if (lType == Type.COLOR && rType == Type.INT) {
-					binaryExpr.getRight().setCoerceTo(Type.COLOR);
-					resultType = Type.COLOR;
-				}
-				else if (lType == Type.COLOR && rType == FLOAT) {
-					binaryExpr.getRight().setCoerceTo(Type.COLOR);
-					resultType = Type.COLOR;
-				}
-				else if (lType == Type.FLOAT && rType == Type.COLOR) {
-					binaryExpr.getLeft().setCoerceTo(Type.COLORFLOAT);
-					binaryExpr.getRight().setCoerceTo(Type.COLORFLOAT);
-					resultType = Type.COLORFLOAT;
-				} else if (lType == rType) {
-					resultType = lType;
-				}
-				else check(false, binaryExpr, "incompatible types for operator");
-			}
-			case LT, LE, GT, GE -> {
-				if (lType == Type.INT && rType == Type.INT) {
-					resultType = Type.BOOLEAN;
-				}
-				else if (lType == Type.FLOAT && rType == Type.FLOAT) {
-					resultType = Type.BOOLEAN;
-				}
-				else if (lType == Type.INT && rType == Type.FLOAT) {
-					binaryExpr.getLeft().setCoerceTo(Type.FLOAT);
-					resultType = Type.BOOLEAN;
-				}
-				else if (lType == Type.FLOAT && rType == Type.INT) {
-					binaryExpr.getRight().setCoerceTo(Type.FLOAT);
-					resultType = Type.BOOLEAN;
-				}
-				else check(false, binaryExpr, "incompatible types for operator");
-			}
-			default -> check(false, binaryExpr, "use a real operator");
+		OperatorTypeTable.Rule rule = OperatorTypeTable.binary(op, lType, rType);
+		check(rule != null, binaryExpr, OperatorTypeTable.binaryError(op));
+		//Images of different sizes fail at runtime, so report it here when their sizes are known
+		check(lType != Type.IMAGE || rType != Type.IMAGE || shapes == null
+				|| !ImageShapes.differ(shapes.shape(binaryExpr.getLeft()), shapes.shape(binaryExpr.getRight())),
+				binaryExpr, "images have different sizes");
+		if (rule.coerceLeft() != null) {
+			types.setCoerceTo(binaryExpr.getLeft(), rule.coerceLeft());
 		}
-		binaryExpr.setType(resultType);
-		return resultType;
+		if (rule.coerceRight() != null) {
+			types.setCoerceTo(binaryExpr.getRight(), rule.coerceRight());
+		}
+		types.setType(binaryExpr, rule.result());
+		return rule.result();
 	}
 
 	@Override
@@ -258,12 +144,13 @@ public class TypeCheckVisitor implements ASTVisitor {
 		String name = identExpr.getText();
 		Declaration dec = symbolTable.lookup(name);
 		check(dec != null, identExpr, "Undefined identifier " + name);
-		check(dec.isInitialized(), identExpr, "Uninitialized identifier used: " + name);
+		check(types.isInitialized(dec), identExpr, "Uninitialized identifier used: " + name);
 
-		identExpr.setDec(dec); // Useful later, apparently
+		types.setDec(identExpr, dec); // Useful later, apparently
+		types.setSlot(identExpr, types.getSlot(dec));
 
 		Type type = dec.getType();
-		identExpr.setType(type);
+		types.setType(identExpr, type);
 		return type;
 	}
 
@@ -277,7 +164,7 @@ public class TypeCheckVisitor implements ASTVisitor {
 		check(conditionalType == Type.BOOLEAN, conditionalExpr, "Condition case must be boolean!");
 		check(trueCaseType == falseCaseType, conditionalExpr, "True case type must equal false case type!");
 
-		conditionalExpr.setType(trueCaseType);
+		types.setType(conditionalExpr, trueCaseType);
 		return trueCaseType;
 	}
 
@@ -310,11 +197,11 @@ public class TypeCheckVisitor implements ASTVisitor {
 		NameDef nameDef = (NameDef) symbolTable.lookup(assignmentStatement.getName());
 		check(nameDef != null, assignmentStatement, "Variable undeclared!");
 
-		assignmentStatement.setTargetDec(nameDef);
-		Declaration dec = assignmentStatement.getTargetDec();
+		types.setDec(assignmentStatement, nameDef);
+		Declaration dec = types.getDec(assignmentStatement);
 		Type targetType = dec.getType();
 
-		dec.setInitialized(true);
+		types.setInitialized(dec, true);
 
 		Type type = null;
 
@@ -330,29 +217,33 @@ public class TypeCheckVisitor implements ASTVisitor {
 			// Create declaration for these names, add to symbol table
 			NameDef xNameDef = new NameDef(x.getFirstToken(), "int", x.getText());
 			NameDef yNameDef = new NameDef(y.getFirstToken(), "int", y.getText());
-			xNameDef.setInitialized(true);
-			yNameDef.setInitialized(true);
-
-			x.setType(Type.INT);
-			y.setType(Type.INT);
-			((IdentExpr) x).setDec(xNameDef);
-			((IdentExpr) y).setDec(yNameDef);
-
-			symbolTable.insert(x.getText(), xNameDef);
-			symbolTable.insert(y.getText(), yNameDef);
-
-			// Process RHS
-			Type rhs = (Type) assignmentStatement.getExpr().visit(this, arg);
-			if (rhs == Type.COLOR || rhs == Type.COLORFLOAT || rhs == Type.FLOAT || rhs == Type.INT) {
-				assignmentStatement.getExpr().setCoerceTo(Type.COLOR);
-			}
-			else {
-				check(false, assignmentStatement, "RHS must be COLOR, COLORFLOAT, FLOAT, or INT!");
+			types.setInitialized(xNameDef, true);
+			types.setInitialized(yNameDef, true);
+
+			// x and y are only visible in the RHS
+			symbolTable.enterScope();
+			try {
+				declare(x.getText(), xNameDef);
+				declare(y.getText(), yNameDef);
+
+				types.setType(x, Type.INT);
+				types.setType(y, Type.INT);
+				types.setDec(x, xNameDef);
+				types.setDec(y, yNameDef);
+				types.setSlot(x, types.getSlot(xNameDef));
+				types.setSlot(y, types.getSlot(yNameDef));
+
+				// Process RHS
+				Type rhs = (Type) assignmentStatement.getExpr().visit(this, arg);
+				if (rhs == Type.COLOR || rhs == Type.COLORFLOAT || rhs == Type.FLOAT || rhs == Type.INT) {
+					types.setCoerceTo(assignmentStatement.getExpr(), Type.COLOR);
+				}
+				else {
+					check(false, assignmentStatement, "RHS must be COLOR, COLORFLOAT, FLOAT, or INT!");
+				}
+			} finally {
+				symbolTable.exitScope();
 			}
-
-			// Remove names from symbol table
-			symbolTable.remove(x.getText());
-			symbolTable.remove(y.getText());
 		}
 
 		if (targetType != Type.IMAGE) {
@@ -363,16 +254,16 @@ public class TypeCheckVisitor implements ASTVisitor {
 			boolean assignmentCompatible = targetType == exprType;
 
 			if (targetType == Type.INT && exprType == Type.FLOAT) {
-				expr.setCoerceTo(Type.INT);
+				types.setCoerceTo(expr, Type.INT);
 				assignmentCompatible = true;
 			} else if (targetType == Type.FLOAT && exprType == Type.INT) {
-				expr.setCoerceTo(Type.FLOAT);
+				types.setCoerceTo(expr, Type.FLOAT);
 				assignmentCompatible = true;
 			} else if (targetType == Type.INT && exprType == Type.COLOR) {
-				expr.setCoerceTo(Type.INT);
+				types.setCoerceTo(expr, Type.INT);
 				assignmentCompatible = true;
 			} else if (targetType == Type.COLOR && exprType == Type.INT) {
-				expr.setCoerceTo(Type.COLOR);
+				types.setCoerceTo(expr, Type.COLOR);
 				assignmentCompatible = true;
 			} else if (assignmentStatement.getSelector() != null) {
 				assignmentCompatible = false;
@@ -386,10 +277,10 @@ public class TypeCheckVisitor implements ASTVisitor {
 			boolean assignmentCompatible = exprType == targetType;
 
 			if (exprType == Type.INT) {
-				expr.setCoerceTo(Type.COLOR);
+				types.setCoerceTo(expr, Type.COLOR);
 				assignmentCompatible = true;
 			} else if (exprType == Type.FLOAT) {
-				expr.setCoerceTo(Type.COLORFLOAT);
+				types.setCoerceTo(expr, Type.COLORFLOAT);
 				assignmentCompatible = true;
 			} else if (exprType == Type.COLOR) {
 				assignmentCompatible = true;
@@ -409,25 +300,26 @@ public class TypeCheckVisitor implements ASTVisitor {
 
 			// Create declaration for these names, add to symbol table
 			NameDef xNameDef = new NameDef(x.getFirstToken(), "int", x.getText());
-			xNameDef.setInitialized(true);
+			types.setInitialized(xNameDef, true);
 			NameDef yNameDef = new NameDef(y.getFirstToken(), "int", y.getText());
-			yNameDef.setInitialized(true);
-			symbolTable.insert(x.getText(), xNameDef);
-			symbolTable.insert(x.getText(), xNameDef);
-			symbolTable.insert(y.getText(), yNameDef);
-
-			// Process RHS
-			Type rhs = (Type) assignmentStatement.getExpr().visit(this, arg);
-			if (rhs == Type.COLOR || rhs == Type.COLORFLOAT || rhs == Type.FLOAT || rhs == Type.INT) {
-				assignmentStatement.getExpr().setCoerceTo(Type.COLOR);
-			}
-			else {
-				check(false, assignmentStatement, "RHS must be COLOR, COLORFLOAT, FLOAT, or INT!");
+			types.setInitialized(yNameDef, true);
+			// x and y are only visible in the RHS
+			symbolTable.enterScope();
+			try {
+				declare(x.getText(), xNameDef);
+				declare(y.getText(), yNameDef);
+
+				// Process RHS
+				Type rhs = (Type) assignmentStatement.getExpr().visit(this, arg);
+				if (rhs == Type.COLOR || rhs == Type.COLORFLOAT || rhs == Type.FLOAT || rhs == Type.INT) {
+					types.setCoerceTo(assignmentStatement.getExpr(), Type.COLOR);
+				}
+				else {
+					check(false, assignmentStatement, "RHS must be COLOR, COLORFLOAT, FLOAT, or INT!");
+				}
+			} finally {
+				symbolTable.exitScope();
 			}
-
-			// Remove names from symbol table
-			symbolTable.remove(x.getText());
-			symbolTable.remove(y.getText());
 		}
 
 		return type;
@@ -449,10 +341,10 @@ public class TypeCheckVisitor implements ASTVisitor {
 		Declaration target = symbolTable.lookup(readStatement.getName());
 		check(target != null, readStatement, "target variable uninitialized");
 
-		readStatement.setTargetDec(target);
+		types.setDec(readStatement, target);
 
 		Type targetType = target.getType();
-		check(targetType != null, readStatement.getTargetDec(), "Target not declared!");
+		check(targetType != null, types.getDec(readStatement), "Target not declared!");
 		check(readStatement.getSelector() == null, readStatement.getSelector(), "Cannot have a pixel selector!");
 
 		Type exprType = (Type) readStatement.getSource().visit(this, arg);
@@ -460,12 +352,12 @@ public class TypeCheckVisitor implements ASTVisitor {
 		check(exprType == Type.CONSOLE || exprType == Type.STRING, readStatement.getSource(), "RHS must be of type console or string!");
 
 		if (exprType == CONSOLE) {
-			readStatement.getSource().setCoerceTo(targetType);
+			types.setCoerceTo(readStatement.getSource(), targetType);
 		} else {
-			readStatement.getSource().setCoerceTo(Type.STRING);
+			types.setCoerceTo(readStatement.getSource(), Type.STRING);
 		}
 
-		target.setInitialized(true);
+		types.setInitialized(target, true);
 
 		return null;
 	}
@@ -476,8 +368,8 @@ public class TypeCheckVisitor implements ASTVisitor {
 		boolean isInitialized = declaration.getExpr() != null;
 		if (isInitialized) {
 			Kind op = declaration.getOp().getKind();
-			declaration.setInitialized(true);
-			declaration.getNameDef().setInitialized(true);
+			types.setInitialized(declaration, true);
+			types.setInitialized(declaration.getNameDef(), true);
 
 			Expr expr = declaration.getExpr();
 			exprType = (Type) declaration.getExpr().visit(this, arg);
@@ -486,33 +378,33 @@ public class TypeCheckVisitor implements ASTVisitor {
 			if (op == IToken.Kind.LARROW) {
 				check(exprType == Type.CONSOLE || exprType == Type.STRING, declaration, "ReadStatement RHS must be CONSOLE or STRING");
 				if (exprType == Type.CONSOLE) {
-					expr.setCoerceTo(nameType);
+					types.setCoerceTo(expr, nameType);
 				}
 			}
 			else {
 				if (nameType == Type.IMAGE) {
 					if (exprType == Type.INT) {
-						expr.setCoerceTo(Type.COLOR);
+						types.setCoerceTo(expr, Type.COLOR);
 					} else if (exprType == Type.FLOAT) {
-						expr.setCoerceTo(Type.COLORFLOAT);
+						types.setCoerceTo(expr, Type.COLORFLOAT);
 					}
 				}
 
 				if (nameType == Type.INT && exprType == Type.FLOAT) {
-					expr.setCoerceTo(Type.INT);
+					types.setCoerceTo(expr, Type.INT);
 				} else if (nameType == Type.FLOAT && exprType == Type.INT) {
-					expr.setCoerceTo(Type.FLOAT);
+					types.setCoerceTo(expr, Type.FLOAT);
 				} else if (nameType == Type.INT && exprType == Type.COLOR) {
-					expr.setCoerceTo(Type.INT);
+					types.setCoerceTo(expr, Type.INT);
 				} else if (nameType == Type.COLOR && exprType == Type.INT) {
-					expr.setCoerceTo(Type.COLOR);
+					types.setCoerceTo(expr, Type.COLOR);
 				}
 
-				boolean valid1 = nameType == Type.IMAGE && expr.getCoerceTo() == Type.COLOR ||
+				boolean valid1 = nameType == Type.IMAGE && types.getCoerceTo(expr) == Type.COLOR ||
 						nameType == Type.IMAGE && exprType == Type.COLOR ||
-						nameType == Type.IMAGE && expr.getCoerceTo() == Type.COLORFLOAT ||
+						nameType == Type.IMAGE && types.getCoerceTo(expr) == Type.COLORFLOAT ||
 						nameType == Type.IMAGE && exprType == Type.COLORFLOAT;
-				boolean valid2 = nameType == expr.getCoerceTo() || nameType == exprType;
+				boolean valid2 = nameType == types.getCoerceTo(expr) || nameType == exprType;
 
 				check(valid1 || valid2, declaration, "Types of LHS and RHS are not compatible!");
 			}
@@ -522,7 +414,7 @@ public class TypeCheckVisitor implements ASTVisitor {
 		
 		Type nameDefType = declaration.getNameDef().getType();
 		if (nameDefType == Type.IMAGE) {
-			check((isInitialized && declaration.getExpr() != null && declaration.getExpr().getType() == Type.IMAGE) || declaration.getDim() != null || (declaration.getExpr() != null && declaration.getExpr().getType() == Type.STRING), declaration, "If type of variable is Image, it must either have an initializer expression of type IMAGE, or a Dimension!");
+			check((isInitialized && declaration.getExpr() != null && types.getType(declaration.getExpr()) == Type.IMAGE) || declaration.getDim() != null || (declaration.getExpr() != null && types.getType(declaration.getExpr()) == Type.STRING), declaration, "If type of variable is Image, it must either have an initializer expression of type IMAGE, or a Dimension!");
 		}
 
 		return nameDefType;
@@ -531,9 +423,22 @@ public class TypeCheckVisitor implements ASTVisitor {
 
 	@Override
 	public Object visitProgram(Program program, Object arg) throws Exception {
-		
+		programStart(program, arg);
+
+		// Check declarations and statements
+		List<ASTNode> decsAndStatements = program.getDecsAndStatements();
+		for (ASTNode node : decsAndStatements) {
+			node.visit(this, arg);
+		}
+
+		return program;
+	}
+
+	//Everything visitProgram checks before the declarations and statements
+	void programStart(Program program, Object arg) throws Exception {
 		// Save root of AST so return type can be accessed in return statements
 		root = program;
+		shapes = new ImageShapes(program, types);
 
 		// Add program name to symbol table (Mark name as initialized)
 		String programName = program.getName();
@@ -543,21 +448,13 @@ public class TypeCheckVisitor implements ASTVisitor {
 		List<NameDef> parameters = program.getParams();
 		for (NameDef nameDef : parameters) {
 			nameDef.visit(this, arg);
-			nameDef.setInitialized(true);
+			types.setInitialized(nameDef, true);
 		}
-
-		// Check declarations and statements
-		List<ASTNode> decsAndStatements = program.getDecsAndStatements();
-		for (ASTNode node : decsAndStatements) {
-			node.visit(this, arg);
-		}
-
-		return program;
 	}
 
 	@Override
 	public Object visitNameDef(NameDef nameDef, Object arg) throws Exception {
-		boolean unique = symbolTable.insert(nameDef.getName(), nameDef);
+		boolean unique = declare(nameDef.getName(), nameDef);
 		check(unique, nameDef, "Variable declared twice!");
 
 		return nameDef.getType();
@@ -565,7 +462,7 @@ public class TypeCheckVisitor implements ASTVisitor {
 
 	@Override
 	public Object visitNameDefWithDim(NameDefWithDim nameDefWithDim, Object arg) throws Exception {
-		boolean unique = symbolTable.insert(nameDefWithDim.getName(), nameDefWithDim);
+		boolean unique = declare(nameDefWithDim.getName(), nameDefWithDim);
 		check(unique, nameDefWithDim, "Variable declared twice!");
 
 		Dimension dim = nameDefWithDim.getDim();
@@ -586,8 +483,8 @@ public class TypeCheckVisitor implements ASTVisitor {
 		Type expType = (Type) unaryExprPostfix.getExpr().visit(this, arg);
 		check(expType == Type.IMAGE, unaryExprPostfix, "pixel selector can only be applied to image");
 		unaryExprPostfix.getSelector().visit(this, arg);
-		unaryExprPostfix.setType(Type.INT);
-		unaryExprPostfix.setCoerceTo(COLOR);
+		types.setType(unaryExprPostfix, Type.INT);
+		types.setCoerceTo(unaryExprPostfix, COLOR);
 		return Type.COLOR;
 	}
 
@@ -0,0 +1,115 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.ast.BinaryExpr;
+import edu.ufl.cise.plc.ast.IdentExpr;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.ast.TypeInfo;
+import edu.ufl.cise.plc.ast.Types.Type;
+import edu.ufl.cise.plc.ast.VarDeclaration;
+import edu.ufl.cise.plc.bench.BenchmarkPrograms;
+
+class TypeInfoTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	static final String IMAGE_PROGRAM = """
+			image f(int size, string url)
+			image[size, size] a;
+			a[x, y] = <<x - y, 0, y>>;
+			image b <- url;
+			image c = a + b;
+			int w = getWidth c;
+			float scale = w / 3.0;
+			write scale -> console;
+			^ c;
+			""";
+
+	Program parse(String input) throws Exception {
+		return (Program) CompilerComponentFactory.getParser(input).parse();
+	}
+
+	String inPlace(String input) throws Exception {
+		Program program = parse(input);
+		program.visit(CompilerComponentFactory.getTypeChecker(), null);
+		return (String) program.visit(CompilerComponentFactory.getCodeGenerator("cop4020sp22Package"), null);
+	}
+
+	String sideTable(Program program) throws Exception {
+		TypeInfo types = CompilerComponentFactory.typeCheckWithSideTable(program);
+		return (String) program.visit(CompilerComponentFactory.getCodeGenerator("cop4020sp22Package", types), null);
+	}
+
+	@Test
+	void sideTableLeavesProgramUnchanged() throws Exception {
+		String input = """
+				float f(int a)
+				float b = a * 2.5;
+				^ b;
+				""";
+		Program program = parse(input);
+		String before = program.toString();
+		TypeInfo types = CompilerComponentFactory.typeCheckWithSideTable(program);
+		assertEquals(before, program.toString());
+
+		BinaryExpr product = (BinaryExpr) ((VarDeclaration) program.getDecsAndStatements().get(0)).getExpr();
+		IdentExpr a = (IdentExpr) product.getLeft();
+		assertNull(product.getType());
+		assertNull(a.getDec());
+		assertEquals(Type.FLOAT, types.getType(product));
+		assertEquals(Type.FLOAT, types.getCoerceTo(a));
+		assertSame(program.getParams().get(0), types.getDec(a));
+		assertEquals(0, types.getSlot(a));
+
+		String code = (String) program.visit(CompilerComponentFactory.getCodeGenerator("cop4020sp22Package", types), null);
+		show(code);
+		assertEquals(inPlace(input), code);
+		assertEquals(inPlace(IMAGE_PROGRAM), sideTable(parse(IMAGE_PROGRAM)));
+	}
+
+	@Test
+	void frozenTableRejectsWrites() throws Exception {
+		Program program = parse(IMAGE_PROGRAM);
+		TypeInfo types = CompilerComponentFactory.typeCheckWithSideTable(program);
+		IdentExpr url = (IdentExpr) ((VarDeclaration) program.getDecsAndStatements().get(2)).getExpr();
+		assertThrows(IllegalStateException.class, () -> types.setType(url, Type.INT));
+	}
+
+	@Test
+	void oneProgramCheckedByManyThreads() throws Exception {
+		for (String input : List.of(IMAGE_PROGRAM, BenchmarkPrograms.generate(300))) {
+			String expected = inPlace(input);
+			Program program = parse(input);
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			try {
+				List<Future<String>> results = new ArrayList<>();
+				for (int i = 0; i < 16; i++) {
+					results.add(pool.submit(() -> sideTable(program)));
+				}
+				for (Future<String> result : results) {
+					assertEquals(expected, result.get());
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
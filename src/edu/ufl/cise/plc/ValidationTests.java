@@ -0,0 +1,104 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.Program;
+
+class ValidationTests {
+
+	static final boolean VERBOSE = true;
+
+	void show(Object obj) {
+		if (VERBOSE) {
+			System.out.println(obj);
+		}
+	}
+
+	List<Diagnostic> validate(String input) throws Exception {
+		show("-------------");
+		show(input);
+		List<Diagnostic> diagnostics = CompilerComponentFactory.validate(input);
+		show(diagnostics);
+		return diagnostics;
+	}
+
+	@Test
+	void validProgram() throws Exception {
+		String input = """
+				int f(int a)
+				int b = a + 1;
+				write b -> console;
+				^ b;
+				""";
+		assertTrue(validate(input).isEmpty());
+	}
+
+	@Test
+	void errorsInSeveralStatements() throws Exception {
+		String input = """
+				int f()
+				int b = 1 +;
+				int c = 2;
+				c = (c * ;
+				^ c;
+				""";
+		List<Diagnostic> diagnostics = validate(input);
+		assertEquals(2, diagnostics.size());
+		assertEquals(Diagnostic.Phase.SYNTAX, diagnostics.get(0).phase());
+		assertEquals(new IToken.SourceLocation(1, 11), diagnostics.get(0).location());
+		assertEquals(new IToken.SourceLocation(3, 9), diagnostics.get(1).location());
+	}
+
+	@Test
+	void lexicalErrorsReportedOnce() throws Exception {
+		String input = """
+				int f()
+				int b = 99999999999;
+				int c = @;
+				string s = "abc
+				""";
+		List<Diagnostic> diagnostics = validate(input);
+		assertEquals(3, diagnostics.size());
+		for (Diagnostic d : diagnostics) {
+			assertEquals(Diagnostic.Phase.LEXICAL, d.phase());
+		}
+		assertEquals(new IToken.SourceLocation(2, 8), diagnostics.get(1).location());
+	}
+
+	@Test
+	void errorTokens() throws Exception {
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		ILexer lexer = new Lexer("a @ b", diagnostics);
+		assertEquals(Kind.IDENT, lexer.next().getKind());
+		assertEquals(Kind.ERROR, lexer.peek().getKind());
+		assertEquals(0, diagnostics.size());
+		assertEquals(Kind.ERROR, lexer.next().getKind());
+		assertEquals(Kind.IDENT, lexer.next().getKind());
+		assertEquals(Kind.EOF, lexer.next().getKind());
+		assertEquals(1, diagnostics.size());
+	}
+
+	@Test
+	void validatingParserBuildsPartialAst() throws Exception {
+		String input = """
+				int f()
+				int b = 1 +;
+				int c = 2;
+				^ c;
+				""";
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		Program program = (Program) CompilerComponentFactory.getValidatingParser(input, diagnostics).parse();
+		show(program);
+		assertNotNull(program);
+		assertEquals(1, diagnostics.size());
+		assertEquals(2, program.getDecsAndStatements().size());
+	}
+}
@@ -0,0 +1,76 @@
+package edu.ufl.cise.plc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.ValueRanges.Range;
+
+class ValueRangeTests extends CodeGenTestSupport {
+
+	@Test
+	void rangeArithmetic() {
+		Range component = Range.COMPONENT;
+		assertEquals(new Range(0, 127), Range.apply("/", component, new Range(2, 2)));
+		assertEquals(new Range(0, 510), Range.apply("+", component, component));
+		assertEquals(new Range(-255, 255), Range.apply("-", component, component));
+		assertEquals(new Range(-255, 255), Range.apply("/", component, new Range(-1, 1)));
+		assertEquals(new Range(0, 6), Range.apply("%", component, new Range(-7, 7)));
+		assertEquals(new Range(0, 255), Range.apply("%", component, Range.ALL));
+		//Products that can overflow an int are not bounded
+		assertEquals(Range.ALL, Range.apply("*", new Range(0, 1 << 20), new Range(0, 1 << 20)));
+		assertEquals(Range.ALL, Range.apply("/", Range.ALL, new Range(-1, -1)));
+	}
+
+	@Test
+	void pixelLoopClamps() throws Exception {
+		String input = """
+				image f(image a, image b)
+				image[getWidth a, getHeight a] c;
+				c[x, y] = <<getRed(a[x, y]) / 2, x % 256, getBlue(b[x, y]) + 1>>;
+				^ c;
+				""";
+		Set<Option> options = EnumSet.of(Option.INT_COLORS, Option.ELIDE_CLAMPS);
+		String code = code(input, options);
+		assertEquals(2, generator.getElidedClamps());
+		assertTrue(code.contains("ColorTuple.packInRange("));
+		assertTrue(code.contains("ColorTuple.truncate((ColorTuple.getBlue("));
+		checkSameResult(input, new Object[] { image(30, 20, 1), image(30, 20, 250) }, List.of(options, EnumSet.allOf(Option.class)));
+	}
+
+	@Test
+	void fusedClamps() throws Exception {
+		String input = """
+				image f(image a, image b)
+				^ getRed(a) / 2 + getGreen(b) % 100 - a * 2;
+				""";
+		Set<Option> options = EnumSet.of(Option.FUSE_IMAGES, Option.ELIDE_CLAMPS);
+		code(input, options);
+		//All 9 components of the first three operations, and the packing of the result
+		assertEquals(12, generator.getElidedClamps());
+		checkSameResult(input, new Object[] { image(30, 20, 1), image(30, 20, 2) }, List.of(options, EnumSet.allOf(Option.class)));
+	}
+
+	@Test
+	void colorVariablesClamped() throws Exception {
+		String input = """
+				image f(int w)
+				color k = <<300, -20, 100>>;
+				image[w, w] c;
+				c[x, y] = k / 2;
+				^ c;
+				""";
+		Set<Option> options = EnumSet.of(Option.INT_COLORS, Option.ELIDE_CLAMPS);
+		String code = code(input, options);
+		assertEquals(0, generator.getElidedClamps());
+		assertFalse(code.contains("packInRange"));
+		checkSameResult(input, new Object[] { 10 }, List.of(options, EnumSet.allOf(Option.class)));
+	}
+}
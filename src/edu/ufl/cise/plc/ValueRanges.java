@@ -0,0 +1,123 @@
+package edu.ufl.cise.plc;
+
+import java.awt.Color;
+import java.util.Set;
+
+import edu.ufl.cise.plc.IToken.Kind;
+import edu.ufl.cise.plc.ast.*;
+import edu.ufl.cise.plc.ast.Types.Type;
+import edu.ufl.cise.plc.runtime.ColorTuple;
+
+// Bounds on the values of int expressions, and of the components of color expressions, as the code
+// INT_COLORS generates computes them: Java int arithmetic on the components, with no truncation to
+// [0, 256) until a pixel is set. A component read from a pixel, or extracted from an int as a packed
+// color, is in [0, 256). The components of a color variable are not bounded.
+//
+// Bounds are computed with longs, and an operation whose bounds do not fit in an int, where the Java
+// arithmetic could overflow, is not bounded.
+class ValueRanges {
+    // The values from lo to hi
+    record Range(long lo, long hi) {
+        static final Range ALL = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        static final Range COMPONENT = new Range(0, 255);
+
+        static Range of(long lo, long hi) {
+            return lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE ? ALL : new Range(lo, hi);
+        }
+
+        // Whether every value in this range is a color component, which needs no truncation
+        boolean isComponent() {
+            return lo >= 0 && hi <= 255;
+        }
+
+        Range union(Range other) {
+            return new Range(Math.min(lo, other.lo), Math.max(hi, other.hi));
+        }
+
+        // The values of left op right, for left and right in the given ranges, where op is one of the
+        // arithmetic operators. Division or remainder by zero throws, so it has no value.
+        static Range apply(String op, Range left, Range right) {
+            return switch (op) {
+                case "+" -> of(left.lo + right.lo, left.hi + right.hi);
+                case "-" -> of(left.lo - right.hi, left.hi - right.lo);
+                case "*" -> corners(left, right, (a, b) -> a * b);
+                case "/" -> divide(left, right);
+                case "%" -> remainder(left, right);
+                default -> ALL;
+            };
+        }
+
+        private interface Op {
+            long apply(long a, long b);
+        }
+
+        // For an op monotone in each operand, where each range has one sign
+        private static Range corners(Range left, Range right, Op op) {
+            long a = op.apply(left.lo, right.lo);
+            long b = op.apply(left.lo, right.hi);
+            long c = op.apply(left.hi, right.lo);
+            long d = op.apply(left.hi, right.hi);
+            return of(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+        }
+
+        private static Range divide(Range left, Range right) {
+            Range result = null;
+            if (right.lo < 0) {
+                result = corners(left, new Range(right.lo, Math.min(right.hi, -1)), (a, b) -> a / b);
+            }
+            if (right.hi > 0) {
+                Range positive = corners(left, new Range(Math.max(right.lo, 1), right.hi), (a, b) -> a / b);
+                result = result == null ? positive : result.union(positive);
+            }
+            return result == null ? ALL : of(result.lo, result.hi);
+        }
+
+        // The remainder has the sign of left, and is smaller in magnitude than left and right
+        private static Range remainder(Range left, Range right) {
+            long divisor = Math.max(Math.abs(right.lo), Math.abs(right.hi)) - 1;
+            return of(left.lo < 0 ? Math.max(left.lo, -divisor) : 0, left.hi > 0 ? Math.min(left.hi, divisor) : 0);
+        }
+    }
+
+    private final TypeInfo types;
+    // Int variables that are never negative, such as the coordinates of the pixel being set
+    private final Set<String> nonNegative;
+
+    ValueRanges(TypeInfo types, Set<String> nonNegative) {
+        this.types = types;
+        this.nonNegative = nonNegative;
+    }
+
+    // The range of expr if it is an int, or of its component c (0 red, 1 green, 2 blue) if it is used
+    // as a color
+    Range range(Expr expr, int c) throws Exception {
+        if (expr instanceof IntLitExpr e) {
+            return new Range(e.getValue(), e.getValue());
+        } else if (expr instanceof UnaryExprPostfix) {
+            return Range.COMPONENT;
+        } else if (expr instanceof IdentExpr) {
+            return types.getType(expr) == Type.INT && nonNegative.contains(expr.getText()) ? new Range(0, Integer.MAX_VALUE) : Range.ALL;
+        } else if (expr instanceof ColorConstExpr) {
+            int rgb = ((Color) Color.class.getField(expr.getText()).get(null)).getRGB();
+            long value = c == 0 ? ColorTuple.getRed(rgb) : c == 1 ? ColorTuple.getGreen(rgb) : ColorTuple.getBlue(rgb);
+            return new Range(value, value);
+        } else if (expr instanceof ColorExpr e && types.getType(expr) == Type.COLOR) {
+            return range(c == 0 ? e.getRed() : c == 1 ? e.getGreen() : e.getBlue(), c);
+        } else if (expr instanceof UnaryExpr e && types.getType(expr) == Type.INT) {
+            Expr operand = e.getExpr();
+            if (e.getOp().getKind() == Kind.MINUS) {
+                Range range = range(operand, c);
+                return Range.of(-range.hi, -range.lo);
+            } else if (e.getOp().getKind() == Kind.COLOR_OP) {
+                int component = e.getOp().getText().equals("getRed") ? 0 : e.getOp().getText().equals("getGreen") ? 1 : 2;
+                Type type = types.getCoerceTo(operand) == null ? types.getType(operand) : types.getCoerceTo(operand);
+                return type == Type.COLOR ? range(operand, component) : Range.COMPONENT;
+            }
+        } else if (expr instanceof BinaryExpr e && (types.getType(expr) == Type.INT || types.getType(expr) == Type.COLOR)) {
+            return Range.apply(e.getOp().getText(), range(e.getLeft(), c), range(e.getRight(), c));
+        } else if (expr instanceof ConditionalExpr e) {
+            return range(e.getTrueCase(), c).union(range(e.getFalseCase(), c));
+        }
+        return Range.ALL;
+    }
+}
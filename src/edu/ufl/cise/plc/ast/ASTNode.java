@@ -7,11 +7,17 @@ public abstract class ASTNode  {
 	
 
 	final IToken firstToken;
+	// Index of this node in its Program, see Program.getNodeCount. -1 until numbered.
+	int id = -1;
 
 	public ASTNode(IToken firstToken) {
 		this.firstToken = firstToken;
 	}
 
+	public int getId() {
+		return id;
+	}
+
 	public SourceLocation getSourceLoc() {
 		return firstToken.getSourceLocation();
 	}
@@ -0,0 +1,326 @@
+package edu.ufl.cise.plc.ast;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ufl.cise.plc.LineMap;
+
+// Binary form of a type checked Program, so that a program compiled before can go straight to code
+// generation without lexing, parsing and type checking it again. The format is a FlatAst written
+// node by node and token by token. Indices are mostly close to the index of the node or token
+// being written, so they are stored as differences in a variable length encoding, 7 bits per byte.
+// The source is not stored, only the start of each line and a table of the distinct names and token
+// texts, each of which becomes one String shared by all the nodes and tokens that use it.
+//
+//   magic "PLCA", format version
+//   line starts (from the previous line's)
+//   string count, names count, strings (the names first)
+//   node count, parameter count, then per node:
+//     kind (high bit set if initialized), type and coerce-to type (4 bits each, 0 for none),
+//     first token (from the previous node's), aux, declaration (from this node, 0 for none),
+//     slot + 1, child count, children (from this node, 0 for none)
+//   token count, then per token:
+//     kind, offset (from the previous token's), string + 1 (0 for no text), value of literals
+//
+// Kinds and types are stored as enum ordinals, so VERSION must change whenever IToken.Kind,
+// Types.Type, FlatAst.NodeKind or the layout above changes. Readers reject other versions.
+public class AstSerializer {
+
+	static final int MAGIC = 0x504C4341;
+	public static final int VERSION = 2;
+
+	private static final int INITIALIZED = 0x80;
+
+	public static byte[] serialize(Program program, String source) {
+		return serialize(FlatAst.flatten(program, source));
+	}
+
+	public static Program deserialize(byte[] bytes) throws IOException {
+		return read(bytes).toProgram();
+	}
+
+	public static byte[] serialize(FlatAst flat) {
+		Writer out = new Writer(flat.nodeCount * 8 + flat.tokenCount * 4);
+		out.int32(MAGIC);
+		out.int32(VERSION);
+
+		out.varint(flat.lines.getLineCount());
+		for (int i = 1; i < flat.lines.getLineCount(); i++) {
+			out.varint(flat.lines.getLineStart(i) - flat.lines.getLineStart(i - 1));
+		}
+
+		Map<String, Integer> stringIndex = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		for (int i = 0; i < flat.nameCount; i++) {
+			stringIndex.put(flat.names[i], i);
+			strings.add(flat.names[i]);
+		}
+		int[] tokenStrings = new int[flat.tokenCount];
+		for (int t = 0; t < flat.tokenCount; t++) {
+			String text = flat.getTokenText(t);
+			tokenStrings[t] = text == null ? FlatAst.NONE : stringIndex.computeIfAbsent(text, s -> {
+				strings.add(s);
+				return strings.size() - 1;
+			});
+		}
+		out.varint(strings.size());
+		out.varint(flat.nameCount);
+		for (String s : strings) {
+			out.string(s);
+		}
+
+		out.varint(flat.nodeCount);
+		out.varint(flat.paramCount);
+		int previousToken = 0;
+		for (int n = 0; n < flat.nodeCount; n++) {
+			out.raw(flat.kinds[n] | (flat.initialized[n] ? INITIALIZED : 0));
+			out.raw(flat.types[n] << 4 | flat.coerceTos[n]);
+			out.signed(flat.firstTokens[n] - previousToken);
+			previousToken = flat.firstTokens[n];
+			out.varint(flat.aux[n] + 1);
+			out.relative(flat.decs[n], n);
+			out.varint(flat.slots[n] + 1);
+			out.varint(flat.childCounts[n]);
+			for (int i = 0; i < flat.childCounts[n]; i++) {
+				out.relative(flat.getChild(n, i), n);
+			}
+		}
+
+		out.varint(flat.tokenCount);
+		int previousOffset = 0;
+		for (int t = 0; t < flat.tokenCount; t++) {
+			out.raw(flat.tokenKinds[t]);
+			out.signed(flat.tokenOffsets[t] - previousOffset);
+			previousOffset = flat.tokenOffsets[t];
+			out.varint(tokenStrings[t] + 1);
+			switch (FlatAst.TOKEN_KINDS[flat.tokenKinds[t]]) {
+				case INT_LIT, BOOLEAN_LIT -> out.signed(flat.tokenValues[t]);
+				case FLOAT_LIT -> out.int32(flat.tokenValues[t]);
+				default -> {}
+			}
+		}
+		return out.toByteArray();
+	}
+
+	public static FlatAst read(byte[] bytes) throws IOException {
+		Reader in = new Reader(bytes);
+		try {
+			if (in.int32() != MAGIC) {
+				throw new IOException("Not a serialized AST");
+			}
+			int version = in.int32();
+			if (version != VERSION) {
+				throw new IOException("Unsupported AST format version " + version + ", expected " + VERSION);
+			}
+			int lineCount = in.varint();
+			int[] lineStarts = new int[Math.max(lineCount, 1)];
+			for (int i = 1; i < lineCount; i++) {
+				lineStarts[i] = lineStarts[i - 1] + in.varint();
+			}
+			FlatAst flat = new FlatAst(null, new LineMap(lineStarts, lineCount));
+
+			String[] strings = new String[in.varint()];
+			flat.nameCount = in.varint();
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = in.string();
+			}
+			flat.names = Arrays.copyOf(strings, flat.nameCount);
+
+			int nodeCount = in.varint();
+			flat.nodeCount = nodeCount;
+			flat.paramCount = in.varint();
+			flat.kinds = new byte[nodeCount];
+			flat.initialized = new boolean[nodeCount];
+			flat.types = new byte[nodeCount];
+			flat.coerceTos = new byte[nodeCount];
+			flat.firstTokens = new int[nodeCount];
+			flat.aux = new int[nodeCount];
+			flat.decs = new int[nodeCount];
+			flat.slots = new int[nodeCount];
+			flat.childStarts = new int[nodeCount];
+			flat.childCounts = new int[nodeCount];
+			int[] children = new int[nodeCount];
+			int childrenSize = 0;
+			int previousToken = 0;
+			for (int n = 0; n < nodeCount; n++) {
+				int kind = in.raw();
+				flat.kinds[n] = (byte) (kind & ~INITIALIZED);
+				flat.initialized[n] = (kind & INITIALIZED) != 0;
+				int types = in.raw();
+				flat.types[n] = (byte) (types >> 4);
+				flat.coerceTos[n] = (byte) (types & 0xF);
+				previousToken += in.signed();
+				flat.firstTokens[n] = previousToken;
+				flat.aux[n] = in.varint() - 1;
+				flat.decs[n] = in.relative(n);
+				flat.slots[n] = in.varint() - 1;
+				int childCount = in.varint();
+				if (childrenSize + childCount > children.length) {
+					children = Arrays.copyOf(children, Math.max(children.length * 2, childrenSize + childCount));
+				}
+				flat.childStarts[n] = childrenSize;
+				flat.childCounts[n] = childCount;
+				for (int i = 0; i < childCount; i++) {
+					children[childrenSize++] = in.relative(n);
+				}
+			}
+			flat.children = children;
+			flat.childrenSize = childrenSize;
+
+			int tokenCount = in.varint();
+			flat.tokenCount = tokenCount;
+			flat.tokenKinds = new byte[tokenCount];
+			flat.tokenOffsets = new int[tokenCount];
+			flat.tokenLengths = new int[tokenCount];
+			flat.tokenValues = new int[tokenCount];
+			flat.tokenTexts = new String[tokenCount];
+			int previousOffset = 0;
+			for (int t = 0; t < tokenCount; t++) {
+				flat.tokenKinds[t] = (byte) in.raw();
+				previousOffset += in.signed();
+				flat.tokenOffsets[t] = previousOffset;
+				int string = in.varint() - 1;
+				if (string == FlatAst.NONE) {
+					flat.tokenLengths[t] = -1;
+				} else {
+					flat.tokenTexts[t] = strings[string];
+					flat.tokenLengths[t] = strings[string].length();
+				}
+				switch (FlatAst.TOKEN_KINDS[flat.tokenKinds[t]]) {
+					case INT_LIT, BOOLEAN_LIT -> flat.tokenValues[t] = in.signed();
+					case FLOAT_LIT -> flat.tokenValues[t] = in.int32();
+					default -> {}
+				}
+			}
+			if (in.pos != bytes.length) {
+				throw new IOException("Unexpected data after serialized AST");
+			}
+			return flat;
+		} catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("Truncated or corrupt serialized AST", e);
+		}
+	}
+
+	private static final class Writer {
+		byte[] buf;
+		int pos;
+
+		Writer(int capacity) {
+			buf = new byte[Math.max(capacity, 16)];
+		}
+
+		void ensure(int n) {
+			if (pos + n > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+			}
+		}
+
+		void raw(int b) {
+			ensure(1);
+			buf[pos++] = (byte) b;
+		}
+
+		void int32(int v) {
+			ensure(4);
+			buf[pos++] = (byte) (v >>> 24);
+			buf[pos++] = (byte) (v >>> 16);
+			buf[pos++] = (byte) (v >>> 8);
+			buf[pos++] = (byte) v;
+		}
+
+		void varint(int v) {
+			ensure(5);
+			while ((v & ~0x7F) != 0) {
+				buf[pos++] = (byte) (v & 0x7F | 0x80);
+				v >>>= 7;
+			}
+			buf[pos++] = (byte) v;
+		}
+
+		// Zigzag encoding, so that small negative numbers are short too
+		void signed(int v) {
+			varint(v << 1 ^ v >> 31);
+		}
+
+		// Index of another node as its distance from node n; NONE is written as 0
+		void relative(int index, int n) {
+			if (index == FlatAst.NONE) {
+				varint(0);
+			} else {
+				int d = index - n;
+				varint((d << 1 ^ d >> 31) + 1);
+			}
+		}
+
+		void string(String s) {
+			byte[] b = s.getBytes(StandardCharsets.UTF_8);
+			varint(b.length);
+			ensure(b.length);
+			System.arraycopy(b, 0, buf, pos, b.length);
+			pos += b.length;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, pos);
+		}
+	}
+
+	private static final class Reader {
+		final byte[] buf;
+		int pos;
+
+		Reader(byte[] buf) {
+			this.buf = buf;
+		}
+
+		int raw() {
+			return buf[pos++] & 0xFF;
+		}
+
+		int int32() {
+			return raw() << 24 | raw() << 16 | raw() << 8 | raw();
+		}
+
+		int varint() throws IOException {
+			int v = buf[pos++];
+			if (v >= 0) {
+				return v;
+			}
+			v &= 0x7F;
+			for (int shift = 7; shift < 35; shift += 7) {
+				int b = buf[pos++];
+				v |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return v;
+				}
+			}
+			throw new IOException("Malformed number in serialized AST");
+		}
+
+		int signed() throws IOException {
+			int v = varint();
+			return v >>> 1 ^ -(v & 1);
+		}
+
+		int relative(int n) throws IOException {
+			int v = varint();
+			if (v == 0) {
+				return FlatAst.NONE;
+			}
+			v--;
+			return n + (v >>> 1 ^ -(v & 1));
+		}
+
+		String string() throws IOException {
+			int length = varint();
+			String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return s;
+		}
+	}
+}
@@ -11,6 +11,8 @@ public abstract class Declaration extends ASTNode {
 	
 
 	boolean initialized = false;
+	// Slot given by the SymbolTable, or -1 if not yet declared
+	int slot = -1;
 
 	public abstract Type getType();
 
@@ -21,6 +23,14 @@ public abstract class Declaration extends ASTNode {
 	public void setInitialized(boolean initialized) {
 		this.initialized = initialized;
 	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
 	
 	//returns null if dimensions not specified in Declaration.
 	public abstract Dimension getDim();
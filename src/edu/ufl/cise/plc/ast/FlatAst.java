@@ -0,0 +1,530 @@
+package edu.ufl.cise.plc.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ufl.cise.plc.IToken;
+import edu.ufl.cise.plc.LineMap;
+import edu.ufl.cise.plc.Token;
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// A program's AST stored as parallel primitive arrays instead of one object per node and per token.
+// Nodes are numbered in preorder, with the Program as node 0, and refer to their children, first
+// token and declaration by index. Token text is not copied: a token is its kind, offset and length
+// in the source, plus its decoded value for literals.
+//
+// flatten() builds one from an ordinary AST, including the types, coercions, declarations, slots and
+// initialized flags set by the type checker. toProgram() turns it back into ASTNodes for the
+// visitors; passes that only need to read the tree can use the accessors here directly.
+public class FlatAst {
+
+	public enum NodeKind {
+		PROGRAM, NAME_DEF, NAME_DEF_WITH_DIM, VAR_DECLARATION, DIMENSION, PIXEL_SELECTOR,
+		ASSIGNMENT_STATEMENT, READ_STATEMENT, WRITE_STATEMENT, RETURN_STATEMENT,
+		BINARY_EXPR, UNARY_EXPR, UNARY_EXPR_POSTFIX, CONDITIONAL_EXPR, COLOR_EXPR,
+		BOOLEAN_LIT_EXPR, STRING_LIT_EXPR, INT_LIT_EXPR, FLOAT_LIT_EXPR, IDENT_EXPR, COLOR_CONST_EXPR, CONSOLE_EXPR
+	}
+
+	// Index of a missing child, token, name or declaration
+	public static final int NONE = -1;
+
+	static final NodeKind[] NODE_KINDS = NodeKind.values();
+	static final IToken.Kind[] TOKEN_KINDS = IToken.Kind.values();
+	static final Type[] TYPES = Type.values();
+	// Names of the types as written in declarations, as the NameDef constructors take them
+	private static final String[] TYPE_NAMES = Arrays.stream(TYPES).map(t -> t.name().toLowerCase()).toArray(String[]::new);
+
+	// Nodes
+	int nodeCount;
+	byte[] kinds = new byte[64];
+	int[] firstTokens = new int[64];
+	// Operator token of a BinaryExpr, UnaryExpr or VarDeclaration, or name of a Program, NameDef,
+	// AssignmentStatement or ReadStatement
+	int[] aux = new int[64];
+	int[] childStarts = new int[64];
+	int[] childCounts = new int[64];
+	// Type ordinal + 1, or 0 for none. This is the declared type of a NameDef, the return type of
+	// the Program and the target type of a ReadStatement.
+	byte[] types = new byte[64];
+	byte[] coerceTos = new byte[64];
+	// Declaration of an IdentExpr, or target of an AssignmentStatement or ReadStatement
+	int[] decs = new int[64];
+	boolean[] initialized = new boolean[64];
+	// Symbol table slot of a Declaration or IdentExpr, otherwise NONE
+	int[] slots = new int[64];
+
+	// Child lists of all nodes; the Program's parameters come before its declarations and statements
+	int childrenSize;
+	int[] children = new int[64];
+	int paramCount;
+
+	// Tokens. The source is null in a FlatAst read by AstSerializer, which fills in every token's text.
+	final String source;
+	final LineMap lines;
+	int tokenCount;
+	byte[] tokenKinds = new byte[64];
+	int[] tokenOffsets = new int[64];
+	int[] tokenLengths = new int[64];
+	// Value of INT_LIT tokens, float bits of FLOAT_LIT tokens, 1 or 0 for BOOLEAN_LIT tokens
+	int[] tokenValues = new int[64];
+	// Text of tokens that do not appear in the source at their offset, otherwise null. Tokens
+	// without text, such as separators, have length -1.
+	String[] tokenTexts = new String[64];
+
+	int nameCount;
+	String[] names = new String[16];
+
+	FlatAst(String source, LineMap lines) {
+		this.source = source;
+		this.lines = lines;
+	}
+
+	// Flattens the given program, whose tokens were lexed from source
+	public static FlatAst flatten(Program program, String source) {
+		LineMap lines = ((Token) program.getFirstToken()).getLineMap();
+		FlatAst flat = new FlatAst(source, lines);
+		new Flattener(flat).flatten(program);
+		flat.trim();
+		return flat;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public NodeKind getKind(int node) {
+		return NODE_KINDS[kinds[node]];
+	}
+
+	public int getChildCount(int node) {
+		return childCounts[node];
+	}
+
+	// Returns the i'th child of a node, or NONE for a missing optional child
+	public int getChild(int node, int i) {
+		return children[childStarts[node] + i];
+	}
+
+	public int getParamCount() {
+		return paramCount;
+	}
+
+	public Type getType(int node) {
+		return types[node] == 0 ? null : TYPES[types[node] - 1];
+	}
+
+	public Type getCoerceTo(int node) {
+		return coerceTos[node] == 0 ? null : TYPES[coerceTos[node] - 1];
+	}
+
+	public int getDec(int node) {
+		return decs[node];
+	}
+
+	public boolean isInitialized(int node) {
+		return initialized[node];
+	}
+
+	public int getSlot(int node) {
+		return slots[node];
+	}
+
+	public String getName(int node) {
+		return names[aux[node]];
+	}
+
+	public int getFirstToken(int node) {
+		return firstTokens[node];
+	}
+
+	// Operator token of a BinaryExpr, UnaryExpr or VarDeclaration
+	public int getOp(int node) {
+		return aux[node];
+	}
+
+	public int getIntValue(int node) {
+		return tokenValues[firstTokens[node]];
+	}
+
+	public int getTokenCount() {
+		return tokenCount;
+	}
+
+	public IToken.Kind getTokenKind(int token) {
+		return TOKEN_KINDS[tokenKinds[token]];
+	}
+
+	public String getTokenText(int token) {
+		String text = tokenTexts[token];
+		if (text != null || tokenLengths[token] < 0) {
+			return text;
+		}
+		return source.substring(tokenOffsets[token], tokenOffsets[token] + tokenLengths[token]);
+	}
+
+	// Creates a Token equal to the one the given index was flattened from
+	public Token getToken(int token) {
+		IToken.Kind kind = getTokenKind(token);
+		String text = getTokenText(token);
+		int offset = tokenOffsets[token];
+		int value = tokenValues[token];
+		return switch (kind) {
+			case INT_LIT -> new Token(kind, text, offset, lines, value);
+			case FLOAT_LIT -> new Token(kind, text, offset, lines, Float.intBitsToFloat(value));
+			case BOOLEAN_LIT -> new Token(kind, text, offset, lines, value != 0);
+			default -> new Token(kind, text, offset, lines);
+		};
+	}
+
+	// Rebuilds the AST, with one new Token per token and the attributes set by the type checker
+	public Program toProgram() {
+		return new Unflattener(this).toProgram();
+	}
+
+	private void trim() {
+		kinds = Arrays.copyOf(kinds, nodeCount);
+		firstTokens = Arrays.copyOf(firstTokens, nodeCount);
+		aux = Arrays.copyOf(aux, nodeCount);
+		childStarts = Arrays.copyOf(childStarts, nodeCount);
+		childCounts = Arrays.copyOf(childCounts, nodeCount);
+		types = Arrays.copyOf(types, nodeCount);
+		coerceTos = Arrays.copyOf(coerceTos, nodeCount);
+		decs = Arrays.copyOf(decs, nodeCount);
+		initialized = Arrays.copyOf(initialized, nodeCount);
+		slots = Arrays.copyOf(slots, nodeCount);
+		children = Arrays.copyOf(children, childrenSize);
+		tokenKinds = Arrays.copyOf(tokenKinds, tokenCount);
+		tokenOffsets = Arrays.copyOf(tokenOffsets, tokenCount);
+		tokenLengths = Arrays.copyOf(tokenLengths, tokenCount);
+		tokenValues = Arrays.copyOf(tokenValues, tokenCount);
+		tokenTexts = Arrays.copyOf(tokenTexts, tokenCount);
+		names = Arrays.copyOf(names, nameCount);
+	}
+
+	private static byte typeCode(Type type) {
+		return (byte) (type == null ? 0 : type.ordinal() + 1);
+	}
+
+	private static final class Flattener {
+		final FlatAst flat;
+		final Map<ASTNode, Integer> nodeIndex = new IdentityHashMap<>();
+		final Map<IToken, Integer> tokenIndex = new IdentityHashMap<>();
+		final Map<String, Integer> nameIndex = new HashMap<>();
+		// Nodes whose declaration link is resolved once every node has an index
+		final List<ASTNode> linked = new ArrayList<>();
+
+		Flattener(FlatAst flat) {
+			this.flat = flat;
+		}
+
+		void flatten(Program program) {
+			add(program);
+			// Declarations that are not in the tree, such as those the type checker makes for the
+			// variables of a pixel selector, are added after it as nodes that are nobody's child
+			for (int i = 0; i < linked.size(); i++) {
+				ASTNode node = linked.get(i);
+				Declaration dec = node instanceof IdentExpr e ? e.getDec()
+						: node instanceof AssignmentStatement s ? s.getTargetDec()
+						: ((ReadStatement) node).getTargetDec();
+				Integer decIndex = nodeIndex.get(dec);
+				flat.decs[nodeIndex.get(node)] = decIndex != null ? decIndex : add(dec);
+			}
+		}
+
+		int add(ASTNode node) {
+			if (node == null) {
+				return NONE;
+			}
+			int n = newNode(node);
+			nodeIndex.put(node, n);
+			if (node instanceof Expr e) {
+				flat.types[n] = typeCode(e.getType());
+				flat.coerceTos[n] = typeCode(e.getCoerceTo());
+			}
+			if (node instanceof Declaration d) {
+				flat.initialized[n] = d.isInitialized();
+				flat.slots[n] = d.getSlot();
+			}
+
+			if (node instanceof Program p) {
+				flat.types[n] = typeCode(p.getReturnType());
+				flat.aux[n] = name(p.getName());
+				flat.paramCount = p.getParams().size();
+				int[] c = new int[p.getParams().size() + p.getDecsAndStatements().size()];
+				int i = 0;
+				for (NameDef param : p.getParams()) {
+					c[i++] = add(param);
+				}
+				for (ASTNode decOrStatement : p.getDecsAndStatements()) {
+					c[i++] = add(decOrStatement);
+				}
+				setChildren(n, c);
+			} else if (node instanceof NameDef d) {
+				flat.types[n] = typeCode(d.getType());
+				flat.aux[n] = name(d.getName());
+				setChildren(n, d instanceof NameDefWithDim ? new int[]{add(d.getDim())} : new int[0]);
+			} else if (node instanceof VarDeclaration d) {
+				flat.aux[n] = token(d.getOp());
+				setChildren(n, new int[]{add(d.getNameDef()), add(d.getExpr())});
+			} else if (node instanceof Dimension d) {
+				setChildren(n, new int[]{add(d.getWidth()), add(d.getHeight())});
+			} else if (node instanceof PixelSelector s) {
+				setChildren(n, new int[]{add(s.getX()), add(s.getY())});
+			} else if (node instanceof AssignmentStatement s) {
+				flat.aux[n] = name(s.getName());
+				link(s, s.getTargetDec());
+				setChildren(n, new int[]{add(s.getSelector()), add(s.getExpr())});
+			} else if (node instanceof ReadStatement s) {
+				flat.aux[n] = name(s.getName());
+				flat.types[n] = typeCode(s.getTargetType());
+				link(s, s.getTargetDec());
+				setChildren(n, new int[]{add(s.getSelector()), add(s.getSource())});
+			} else if (node instanceof WriteStatement s) {
+				setChildren(n, new int[]{add(s.getSource()), add(s.getDest())});
+			} else if (node instanceof ReturnStatement s) {
+				setChildren(n, new int[]{add(s.getExpr())});
+			} else if (node instanceof BinaryExpr e) {
+				flat.aux[n] = token(e.getOp());
+				setChildren(n, new int[]{add(e.getLeft()), add(e.getRight())});
+			} else if (node instanceof UnaryExpr e) {
+				flat.aux[n] = token(e.getOp());
+				setChildren(n, new int[]{add(e.getExpr())});
+			} else if (node instanceof UnaryExprPostfix e) {
+				setChildren(n, new int[]{add(e.getExpr()), add(e.getSelector())});
+			} else if (node instanceof ConditionalExpr e) {
+				setChildren(n, new int[]{add(e.getCondition()), add(e.getTrueCase()), add(e.getFalseCase())});
+			} else if (node instanceof ColorExpr e) {
+				setChildren(n, new int[]{add(e.getRed()), add(e.getGreen()), add(e.getBlue())});
+			} else if (node instanceof IdentExpr e) {
+				flat.slots[n] = e.getSlot();
+				link(e, e.getDec());
+			}
+			return n;
+		}
+
+		int newNode(ASTNode node) {
+			if (flat.nodeCount == flat.kinds.length) {
+				int size = flat.nodeCount * 2;
+				flat.kinds = Arrays.copyOf(flat.kinds, size);
+				flat.firstTokens = Arrays.copyOf(flat.firstTokens, size);
+				flat.aux = Arrays.copyOf(flat.aux, size);
+				flat.childStarts = Arrays.copyOf(flat.childStarts, size);
+				flat.childCounts = Arrays.copyOf(flat.childCounts, size);
+				flat.types = Arrays.copyOf(flat.types, size);
+				flat.coerceTos = Arrays.copyOf(flat.coerceTos, size);
+				flat.decs = Arrays.copyOf(flat.decs, size);
+				flat.initialized = Arrays.copyOf(flat.initialized, size);
+				flat.slots = Arrays.copyOf(flat.slots, size);
+			}
+			int n = flat.nodeCount++;
+			flat.kinds[n] = (byte) kindOf(node).ordinal();
+			flat.firstTokens[n] = token(node.getFirstToken());
+			flat.aux[n] = NONE;
+			flat.decs[n] = NONE;
+			flat.slots[n] = NONE;
+			return n;
+		}
+
+		void setChildren(int n, int[] c) {
+			if (flat.childrenSize + c.length > flat.children.length) {
+				flat.children = Arrays.copyOf(flat.children, Math.max(flat.children.length * 2, flat.childrenSize + c.length));
+			}
+			flat.childStarts[n] = flat.childrenSize;
+			flat.childCounts[n] = c.length;
+			System.arraycopy(c, 0, flat.children, flat.childrenSize, c.length);
+			flat.childrenSize += c.length;
+		}
+
+		void link(ASTNode node, Declaration dec) {
+			if (dec != null) {
+				linked.add(node);
+			}
+		}
+
+		int name(String name) {
+			if (name == null) {
+				return NONE;
+			}
+			return nameIndex.computeIfAbsent(name, s -> {
+				if (flat.nameCount == flat.names.length) {
+					flat.names = Arrays.copyOf(flat.names, flat.nameCount * 2);
+				}
+				flat.names[flat.nameCount] = s;
+				return flat.nameCount++;
+			});
+		}
+
+		int token(IToken token) {
+			if (token == null) {
+				return NONE;
+			}
+			Integer index = tokenIndex.get(token);
+			if (index != null) {
+				return index;
+			}
+			if (flat.tokenCount == flat.tokenKinds.length) {
+				int size = flat.tokenCount * 2;
+				flat.tokenKinds = Arrays.copyOf(flat.tokenKinds, size);
+				flat.tokenOffsets = Arrays.copyOf(flat.tokenOffsets, size);
+				flat.tokenLengths = Arrays.copyOf(flat.tokenLengths, size);
+				flat.tokenValues = Arrays.copyOf(flat.tokenValues, size);
+				flat.tokenTexts = Arrays.copyOf(flat.tokenTexts, size);
+			}
+			int t = flat.tokenCount++;
+			int offset = ((Token) token).getOffset();
+			String text = token.getText();
+			flat.tokenKinds[t] = (byte) token.getKind().ordinal();
+			flat.tokenOffsets[t] = offset;
+			flat.tokenLengths[t] = text == null ? -1 : text.length();
+			flat.tokenTexts[t] = text == null || flat.source.startsWith(text, offset) ? null : text;
+			flat.tokenValues[t] = switch (token.getKind()) {
+				case INT_LIT -> token.getIntValue();
+				case FLOAT_LIT -> Float.floatToRawIntBits(token.getFloatValue());
+				case BOOLEAN_LIT -> token.getBooleanValue() ? 1 : 0;
+				default -> 0;
+			};
+			tokenIndex.put(token, t);
+			return t;
+		}
+
+		static NodeKind kindOf(ASTNode node) {
+			if (node instanceof Program) return NodeKind.PROGRAM;
+			if (node instanceof NameDefWithDim) return NodeKind.NAME_DEF_WITH_DIM;
+			if (node instanceof NameDef) return NodeKind.NAME_DEF;
+			if (node instanceof VarDeclaration) return NodeKind.VAR_DECLARATION;
+			if (node instanceof Dimension) return NodeKind.DIMENSION;
+			if (node instanceof PixelSelector) return NodeKind.PIXEL_SELECTOR;
+			if (node instanceof AssignmentStatement) return NodeKind.ASSIGNMENT_STATEMENT;
+			if (node instanceof ReadStatement) return NodeKind.READ_STATEMENT;
+			if (node instanceof WriteStatement) return NodeKind.WRITE_STATEMENT;
+			if (node instanceof ReturnStatement) return NodeKind.RETURN_STATEMENT;
+			if (node instanceof BinaryExpr) return NodeKind.BINARY_EXPR;
+			if (node instanceof UnaryExpr) return NodeKind.UNARY_EXPR;
+			if (node instanceof UnaryExprPostfix) return NodeKind.UNARY_EXPR_POSTFIX;
+			if (node instanceof ConditionalExpr) return NodeKind.CONDITIONAL_EXPR;
+			if (node instanceof ColorExpr) return NodeKind.COLOR_EXPR;
+			if (node instanceof BooleanLitExpr) return NodeKind.BOOLEAN_LIT_EXPR;
+			if (node instanceof StringLitExpr) return NodeKind.STRING_LIT_EXPR;
+			if (node instanceof IntLitExpr) return NodeKind.INT_LIT_EXPR;
+			if (node instanceof FloatLitExpr) return NodeKind.FLOAT_LIT_EXPR;
+			if (node instanceof IdentExpr) return NodeKind.IDENT_EXPR;
+			if (node instanceof ColorConstExpr) return NodeKind.COLOR_CONST_EXPR;
+			if (node instanceof ConsoleExpr) return NodeKind.CONSOLE_EXPR;
+			throw new IllegalArgumentException("Unexpected node " + node.getClass().getSimpleName());
+		}
+	}
+
+	private static final class Unflattener {
+		final FlatAst flat;
+		final ASTNode[] nodes;
+		final Token[] tokens;
+
+		Unflattener(FlatAst flat) {
+			this.flat = flat;
+			nodes = new ASTNode[flat.nodeCount];
+			tokens = new Token[flat.tokenCount];
+		}
+
+		Program toProgram() {
+			Program program = (Program) node(0);
+			for (int n = 0; n < flat.nodeCount; n++) {
+				if (flat.decs[n] != NONE && nodes[n] != null) {
+					Declaration dec = (Declaration) node(flat.decs[n]);
+					if (nodes[n] instanceof IdentExpr e) {
+						e.setDec(dec);
+					} else if (nodes[n] instanceof AssignmentStatement s) {
+						s.setTargetDec(dec);
+					} else {
+						((ReadStatement) nodes[n]).setTargetDec(dec);
+					}
+				}
+			}
+			return program;
+		}
+
+		IToken token(int t) {
+			if (t == NONE) {
+				return null;
+			}
+			if (tokens[t] == null) {
+				tokens[t] = flat.getToken(t);
+			}
+			return tokens[t];
+		}
+
+		ASTNode child(int n, int i) {
+			int c = flat.getChild(n, i);
+			return c == NONE ? null : node(c);
+		}
+
+		Expr expr(int n, int i) {
+			return (Expr) child(n, i);
+		}
+
+		String typeName(int n) {
+			return TYPE_NAMES[flat.types[n] - 1];
+		}
+
+		ASTNode node(int n) {
+			if (nodes[n] != null) {
+				return nodes[n];
+			}
+			IToken first = token(flat.firstTokens[n]);
+			ASTNode node = switch (flat.getKind(n)) {
+				case PROGRAM -> {
+					List<NameDef> params = new ArrayList<>(flat.paramCount);
+					List<ASTNode> decsAndStatements = new ArrayList<>(flat.childCounts[n] - flat.paramCount);
+					for (int i = 0; i < flat.childCounts[n]; i++) {
+						if (i < flat.paramCount) {
+							params.add((NameDef) child(n, i));
+						} else {
+							decsAndStatements.add(child(n, i));
+						}
+					}
+					yield new Program(first, flat.getType(n), flat.getName(n), params, decsAndStatements);
+				}
+				case NAME_DEF -> new NameDef(first, typeName(n), flat.getName(n));
+				case NAME_DEF_WITH_DIM -> new NameDefWithDim(first, typeName(n), flat.getName(n), (Dimension) child(n, 0));
+				case VAR_DECLARATION -> new VarDeclaration(first, (NameDef) child(n, 0), token(flat.aux[n]), expr(n, 1));
+				case DIMENSION -> new Dimension(first, expr(n, 0), expr(n, 1));
+				case PIXEL_SELECTOR -> new PixelSelector(first, expr(n, 0), expr(n, 1));
+				case ASSIGNMENT_STATEMENT -> new AssignmentStatement(first, flat.getName(n), (PixelSelector) child(n, 0), expr(n, 1));
+				case READ_STATEMENT -> {
+					ReadStatement s = new ReadStatement(first, flat.getName(n), (PixelSelector) child(n, 0), expr(n, 1));
+					s.setTargetType(flat.getType(n));
+					yield s;
+				}
+				case WRITE_STATEMENT -> new WriteStatement(first, expr(n, 0), expr(n, 1));
+				case RETURN_STATEMENT -> new ReturnStatement(first, expr(n, 0));
+				case BINARY_EXPR -> new BinaryExpr(first, expr(n, 0), token(flat.aux[n]), expr(n, 1));
+				case UNARY_EXPR -> new UnaryExpr(first, token(flat.aux[n]), expr(n, 0));
+				case UNARY_EXPR_POSTFIX -> new UnaryExprPostfix(first, expr(n, 0), (PixelSelector) child(n, 1));
+				case CONDITIONAL_EXPR -> new ConditionalExpr(first, expr(n, 0), expr(n, 1), expr(n, 2));
+				case COLOR_EXPR -> new ColorExpr(first, expr(n, 0), expr(n, 1), expr(n, 2));
+				case BOOLEAN_LIT_EXPR -> new BooleanLitExpr(first);
+				case STRING_LIT_EXPR -> new StringLitExpr(first);
+				case INT_LIT_EXPR -> new IntLitExpr(first);
+				case FLOAT_LIT_EXPR -> new FloatLitExpr(first);
+				case IDENT_EXPR -> new IdentExpr(first);
+				case COLOR_CONST_EXPR -> new ColorConstExpr(first);
+				case CONSOLE_EXPR -> new ConsoleExpr(first);
+			};
+			if (node instanceof Expr e) {
+				e.setType(flat.getType(n));
+				e.setCoerceTo(flat.getCoerceTo(n));
+			}
+			if (node instanceof Declaration d) {
+				d.setInitialized(flat.initialized[n]);
+				d.setSlot(flat.slots[n]);
+			} else if (node instanceof IdentExpr e) {
+				e.setSlot(flat.slots[n]);
+			}
+			nodes[n] = node;
+			return node;
+		}
+	}
+}
@@ -5,6 +5,8 @@ import edu.ufl.cise.plc.IToken;
 public class IdentExpr extends Expr {
 	
 	Declaration dec;
+	// Slot of dec in the SymbolTable
+	int slot = -1;
 		
 	public IdentExpr(IToken firstToken) {
 		super(firstToken);
@@ -28,5 +30,13 @@ public class IdentExpr extends Expr {
 		this.dec = dec;
 	}
 
+	public int getSlot() {
+		return slot;
+	}
+
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
 	
 }
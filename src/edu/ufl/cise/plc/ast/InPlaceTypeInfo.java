@@ -0,0 +1,77 @@
+package edu.ufl.cise.plc.ast;
+
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// Reads and writes the type checker's attributes in the AST nodes, through their getters and setters
+public final class InPlaceTypeInfo implements TypeInfo {
+
+	public static final InPlaceTypeInfo INSTANCE = new InPlaceTypeInfo();
+
+	private InPlaceTypeInfo() {
+	}
+
+	@Override
+	public Type getType(Expr expr) {
+		return expr.getType();
+	}
+
+	@Override
+	public void setType(Expr expr, Type type) {
+		expr.setType(type);
+	}
+
+	@Override
+	public Type getCoerceTo(Expr expr) {
+		return expr.getCoerceTo();
+	}
+
+	@Override
+	public void setCoerceTo(Expr expr, Type coerceTo) {
+		expr.setCoerceTo(coerceTo);
+	}
+
+	@Override
+	public Declaration getDec(ASTNode node) {
+		if (node instanceof IdentExpr e) {
+			return e.getDec();
+		} else if (node instanceof AssignmentStatement s) {
+			return s.getTargetDec();
+		}
+		return ((ReadStatement) node).getTargetDec();
+	}
+
+	@Override
+	public void setDec(ASTNode node, Declaration dec) {
+		if (node instanceof IdentExpr e) {
+			e.setDec(dec);
+		} else if (node instanceof AssignmentStatement s) {
+			s.setTargetDec(dec);
+		} else {
+			((ReadStatement) node).setTargetDec(dec);
+		}
+	}
+
+	@Override
+	public int getSlot(ASTNode node) {
+		return node instanceof IdentExpr e ? e.getSlot() : ((Declaration) node).getSlot();
+	}
+
+	@Override
+	public void setSlot(ASTNode node, int slot) {
+		if (node instanceof IdentExpr e) {
+			e.setSlot(slot);
+		} else {
+			((Declaration) node).setSlot(slot);
+		}
+	}
+
+	@Override
+	public boolean isInitialized(Declaration dec) {
+		return dec.isInitialized();
+	}
+
+	@Override
+	public void setInitialized(Declaration dec, boolean initialized) {
+		dec.setInitialized(initialized);
+	}
+}
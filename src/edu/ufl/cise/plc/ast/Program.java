@@ -1,5 +1,6 @@
 package edu.ufl.cise.plc.ast;
 
+import java.util.ArrayDeque;
 import java.util.List;
 
 import edu.ufl.cise.plc.IToken;
@@ -11,6 +12,7 @@ public class Program extends ASTNode {
 	final String name; 
 	final List<NameDef> params;
 	final List<ASTNode> decsAndStatements;
+	int nodeCount;
 
 	public Program(IToken firstToken, Type returnType, String name, List<NameDef> params,
 			List<ASTNode> decsAndStatements) {
@@ -37,6 +39,69 @@ public class Program extends ASTNode {
 		return decsAndStatements;
 	}
 
+	// Number of nodes in this program. The first call numbers the nodes from 0 in preorder, so that
+	// getId() of every node in the tree is an index into arrays of this size, such as the side
+	// tables of a SideTableTypeInfo. Synchronized so that threads sharing a parsed Program see the
+	// numbering once this has returned.
+	public synchronized int getNodeCount() {
+		if (nodeCount == 0) {
+			ArrayDeque<ASTNode> stack = new ArrayDeque<>();
+			stack.push(this);
+			while (!stack.isEmpty()) {
+				ASTNode node = stack.pop();
+				node.id = nodeCount++;
+				ASTNode[] children = children(node);
+				for (int i = children.length - 1; i >= 0; i--) {
+					if (children[i] != null) {
+						stack.push(children[i]);
+					}
+				}
+			}
+		}
+		return nodeCount;
+	}
+
+	private static ASTNode[] children(ASTNode node) {
+		if (node instanceof Program p) {
+			ASTNode[] c = new ASTNode[p.params.size() + p.decsAndStatements.size()];
+			int i = 0;
+			for (NameDef param : p.params) {
+				c[i++] = param;
+			}
+			for (ASTNode decOrStatement : p.decsAndStatements) {
+				c[i++] = decOrStatement;
+			}
+			return c;
+		} else if (node instanceof NameDefWithDim d) {
+			return new ASTNode[]{d.getDim()};
+		} else if (node instanceof VarDeclaration d) {
+			return new ASTNode[]{d.getNameDef(), d.getExpr()};
+		} else if (node instanceof Dimension d) {
+			return new ASTNode[]{d.getWidth(), d.getHeight()};
+		} else if (node instanceof PixelSelector s) {
+			return new ASTNode[]{s.getX(), s.getY()};
+		} else if (node instanceof AssignmentStatement s) {
+			return new ASTNode[]{s.getSelector(), s.getExpr()};
+		} else if (node instanceof ReadStatement s) {
+			return new ASTNode[]{s.getSelector(), s.getSource()};
+		} else if (node instanceof WriteStatement s) {
+			return new ASTNode[]{s.getSource(), s.getDest()};
+		} else if (node instanceof ReturnStatement s) {
+			return new ASTNode[]{s.getExpr()};
+		} else if (node instanceof BinaryExpr e) {
+			return new ASTNode[]{e.getLeft(), e.getRight()};
+		} else if (node instanceof UnaryExpr e) {
+			return new ASTNode[]{e.getExpr()};
+		} else if (node instanceof UnaryExprPostfix e) {
+			return new ASTNode[]{e.getExpr(), e.getSelector()};
+		} else if (node instanceof ConditionalExpr e) {
+			return new ASTNode[]{e.getCondition(), e.getTrueCase(), e.getFalseCase()};
+		} else if (node instanceof ColorExpr e) {
+			return new ASTNode[]{e.getRed(), e.getGreen(), e.getBlue()};
+		}
+		return new ASTNode[0];
+	}
+
 	@Override
 	public Object visit(ASTVisitor v, Object arg) throws Exception {
 		return v.visitProgram(this, arg);
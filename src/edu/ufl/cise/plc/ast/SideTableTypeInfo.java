@@ -0,0 +1,122 @@
+package edu.ufl.cise.plc.ast;
+
+import java.util.Arrays;
+
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// Type checker attributes of one Program, kept in arrays indexed by node id instead of in the nodes.
+// Checking a Program with a TypeCheckVisitor that uses a SideTableTypeInfo does not modify the
+// Program, so one parsed Program can be checked by several threads, each with its own table.
+//
+// Once filled, call freeze(): the setters then throw IllegalStateException, and the table can be
+// shared by the threads generating code from it.
+//
+// Declarations made by the type checker itself, such as those of the variables of a pixel selector,
+// are not part of the Program and have no id. Their slot and initialized flag are kept in the
+// declaration, which only the checker that made it can reach.
+public final class SideTableTypeInfo implements TypeInfo {
+
+	private static final Type[] TYPES = Type.values();
+
+	private final byte[] types;
+	private final byte[] coerceTos;
+	private final Declaration[] decs;
+	private final int[] slots;
+	private final boolean[] initialized;
+	private boolean frozen;
+
+	public SideTableTypeInfo(Program program) {
+		int nodeCount = program.getNodeCount();
+		types = new byte[nodeCount];
+		coerceTos = new byte[nodeCount];
+		decs = new Declaration[nodeCount];
+		slots = new int[nodeCount];
+		Arrays.fill(slots, -1);
+		initialized = new boolean[nodeCount];
+	}
+
+	public void freeze() {
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkWritable() {
+		if (frozen) {
+			throw new IllegalStateException("Type information is frozen");
+		}
+	}
+
+	private static Type type(byte code) {
+		return code == 0 ? null : TYPES[code - 1];
+	}
+
+	private static byte code(Type type) {
+		return (byte) (type == null ? 0 : type.ordinal() + 1);
+	}
+
+	@Override
+	public Type getType(Expr expr) {
+		return type(types[expr.id]);
+	}
+
+	@Override
+	public void setType(Expr expr, Type type) {
+		checkWritable();
+		types[expr.id] = code(type);
+	}
+
+	@Override
+	public Type getCoerceTo(Expr expr) {
+		return type(coerceTos[expr.id]);
+	}
+
+	@Override
+	public void setCoerceTo(Expr expr, Type coerceTo) {
+		checkWritable();
+		coerceTos[expr.id] = code(coerceTo);
+	}
+
+	@Override
+	public Declaration getDec(ASTNode node) {
+		return decs[node.id];
+	}
+
+	@Override
+	public void setDec(ASTNode node, Declaration dec) {
+		checkWritable();
+		decs[node.id] = dec;
+	}
+
+	@Override
+	public int getSlot(ASTNode node) {
+		return node.id < 0 ? ((Declaration) node).getSlot() : slots[node.id];
+	}
+
+	@Override
+	public void setSlot(ASTNode node, int slot) {
+		checkWritable();
+		if (node.id < 0) {
+			((Declaration) node).setSlot(slot);
+		} else {
+			slots[node.id] = slot;
+		}
+	}
+
+	@Override
+	public boolean isInitialized(Declaration dec) {
+		return dec.id < 0 ? dec.isInitialized() : initialized[dec.id];
+	}
+
+	@Override
+	public void setInitialized(Declaration dec, boolean initialized) {
+		checkWritable();
+		if (dec.id < 0) {
+			dec.setInitialized(initialized);
+		} else {
+			this.initialized[dec.id] = initialized;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package edu.ufl.cise.plc.ast;
+
+import edu.ufl.cise.plc.ast.Types.Type;
+
+// The attributes the type checker computes for the nodes of a Program and code generation reads.
+// InPlaceTypeInfo keeps them in the nodes themselves; SideTableTypeInfo keeps them in arrays
+// indexed by node id and leaves the Program untouched, so several threads can check and generate
+// code for one parsed Program.
+//
+// getDec and setDec are the declaration an IdentExpr refers to, or the target declaration of an
+// AssignmentStatement or ReadStatement. getSlot and setSlot are the SymbolTable slot of an
+// IdentExpr's declaration, or of a Declaration.
+public interface TypeInfo {
+
+	Type getType(Expr expr);
+
+	void setType(Expr expr, Type type);
+
+	Type getCoerceTo(Expr expr);
+
+	void setCoerceTo(Expr expr, Type coerceTo);
+
+	Declaration getDec(ASTNode node);
+
+	void setDec(ASTNode node, Declaration dec);
+
+	int getSlot(ASTNode node);
+
+	void setSlot(ASTNode node, int slot);
+
+	boolean isInitialized(Declaration dec);
+
+	void setInitialized(Declaration dec, boolean initialized);
+}
@@ -0,0 +1,50 @@
+package edu.ufl.cise.plc.bench;
+
+import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.ast.AstSerializer;
+import edu.ufl.cise.plc.ast.Program;
+
+// Time to get a type checked Program ready for code generation, by running the lexer, parser and
+// type checker on the source, and by reading a serialized AST.
+// Usage: AstSerializationBenchmark [statements per program] [programs]
+public class AstSerializationBenchmark {
+
+    static Program frontEnd(String input) throws Exception {
+        Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+        program.visit(CompilerComponentFactory.getTypeChecker(), null);
+        return program;
+    }
+
+    static long timeFrontEnd(String input, int programs) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < programs; i++) {
+            frontEnd(input);
+        }
+        return (System.nanoTime() - start) / programs;
+    }
+
+    static long timeDeserialize(byte[] bytes, int programs) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < programs; i++) {
+            AstSerializer.deserialize(bytes);
+        }
+        return (System.nanoTime() - start) / programs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int programs = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String input = BenchmarkPrograms.generate(statements);
+        byte[] bytes = AstSerializer.serialize(frontEnd(input), input);
+
+        // warm up both paths before measuring
+        timeFrontEnd(input, programs);
+        timeDeserialize(bytes, programs);
+
+        long frontEnd = timeFrontEnd(input, programs);
+        long deserialize = timeDeserialize(bytes, programs);
+        System.out.printf("%d statements, %,d characters, %,d bytes serialized%n", statements, input.length(), bytes.length);
+        System.out.printf("lex, parse and type check: %,d ns per program%n", frontEnd);
+        System.out.printf("deserialize:               %,d ns per program%n", deserialize);
+    }
+}
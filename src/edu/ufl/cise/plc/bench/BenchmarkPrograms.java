@@ -0,0 +1,34 @@
+package edu.ufl.cise.plc.bench;
+
+// Generates large, valid PLCLang programs for the benchmarks in this package.
+public class BenchmarkPrograms {
+
+    // Returns a program named bench, taking one int parameter n, with about the given number of
+    // declarations and statements. Every statement type checks and code generates.
+    public static String generate(int statements) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("int bench(int n)\n");
+        sb.append("int v0 = n + 1;\n");
+        int ints = 1;
+        for (int i = 1; i < statements; i++) {
+            int prev = ints - 1;
+            switch (i % 6) {
+                case 0 -> sb.append("# running total, recomputed from the previous value\n")
+                        .append("int v").append(ints++).append(" = v").append(prev).append(" * 2 + (v").append(prev)
+                        .append(" - 3) % 7;\n");
+                case 1 -> sb.append("float f").append(i).append(" = 2.5 * ").append(i % 10).append(" + v").append(prev)
+                        .append(";\n");
+                case 2 -> sb.append("color c").append(i).append(" = <<").append(i % 256).append(", v").append(prev)
+                        .append(" % 256, 3>>;\n");
+                case 3 -> sb.append("boolean b").append(i).append(" = v").append(prev).append(" > 3 & v").append(prev)
+                        .append(" < 100000;\n");
+                case 4 -> sb.append("int v").append(ints++).append(" = if (v").append(prev).append(" > 50) v").append(prev)
+                        .append(" / 2 else v").append(prev).append(" + ").append(i).append(" fi;\n");
+                default -> sb.append("string s").append(i).append(" = \"images/generated/frame").append(i)
+                        .append(".png\";\n");
+            }
+        }
+        sb.append("^ v").append(ints - 1).append(";\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,174 @@
+package edu.ufl.cise.plc.bench;
+
+import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.ast.*;
+
+// Compares the heap retained by a type checked AST with that of its FlatAst, and the time to walk
+// each, visiting every node and summing the values of the int literals.
+// Usage: FlatAstBenchmark [statements]
+public class FlatAstBenchmark {
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // keep the smallest reading, as the collector may not be finished after one call
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // Walks the object tree with an ASTVisitor
+    static final class Walker implements ASTVisitor {
+        long nodes;
+        long sum;
+
+        Object visit(ASTNode node) throws Exception {
+            return node == null ? null : node.visit(this, null);
+        }
+
+        public Object visitBooleanLitExpr(BooleanLitExpr e, Object arg) { nodes++; return null; }
+        public Object visitStringLitExpr(StringLitExpr e, Object arg) { nodes++; return null; }
+        public Object visitIntLitExpr(IntLitExpr e, Object arg) { nodes++; sum += e.getValue(); return null; }
+        public Object visitFloatLitExpr(FloatLitExpr e, Object arg) { nodes++; return null; }
+        public Object visitColorConstExpr(ColorConstExpr e, Object arg) { nodes++; return null; }
+        public Object visitConsoleExpr(ConsoleExpr e, Object arg) { nodes++; return null; }
+        public Object visitIdentExpr(IdentExpr e, Object arg) { nodes++; return null; }
+
+        public Object visitColorExpr(ColorExpr e, Object arg) throws Exception {
+            nodes++; visit(e.getRed()); visit(e.getGreen()); return visit(e.getBlue());
+        }
+
+        public Object visitUnaryExpr(UnaryExpr e, Object arg) throws Exception {
+            nodes++; return visit(e.getExpr());
+        }
+
+        public Object visitBinaryExpr(BinaryExpr e, Object arg) throws Exception {
+            nodes++; visit(e.getLeft()); return visit(e.getRight());
+        }
+
+        public Object visitConditionalExpr(ConditionalExpr e, Object arg) throws Exception {
+            nodes++; visit(e.getCondition()); visit(e.getTrueCase()); return visit(e.getFalseCase());
+        }
+
+        public Object visitDimension(Dimension d, Object arg) throws Exception {
+            nodes++; visit(d.getWidth()); return visit(d.getHeight());
+        }
+
+        public Object visitPixelSelector(PixelSelector s, Object arg) throws Exception {
+            nodes++; visit(s.getX()); return visit(s.getY());
+        }
+
+        public Object visitAssignmentStatement(AssignmentStatement s, Object arg) throws Exception {
+            nodes++; visit(s.getSelector()); return visit(s.getExpr());
+        }
+
+        public Object visitWriteStatement(WriteStatement s, Object arg) throws Exception {
+            nodes++; visit(s.getSource()); return visit(s.getDest());
+        }
+
+        public Object visitReadStatement(ReadStatement s, Object arg) throws Exception {
+            nodes++; visit(s.getSelector()); return visit(s.getSource());
+        }
+
+        public Object visitProgram(Program p, Object arg) throws Exception {
+            nodes++;
+            for (NameDef param : p.getParams()) visit(param);
+            for (ASTNode node : p.getDecsAndStatements()) visit(node);
+            return null;
+        }
+
+        public Object visitNameDef(NameDef d, Object arg) { nodes++; return null; }
+
+        public Object visitNameDefWithDim(NameDefWithDim d, Object arg) throws Exception {
+            nodes++; return visit(d.getDim());
+        }
+
+        public Object visitReturnStatement(ReturnStatement s, Object arg) throws Exception {
+            nodes++; return visit(s.getExpr());
+        }
+
+        public Object visitVarDeclaration(VarDeclaration d, Object arg) throws Exception {
+            nodes++; visit(d.getNameDef()); return visit(d.getExpr());
+        }
+
+        public Object visitUnaryExprPostfix(UnaryExprPostfix e, Object arg) throws Exception {
+            nodes++; visit(e.getExpr()); return visit(e.getSelector());
+        }
+    }
+
+    // Walks the FlatAst from the root through the child indices
+    static long walk(FlatAst flat, int node, long[] nodes) {
+        if (node == FlatAst.NONE) {
+            return 0;
+        }
+        nodes[0]++;
+        long sum = flat.getKind(node) == FlatAst.NodeKind.INT_LIT_EXPR ? flat.getIntValue(node) : 0;
+        for (int i = 0; i < flat.getChildCount(node); i++) {
+            sum += walk(flat, flat.getChild(node, i), nodes);
+        }
+        return sum;
+    }
+
+    // Visits every node in index order, which needs no child links at all
+    static long scan(FlatAst flat) {
+        long sum = 0;
+        for (int n = 0; n < flat.getNodeCount(); n++) {
+            if (flat.getKind(n) == FlatAst.NodeKind.INT_LIT_EXPR) {
+                sum += flat.getIntValue(n);
+            }
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = 20;
+        String input = BenchmarkPrograms.generate(statements);
+
+        long base = usedHeap();
+        Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+        program.visit(CompilerComponentFactory.getTypeChecker(), null);
+        long treeBytes = usedHeap() - base;
+
+        FlatAst flat = FlatAst.flatten(program, input);
+        Walker walker = new Walker();
+        long visitorNanos = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            walker = new Walker();
+            long start = System.nanoTime();
+            walker.visit(program);
+            visitorNanos = Math.min(visitorNanos, System.nanoTime() - start);
+        }
+        program = null;
+        long flatBytes = usedHeap() - base;
+
+        long walkNanos = Long.MAX_VALUE;
+        long scanNanos = Long.MAX_VALUE;
+        long[] nodes = new long[1];
+        long walkSum = 0;
+        long scanSum = 0;
+        for (int i = 0; i < rounds; i++) {
+            nodes[0] = 0;
+            long start = System.nanoTime();
+            walkSum = walk(flat, 0, nodes);
+            walkNanos = Math.min(walkNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            scanSum = scan(flat);
+            scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+        }
+        if (walkSum != walker.sum || scanSum != walker.sum || nodes[0] != walker.nodes) {
+            throw new IllegalStateException("traversals disagree");
+        }
+
+        long n = flat.getNodeCount();
+        System.out.printf("%d statements, %,d nodes, %,d tokens, %,d characters of source (not counted)%n",
+                statements, n, flat.getTokenCount(), input.length());
+        System.out.printf("AST objects: %,d bytes, %.1f bytes/node%n", treeBytes, (double) treeBytes / n);
+        System.out.printf("FlatAst:     %,d bytes, %.1f bytes/node%n", flatBytes, (double) flatBytes / n);
+        System.out.printf("ASTVisitor walk:        %.2f ms%n", visitorNanos / 1e6);
+        System.out.printf("FlatAst walk by index:  %.2f ms%n", walkNanos / 1e6);
+        System.out.printf("FlatAst scan in order:  %.2f ms%n", scanNanos / 1e6);
+    }
+}
@@ -0,0 +1,45 @@
+package edu.ufl.cise.plc.bench;
+
+import java.lang.management.ManagementFactory;
+
+import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.IParser;
+
+// Compares bytes allocated per parse when a new Lexer and Parser are created for each program
+// with the thread-local instances that are reset for each program.
+// Usage: FrontEndAllocationBenchmark [statements per program] [programs]
+public class FrontEndAllocationBenchmark {
+
+    static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static long run(String input, int programs, boolean reuse) throws Exception {
+        long before = allocatedBytes();
+        for (int i = 0; i < programs; i++) {
+            IParser parser = reuse ? CompilerComponentFactory.getReusableParser(input)
+                    : CompilerComponentFactory.getParser(input);
+            parser.parse();
+        }
+        return (allocatedBytes() - before) / programs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int programs = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        String input = BenchmarkPrograms.generate(statements);
+
+        // warm up both paths before measuring
+        run(input, programs, false);
+        run(input, programs, true);
+
+        long fresh = run(input, programs, false);
+        long reused = run(input, programs, true);
+        System.out.printf("%d statements, %d characters%n", statements, input.length());
+        System.out.printf("new Lexer/Parser per compile: %,d bytes allocated per compile%n", fresh);
+        System.out.printf("reusable Lexer/Parser:        %,d bytes allocated per compile%n", reused);
+    }
+}
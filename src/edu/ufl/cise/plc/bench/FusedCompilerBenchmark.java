@@ -0,0 +1,57 @@
+package edu.ufl.cise.plc.bench;
+
+import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.ast.Program;
+
+// End to end time from source to generated Java, type checking and generating code in two passes
+// over the AST and in one fused pass.
+// Usage: FusedCompilerBenchmark [statements per program] [programs]
+public class FusedCompilerBenchmark {
+
+    static String twoPasses(String input) throws Exception {
+        Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+        program.visit(CompilerComponentFactory.getTypeChecker(), null);
+        return (String) program.visit(CompilerComponentFactory.getCodeGenerator(""), null);
+    }
+
+    static String fused(String input) throws Exception {
+        Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+        return CompilerComponentFactory.getFusedCompiler("").compile(program);
+    }
+
+    static long time(String input, int programs, boolean fused) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < programs; i++) {
+            if (fused) {
+                fused(input);
+            } else {
+                twoPasses(input);
+            }
+        }
+        return (System.nanoTime() - start) / programs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int programs = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String input = BenchmarkPrograms.generate(statements);
+        if (!twoPasses(input).equals(fused(input))) {
+            throw new IllegalStateException("fused pass generated different code");
+        }
+
+        // warm up both paths before measuring
+        time(input, programs, false);
+        time(input, programs, true);
+
+        // alternate the two paths and keep the best round of each, as the timings are noisy
+        long twoPasses = Long.MAX_VALUE;
+        long fused = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            twoPasses = Math.min(twoPasses, time(input, programs, false));
+            fused = Math.min(fused, time(input, programs, true));
+        }
+        System.out.printf("%d statements, %,d characters%n", statements, input.length());
+        System.out.printf("two passes: %,d ns per program%n", twoPasses);
+        System.out.printf("fused:      %,d ns per program%n", fused);
+    }
+}
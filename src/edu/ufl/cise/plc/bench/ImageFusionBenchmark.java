@@ -0,0 +1,27 @@
+package edu.ufl.cise.plc.bench;
+
+import java.util.EnumSet;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.bench.OptionBenchmark.Version;
+
+// Time to compute an expression of 4K images with several image operations, with the generated code
+// computing an intermediate image per operation and computing the result in one loop.
+// Usage: ImageFusionBenchmark [width] [height] [rounds]
+public class ImageFusionBenchmark {
+
+    static final String PROGRAM = """
+            image mix(int w, int h)
+            image[w, h] a;
+            a[x, y] = <<x, y, x + y>>;
+            image[w, h] b;
+            b[x, y] = <<y, x, 255 - x>>;
+            ^ (a + b) * 2 - getRed(b) % 7 + a / 3;
+            """;
+
+    public static void main(String[] args) throws Exception {
+        OptionBenchmark.compare(args, PROGRAM, new Object[] {}, "fusing the image operations",
+                new Version("image per operation", EnumSet.noneOf(Option.class)),
+                new Version("one loop", EnumSet.of(Option.FUSE_IMAGES)));
+    }
+}
@@ -0,0 +1,110 @@
+package edu.ufl.cise.plc.bench;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicClassLoader;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicCompiler;
+
+// Memory used by a program computing a chain of 4K images, with the generated code allocating a new
+// image per declaration and reusing the buffers of dead image variables. Reports the bytes allocated
+// per run and the peak heap use during a run, after a full collection.
+// Usage: ImageReuseBenchmark [width] [height] [rounds]
+public class ImageReuseBenchmark {
+
+    static final String PROGRAM = """
+            image chain(int w, int h)
+            image[w, h] a;
+            a[x, y] = <<x, y, x + y>>;
+            image[w, h] b;
+            b[x, y] = <<y, x, 255 - x>>;
+            image c = a + b;
+            image d = c - b;
+            image e = d + c;
+            image f = e - a;
+            image g = f + e;
+            image k = g - f;
+            ^ k + g;
+            """;
+
+    static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static byte[] compile(Set<Option> options) throws Exception {
+        Program program = (Program) CompilerComponentFactory.getParser(PROGRAM).parse();
+        program.visit(CompilerComponentFactory.getTypeChecker(), null);
+        String code = (String) program.visit(CompilerComponentFactory.getCodeGenerator("", options), null);
+        return DynamicCompiler.compile(program.getName(), code);
+    }
+
+    static BufferedImage run(byte[] byteCode, Object[] params) throws Exception {
+        return (BufferedImage) DynamicClassLoader.loadClassAndRunMethod(byteCode, "chain", "apply", params);
+    }
+
+    static long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // The sum of the peak uses of the heap pools during a run
+    static long peak(byte[] byteCode, Object[] params) throws Exception {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        run(byteCode, params);
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak - used;
+    }
+
+    static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 2160;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Object[] params = {width, height};
+        byte[] fresh = compile(EnumSet.of(Option.KNOWN_SHAPES));
+        byte[] reused = compile(EnumSet.of(Option.REUSE_IMAGES));
+        if (!Arrays.equals(pixels(run(fresh, params)), pixels(run(reused, params)))) {
+            throw new IllegalStateException("reusing image buffers changed the image");
+        }
+
+        // keep the smallest of each measurement, as collections during a run lower them only by chance
+        long freshAllocated = Long.MAX_VALUE;
+        long reusedAllocated = Long.MAX_VALUE;
+        long freshPeak = Long.MAX_VALUE;
+        long reusedPeak = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = allocated();
+            run(fresh, params);
+            freshAllocated = Math.min(freshAllocated, allocated() - start);
+            start = allocated();
+            run(reused, params);
+            reusedAllocated = Math.min(reusedAllocated, allocated() - start);
+            freshPeak = Math.min(freshPeak, peak(fresh, params));
+            reusedPeak = Math.min(reusedPeak, peak(reused, params));
+        }
+        System.out.printf("%d x %d images, %,d bytes each%n", width, height, (long) width * height * 4);
+        System.out.printf("new images:    %,d bytes allocated, %,d bytes peak heap%n", freshAllocated, freshPeak);
+        System.out.printf("reused images: %,d bytes allocated, %,d bytes peak heap%n", reusedAllocated, reusedPeak);
+    }
+}
@@ -0,0 +1,28 @@
+package edu.ufl.cise.plc.bench;
+
+import java.util.EnumSet;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.bench.OptionBenchmark.Version;
+
+// Time to run pixel assignments over a 4K image whose right hand sides do color arithmetic on the
+// pixels of another image, with the generated code computing the colors as ColorTuples and as
+// separate int components.
+// Usage: IntColorBenchmark [width] [height] [rounds]
+public class IntColorBenchmark {
+
+    static final String PROGRAM = """
+            image mix(int w, int h)
+            image[w, h] a;
+            a[x, y] = <<x, y, x + y>>;
+            image[w, h] b;
+            b[x, y] = (a[x, y] * <<3, 2, 1>> + a[x, y] / <<2, 2, 2>> - <<getBlue(a[x, y]), 0, 0>>) % <<256, 256, 256>>;
+            ^ b;
+            """;
+
+    public static void main(String[] args) throws Exception {
+        OptionBenchmark.compare(args, PROGRAM, new Object[] {}, "int components",
+                new Version("ColorTuple colors", EnumSet.of(Option.LICM)),
+                new Version("int component colors", EnumSet.of(Option.LICM, Option.INT_COLORS)));
+    }
+}
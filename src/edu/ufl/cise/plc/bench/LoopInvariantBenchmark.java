@@ -0,0 +1,27 @@
+package edu.ufl.cise.plc.bench;
+
+import java.util.EnumSet;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.bench.OptionBenchmark.Version;
+
+// Time to run a pixel assignment over a 4K image whose right hand side is mostly the same for every
+// pixel, with the generated code computing those parts for every pixel and once before the loops.
+// Usage: LoopInvariantBenchmark [width] [height] [rounds]
+public class LoopInvariantBenchmark {
+
+    static final String PROGRAM = """
+            image blend(int w, int h, int k)
+            image[w, h] a;
+            a[x, y] = <<x, y, x + y>>;
+            image[w, h] b;
+            b[x, y] = a[x, y] * (RED + <<k * 3, k / 2, k>>) / <<k + 1, k + 2, k + 3>> + <<getWidth a / 16, 0, getHeight a / 16>>;
+            ^ b;
+            """;
+
+    public static void main(String[] args) throws Exception {
+        OptionBenchmark.compare(args, PROGRAM, new Object[] {7}, "moving invariants out of the loops",
+                new Version("invariants per pixel", EnumSet.noneOf(Option.class)),
+                new Version("invariants before loops", EnumSet.of(Option.LICM)));
+    }
+}
@@ -0,0 +1,73 @@
+package edu.ufl.cise.plc.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Set;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicClassLoader;
+import edu.ufl.cise.plc.runtime.javaCompilerClassLoader.DynamicCompiler;
+
+// Time to run a program returning an image, compiled with two sets of code generator options. The
+// program takes the width and height of the images, followed by any other arguments the benchmark
+// gives, and the benchmark takes the arguments [width] [height] [rounds].
+public class OptionBenchmark {
+
+    // The code generator options of one version of the program, and the name it is reported by
+    public record Version(String name, Set<Option> options) {
+    }
+
+    static byte[] compile(String input, Set<Option> options) throws Exception {
+        Program program = (Program) CompilerComponentFactory.getParser(input).parse();
+        program.visit(CompilerComponentFactory.getTypeChecker(), null);
+        String code = (String) program.visit(CompilerComponentFactory.getCodeGenerator("", options), null);
+        return DynamicCompiler.compile(program.getName(), code);
+    }
+
+    static BufferedImage run(byte[] byteCode, String name, Object[] params) throws Exception {
+        return (BufferedImage) DynamicClassLoader.loadClassAndRunMethod(byteCode, name, "apply", params);
+    }
+
+    static long time(byte[] byteCode, String name, Object[] params) throws Exception {
+        long start = System.nanoTime();
+        run(byteCode, name, params);
+        return System.nanoTime() - start;
+    }
+
+    static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    // Checks that both versions of input return the same image, where change describes what the second
+    // version does differently, and prints the best time of each
+    public static void compare(String[] args, String input, Object[] extraParams, String change, Version first,
+            Version second) throws Exception {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 2160;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Object[] params = new Object[2 + extraParams.length];
+        params[0] = width;
+        params[1] = height;
+        System.arraycopy(extraParams, 0, params, 2, extraParams.length);
+        String name = ((Program) CompilerComponentFactory.getParser(input).parse()).getName();
+        byte[] firstCode = compile(input, first.options());
+        byte[] secondCode = compile(input, second.options());
+        if (!Arrays.equals(pixels(run(firstCode, name, params)), pixels(run(secondCode, name, params)))) {
+            throw new IllegalStateException(change + " changed the image");
+        }
+
+        // alternate the two versions and keep the best round of each, as the timings are noisy
+        long firstTime = Long.MAX_VALUE;
+        long secondTime = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            firstTime = Math.min(firstTime, time(firstCode, name, params));
+            secondTime = Math.min(secondTime, time(secondCode, name, params));
+        }
+        String format = "%-" + (Math.max(first.name().length(), second.name().length()) + 1) + "s %,d ms%n";
+        System.out.printf("%d x %d images%n", width, height);
+        System.out.printf(format, first.name() + ":", firstTime / 1_000_000);
+        System.out.printf(format, second.name() + ":", secondTime / 1_000_000);
+    }
+}
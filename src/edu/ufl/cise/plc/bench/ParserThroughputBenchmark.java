@@ -0,0 +1,59 @@
+package edu.ufl.cise.plc.bench;
+
+import edu.ufl.cise.plc.Parser;
+import edu.ufl.cise.plc.TokenBuffer;
+
+// Parse throughput in tokens per second, for a parser pulling tokens from the lexer one at a time and
+// for a parser reading a TokenBuffer. The buffered figures are given both with the time to fill the
+// buffer and for parsing alone.
+// Usage: ParserThroughputBenchmark [statements per program] [programs]
+public class ParserThroughputBenchmark {
+
+    static double tokensPerSecond(int tokens, int programs, long nanos) {
+        return (double) tokens * programs / (nanos / 1e9);
+    }
+
+    static long streaming(String input, int programs) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < programs; i++) {
+            new Parser(input).parse();
+        }
+        return System.nanoTime() - start;
+    }
+
+    static long buffered(String input, int programs) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < programs; i++) {
+            new Parser(new TokenBuffer(input)).parse();
+        }
+        return System.nanoTime() - start;
+    }
+
+    static long parseOnly(TokenBuffer tokens, int programs) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < programs; i++) {
+            new Parser(tokens).parse();
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int programs = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String input = BenchmarkPrograms.generate(statements);
+        TokenBuffer tokens = new TokenBuffer(input);
+
+        // warm up every path before measuring
+        streaming(input, programs);
+        buffered(input, programs);
+        parseOnly(tokens, programs);
+
+        long streamingNanos = streaming(input, programs);
+        long bufferedNanos = buffered(input, programs);
+        long parseOnlyNanos = parseOnly(tokens, programs);
+        System.out.printf("%d statements, %d tokens%n", statements, tokens.size());
+        System.out.printf("streaming from lexer:      %,.0f tokens/s%n", tokensPerSecond(tokens.size(), programs, streamingNanos));
+        System.out.printf("lex to buffer, then parse: %,.0f tokens/s%n", tokensPerSecond(tokens.size(), programs, bufferedNanos));
+        System.out.printf("parse from filled buffer:  %,.0f tokens/s%n", tokensPerSecond(tokens.size(), programs, parseOnlyNanos));
+    }
+}
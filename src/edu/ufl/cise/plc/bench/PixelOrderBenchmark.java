@@ -0,0 +1,28 @@
+package edu.ufl.cise.plc.bench;
+
+import java.util.EnumSet;
+
+import edu.ufl.cise.plc.CodeGenVisitor.Option;
+import edu.ufl.cise.plc.bench.OptionBenchmark.Version;
+
+// Time to run pointwise pixel assignments over 4K images, with the generated code setting the pixels a
+// column at a time and a row at a time, the order BufferedImage stores them in.
+// Usage: PixelOrderBenchmark [width] [height] [rounds]
+public class PixelOrderBenchmark {
+
+    static final String PROGRAM = """
+            image update(int w, int h)
+            image[w, h] a;
+            a[x, y] = <<x, y, x + y>>;
+            image[w, h] b;
+            b[x, y] = <<y, x, 255 - x>>;
+            a[x, y] = a[x, y] * 2 - b[x, y] / 3;
+            ^ a;
+            """;
+
+    public static void main(String[] args) throws Exception {
+        OptionBenchmark.compare(args, PROGRAM, new Object[] {}, "setting the pixels a row at a time",
+                new Version("column at a time", EnumSet.of(Option.INT_COLORS)),
+                new Version("row at a time", EnumSet.of(Option.INT_COLORS, Option.ROW_ORDER)));
+    }
+}
@@ -96,7 +96,7 @@ public class ColorTuple implements Serializable {
 	 * @param z
 	 * @return value in [0,256)
 	 */
-	private static int truncate(int z) {
+	public static int truncate(int z) {
 		return z < 0 ? 0 : (z > 255 ? 255 : z);
 	}
 
@@ -121,6 +121,42 @@ public class ColorTuple implements Serializable {
 		return pixel;
 	}
 
+	/**
+	 * Returns the packed color with the given components, which must already be in
+	 * the range [0,256). This is makePackedColor without truncating the components.
+	 *
+	 * @param redVal
+	 * @param grnVal
+	 * @param bluVal
+	 * @return
+	 */
+	public static int packInRange(int redVal, int grnVal, int bluVal) {
+		return 0xFF << SHIFT_ALPHA | redVal << SHIFT_RED | grnVal << SHIFT_GRN | bluVal << SHIFT_BLU;
+	}
+
+	/**
+	 * Returns the packed color with the given value, which must already be in the
+	 * range [0,256), in all three color components.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static int packInRange(int value) {
+		return packInRange(value, value, value);
+	}
+
+	/**
+	 * Returns the packed color with the given value in all three color components,
+	 * truncated if necessary. This is new ColorTuple(value).pack() without creating
+	 * a ColorTuple.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static int makePackedColor(int value) {
+		return makePackedColor(value, value, value);
+	}
+
 	/**
 	 * Interprets an int as a packed color and returns the equivalent ColorTuple
 	 * object. The alpha component is ignored.
@@ -1,5 +1,6 @@
 package edu.ufl.cise.plc.runtime;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
@@ -76,6 +77,22 @@ public class ImageOps {
 	public static void setColor(BufferedImage image, int x, int y, ColorTuple colorTuple) {
 		image.setRGB(x, y, colorTuple.pack());
 	}
+
+	/**
+	 * Sets the pixel at the x,y location in the given image to the color with the 
+	 * given components, without creating a ColorTuple.  The color values will be 
+	 * truncated if necessary, as in setColor(image, x, y, new ColorTuple(red, green, blue)).
+	 * 
+	 * @param image
+	 * @param x
+	 * @param y
+	 * @param red
+	 * @param green
+	 * @param blue
+	 */
+	public static void setColor(BufferedImage image, int x, int y, int red, int green, int blue) {
+		image.setRGB(x, y, ColorTuple.makePackedColor(red, green, blue));
+	}
 	
 	/**
 	 * Returns a new image containing only the red component of the given image.  
@@ -240,7 +257,48 @@ public class ImageOps {
 		}
 		return result;
 	}
-	
+
+	/**
+	 * Applies the given binary operator to each color component in each pixel in
+	 * the given images, as binaryImageImageOp does, storing the pixels in result.
+	 *
+	 * The sizes of the images are not checked: the caller must have established
+	 * that left, right and result all have the same size.
+	 *
+	 * @param op
+	 * @param left
+	 * @param right
+	 * @param result
+	 * @return result
+	 */
+	public static BufferedImage binaryImageImageOpUnchecked(OP op, BufferedImage left, BufferedImage right, BufferedImage result) {
+		int width = result.getWidth();
+		int height = result.getHeight();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				ColorTuple leftColor = ColorTuple.unpack(left.getRGB(x, y));
+				ColorTuple rightColor = ColorTuple.unpack(right.getRGB(x, y));
+				result.setRGB(x, y, binaryTupleOp(op, leftColor, rightColor).pack());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets every pixel of the given image to black, the color of the pixels of a new
+	 * image, so that the image can be used in place of a new image of the same size.
+	 *
+	 * @param image
+	 * @return image
+	 */
+	public static BufferedImage clear(BufferedImage image) {
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+		graphics.dispose();
+		return image;
+	}
+
 	/**
 	 * Returns a new buffered image obtained by applying the given binary operation 
 	 * to each color component in each pixel in the given image (left) and the int value (right).
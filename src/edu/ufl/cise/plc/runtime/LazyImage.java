@@ -0,0 +1,242 @@
+package edu.ufl.cise.plc.runtime;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An image computed by image operations, recorded as a graph of the
+ * operations and their operands and evaluated only when its pixels are
+ * needed. Each operation gives the same pixels as the ImageOps method of the
+ * same name.
+ *
+ * A pixel read with getRGB computes only that pixel, from the pixels of the
+ * operands at the same location. After reading as many pixels as the image
+ * has, or when get is called, the image is computed once into a
+ * BufferedImage, which later reads use.
+ *
+ * The operands of the operations are not copied, so they must not be
+ * changed while the LazyImage is in use.
+ *
+ * Errors are reported when the operation is recorded, as ImageOps would:
+ * operands of different sizes, and division or remainder by zero. Division
+ * or remainder by an image is computed when recorded, as it depends on the
+ * pixels of the image.
+ *
+ */
+public abstract class LazyImage {
+
+	private final int width;
+	private final int height;
+	private BufferedImage image;
+	private long pixelsComputed;
+
+	private LazyImage(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Returns a LazyImage with the pixels of the given image.
+	 *
+	 * @param image
+	 * @return
+	 */
+	public static LazyImage of(BufferedImage image) {
+		LazyImage lazyImage = new LazyImage(image.getWidth(), image.getHeight()) {
+			@Override
+			int computeRGB(int x, int y) {
+				return image.getRGB(x, y);
+			}
+		};
+		lazyImage.image = image;
+		return lazyImage;
+	}
+
+	/**
+	 * Records ImageOps.binaryImageImageOp(op, left, right).
+	 *
+	 * If the images do not have the same shape, a PLCRuntimeException is thrown.
+	 *
+	 * @param op
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public static LazyImage binaryImageImageOp(ImageOps.OP op, LazyImage left, LazyImage right) {
+		if (left.getWidth() != right.getWidth() || left.getHeight() != right.getHeight()) {
+			throw new PLCRuntimeException("Attempting binary operation on images with unequal sizes");
+		}
+		LazyImage lazyImage = new LazyImage(left.getWidth(), left.getHeight()) {
+			@Override
+			int computeRGB(int x, int y) {
+				return apply(op, left.getRGB(x, y), ColorTuple.unpack(right.getRGB(x, y)));
+			}
+		};
+		if (op == ImageOps.OP.DIV || op == ImageOps.OP.MOD) {
+			lazyImage.get();
+		}
+		return lazyImage;
+	}
+
+	/**
+	 * Records ImageOps.binaryImageScalarOp(op, left, right).
+	 *
+	 * @param op
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public static LazyImage binaryImageScalarOp(ImageOps.OP op, LazyImage left, int right) {
+		if ((op == ImageOps.OP.DIV || op == ImageOps.OP.MOD) && right == 0) {
+			throw new ArithmeticException("/ by zero");
+		}
+		ColorTuple rightColor = new ColorTuple(right);
+		return new LazyImage(left.getWidth(), left.getHeight()) {
+			@Override
+			int computeRGB(int x, int y) {
+				return apply(op, left.getRGB(x, y), rightColor);
+			}
+		};
+	}
+
+	private static int apply(ImageOps.OP op, int leftPixel, ColorTuple rightColor) {
+		return ImageOps.binaryTupleOp(op, ColorTuple.unpack(leftPixel), rightColor).pack();
+	}
+
+	/**
+	 * Records ImageOps.extractRed(image).
+	 *
+	 * @param image
+	 * @return
+	 */
+	public static LazyImage extractRed(LazyImage image) {
+		return new LazyImage(image.getWidth(), image.getHeight()) {
+			@Override
+			int computeRGB(int x, int y) {
+				return ColorTuple.makePackedColor(ColorTuple.getRed(image.getRGB(x, y)), 0, 0);
+			}
+		};
+	}
+
+	/**
+	 * Records ImageOps.extractGreen(image).
+	 *
+	 * @param image
+	 * @return
+	 */
+	public static LazyImage extractGreen(LazyImage image) {
+		return new LazyImage(image.getWidth(), image.getHeight()) {
+			@Override
+			int computeRGB(int x, int y) {
+				return ColorTuple.makePackedColor(0, ColorTuple.getGreen(image.getRGB(x, y)), 0);
+			}
+		};
+	}
+
+	/**
+	 * Records ImageOps.extractBlue(image).
+	 *
+	 * @param image
+	 * @return
+	 */
+	public static LazyImage extractBlue(LazyImage image) {
+		return new LazyImage(image.getWidth(), image.getHeight()) {
+			@Override
+			int computeRGB(int x, int y) {
+				return ColorTuple.makePackedColor(0, 0, ColorTuple.getBlue(image.getRGB(x, y)));
+			}
+		};
+	}
+
+	/**
+	 * Records ImageOps.resize(image, maxX, maxY). The interpolation of a pixel of
+	 * the result depends on the whole image, and the size of the result is the one
+	 * the interpolation gives, so reading any pixel or the size computes the
+	 * result.
+	 *
+	 * @param image
+	 * @param maxX
+	 * @param maxY
+	 * @return
+	 */
+	public static LazyImage resize(LazyImage image, int maxX, int maxY) {
+		return new LazyImage(maxX, maxY) {
+			@Override
+			public int getWidth() {
+				return get().getWidth();
+			}
+
+			@Override
+			public int getHeight() {
+				return get().getHeight();
+			}
+
+			@Override
+			public int getRGB(int x, int y) {
+				return get().getRGB(x, y);
+			}
+
+			@Override
+			int computeRGB(int x, int y) {
+				return get().getRGB(x, y);
+			}
+
+			@Override
+			BufferedImage compute() {
+				return ImageOps.resize(image.get(), maxX, maxY);
+			}
+		};
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the pixel at the x,y location in packed int form.
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getRGB(int x, int y) {
+		if (image == null) {
+			if (x < 0 || x >= width || y < 0 || y >= height) {
+				throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+			}
+			if (pixelsComputed++ < (long) width * height) {
+				return computeRGB(x, y);
+			}
+			get();
+		}
+		return image.getRGB(x, y);
+	}
+
+	/**
+	 * Returns the image, computing it the first time.
+	 *
+	 * @return
+	 */
+	public BufferedImage get() {
+		if (image == null) {
+			image = compute();
+		}
+		return image;
+	}
+
+	/** Computes the pixel at the x,y location, which is in the image. */
+	abstract int computeRGB(int x, int y);
+
+	BufferedImage compute() {
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				result.setRGB(x, y, computeRGB(x, y));
+			}
+		}
+		return result;
+	}
+}
@@ -1,33 +1,108 @@
 package edu.ufl.cise.plc.runtime.javaCompilerClassLoader;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import edu.ufl.cise.plc.CompilerComponentFactory;
+import edu.ufl.cise.plc.ProgramEffects;
 import edu.ufl.cise.plc.ast.ASTNode;
+import edu.ufl.cise.plc.ast.InPlaceTypeInfo;
 import edu.ufl.cise.plc.ast.Program;
+import edu.ufl.cise.plc.runtime.ColorTuple;
 
 public class PLCLangExec {
 	
 	public final String packageName;
 	
 	public PLCLangExec(String packageName, boolean VERBOSE) {
+		this(packageName, VERBOSE, 0);
+	}
+
+	/**
+	 * An executor that keeps the results of up to cachedResults runs of pure
+	 * programs, as ProgramEffects finds them, and returns a kept result instead of
+	 * running the program again with the same arguments. An image argument is
+	 * matched by a hash of its contents. A result is kept with the modification
+	 * time and length of each image file the program read, and is not returned
+	 * once one of them changes. When more than cachedResults results would be
+	 * kept, the least recently used one is dropped.
+	 *
+	 * @param packageName
+	 * @param VERBOSE
+	 * @param cachedResults
+	 *            The number of results to keep, or 0 to always run the program
+	 */
+	public PLCLangExec(String packageName, boolean VERBOSE, int cachedResults) {
 		super();
 		this.packageName = packageName;
 		this.VERBOSE = VERBOSE;
+		this.results = cachedResults > 0 ? new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Result> eldest) {
+				return size() > cachedResults;
+			}
+		} : null;
 	}
 
 	final boolean VERBOSE;
 
+	// A result of a pure program, and the modification time and length of each image file it read
+	private record Result(Object value, Map<String, List<Long>> files) {
+		boolean isCurrent() {
+			for (Map.Entry<String, List<Long>> file : files.entrySet()) {
+				if (!stamp(file.getKey()).equals(file.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	// Results of pure programs by source and arguments, least recently used first, or null if none are kept
+	private final Map<List<Object>, Result> results;
+	private int reusedResults;
+
 	private void show(Object obj) throws IOException {
 		if (VERBOSE)
 			System.out.println(obj);
 	}
-	
+
 	public Object exec(String input, Object[] params) throws Exception {
+		//Return the kept result of an earlier run with the same arguments and files
+		List<Object> key = results != null ? key(input, params) : null;
+		Result kept = key != null ? results.get(key) : null;
+		if (kept != null && kept.isCurrent()) {
+			reusedResults++;
+			return copy(kept.value());
+		}
 		//Lex and parse to obtain AST
 		ASTNode ast = CompilerComponentFactory.getParser(input).parse();
 		//Type check and decorate AST with declaration and type info
 		ast.visit(CompilerComponentFactory.getTypeChecker(), null);
+		//Find the files a pure program reads, before it runs
+		Map<String, List<Long>> files = null;
+		if (key != null) {
+			ProgramEffects effects = new ProgramEffects((Program) ast, InPlaceTypeInfo.INSTANCE);
+			List<String> read = effects.isPure() ? effects.files(params) : null;
+			if (read != null) {
+				files = new HashMap<>();
+				for (String file : read) {
+					files.put(file, stamp(file));
+				}
+			}
+		}
 		//Generate Java code
 		String className = ((Program) ast).getName();
 		String fullyQualifiedName = packageName != "" ? packageName + '.' + className : className;
@@ -37,7 +112,60 @@ public class PLCLangExec {
 		byte[] byteCode = DynamicCompiler.compile(fullyQualifiedName, javaCode);
 		//Load generated classfile and execute its apply method.
 		Object result = DynamicClassLoader.loadClassAndRunMethod(byteCode, fullyQualifiedName, "apply", params);
+		if (files != null) {
+			results.put(key, new Result(copy(result), files));
+		}
 		return result;
 	}
 
+	/**
+	 * Returns the number of times exec returned a kept result instead of running
+	 * the program.
+	 *
+	 * @return
+	 */
+	public int getReusedResults() {
+		return reusedResults;
+	}
+
+	// The key of a run of input with params, or null if one of params has no key
+	private static List<Object> key(String input, Object[] params) throws Exception {
+		List<Object> key = new ArrayList<>();
+		key.add(input);
+		for (Object param : params == null ? new Object[0] : params) {
+			if (param instanceof Integer || param instanceof Float || param instanceof Boolean || param instanceof String) {
+				key.add(param);
+			} else if (param instanceof ColorTuple c) {
+				key.add(List.of(c.red, c.green, c.blue));
+			} else if (param instanceof BufferedImage image) {
+				key.add(List.of(image.getType(), image.getWidth(), image.getHeight(), hash(image)));
+			} else {
+				return null;
+			}
+		}
+		return key;
+	}
+
+	// A SHA-256 hash of the pixels of image
+	private static String hash(BufferedImage image) throws Exception {
+		int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+		ByteBuffer bytes = ByteBuffer.allocate(pixels.length * 4);
+		bytes.asIntBuffer().put(pixels);
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes.array()));
+	}
+
+	private static List<Long> stamp(String file) {
+		File f = new File(file);
+		return List.of(f.lastModified(), f.length());
+	}
+
+	// value, or a copy of it if it is an image, so the caller cannot change a kept result
+	private static Object copy(Object value) {
+		if (value instanceof BufferedImage image) {
+			ColorModel colorModel = image.getColorModel();
+			return new BufferedImage(colorModel, image.copyData(null), colorModel.isAlphaPremultiplied(), null);
+		}
+		return value;
+	}
+
 }